@@ -0,0 +1,88 @@
+package fr.ensma.a3.ia.rcservice;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.websocket.MessageHandler;
+
+/**
+ * Retour de congestion envoye par le serveur a un emetteur de flux :
+ * {"type":"congestion","level":..,"latencyMs":..,"queueDepth":..,"receivers":..}.
+ * Le niveau (0 a 1) est celui du recepteur le plus lent ; il retombe a 0 si le
+ * serveur cesse de l'envoyer.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class CongestionFeedback implements MessageHandler.Whole<String> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CongestionFeedback.class);
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	private static final long STALE_MS = 3000;
+
+	private final List<DoubleConsumer> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile double level;
+	private volatile long latencyMs;
+	private volatile int queueDepth;
+	private volatile long updatedMillis;
+
+	@Override
+	public void onMessage(String message) {
+		try {
+			JsonNode node = objectMapper.readTree(message);
+			if (!"congestion".equals(node.path("type").asText())) {
+				return;
+			}
+			level = Math.max(0, Math.min(1, node.path("level").asDouble()));
+			latencyMs = node.path("latencyMs").asLong();
+			queueDepth = node.path("queueDepth").asInt();
+			updatedMillis = System.currentTimeMillis();
+			logger.trace("Congestion: level={} latencyMs={} queueDepth={}", level, latencyMs, queueDepth);
+
+			for (DoubleConsumer listener : listeners) {
+				listener.accept(level);
+			}
+		} catch (Exception e) {
+			logger.debug("Message de controle ignore: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Abonne le code de capture (cadence, qualite JPEG...) aux changements de niveau.
+	 */
+	public void addListener(DoubleConsumer listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @return Niveau de congestion entre 0 (fluide) et 1 (sature)
+	 */
+	public double getLevel() {
+		if (System.currentTimeMillis() - updatedMillis > STALE_MS) {
+			return 0;
+		}
+		return level;
+	}
+
+	public long getLatencyMs() {
+		return latencyMs;
+	}
+
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * @return Intervalle minimal entre deux images, proportionnel a la congestion
+	 */
+	public long getFrameIntervalMs(long maxIntervalMs) {
+		return (long) (getLevel() * maxIntervalMs);
+	}
+}
@@ -8,7 +8,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.ensma.a3.ia.serviceapi.ControllerMessage;
+import fr.ensma.a3.ia.serviceapi.ControllerMessageBinaryDecoder;
 import fr.ensma.a3.ia.serviceapi.ControllerMessageDecoder;
+import fr.ensma.a3.ia.serviceapi.HandshakeMessage;
+import fr.ensma.a3.ia.serviceapi.SequenceTracker;
 import fr.ensma.a3.ia.servocontrolbusiness.DriverData;
 import fr.ensma.a3.ia.servocontrolbusiness.EAxisInputType;
 import jakarta.websocket.ClientEndpointConfig;
@@ -29,11 +32,14 @@ public class RCControllerReceiverService {
     private Integer cameraHor = 1500;
     private Integer cameraVert = 1600;
     private DriverData values = new DriverData(EAxisInputType.DUAL_AXIS);
+    // Pertes, desordre et age des commandes, exposes en JMX
+    private final SequenceTracker sequenceTracker = new SequenceTracker("rccontroller").register();
 
     public void connect(String wsUrl) {
         try {
+            // Les deux formes (JSON et binaire) sont acceptees, annoncees au relais par ordre de preference
             final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create()
-                    .decoders(List.of(ControllerMessageDecoder.class)).build();
+                    .decoders(List.of(ControllerMessageDecoder.class, ControllerMessageBinaryDecoder.class)).build();
             ClientManager client = ClientManager.createClient();
 
             Session currentSession = client.connectToServer(new Endpoint() {
@@ -44,6 +50,10 @@ public class RCControllerReceiverService {
                     session.addMessageHandler(new MessageHandler.Whole<ControllerMessage>() {
                         @Override
                         public void onMessage(ControllerMessage message) {
+                            // Comptabilite seulement : une commande n'est jamais ignoree, un
+                            // simulateur redemarre renumerote a partir de 1
+                            sequenceTracker.record(message.getSequence(), message.getSendTimeMicros());
+
                             cameraHor = (int) message.getHorirontalPanAssistantCamera();
                             cameraVert = -(int) message.getVerticalPanAssistantCamera();
 
@@ -67,6 +77,7 @@ public class RCControllerReceiverService {
                 @Override
                 public void onClose(Session session, CloseReason closeReason) {
                     logger.info("Connexion fermee: {}", closeReason.getReasonPhrase());
+                    logger.info("Commandes recues: {}", sequenceTracker);
                     if (driverThread != null && driverThread.isAlive()) {
                         driverThread.interrupt();
                     }
@@ -79,7 +90,9 @@ public class RCControllerReceiverService {
                         driverThread.interrupt();
                     }
                 }
-            }, cec, new URI(wsUrl));
+            }, cec, new URI(HandshakeMessage.withCodecs(wsUrl,
+                    List.of(HandshakeMessage.CODEC_BINARY_V1, HandshakeMessage.CODEC_JSON),
+                    List.of(HandshakeMessage.FEATURE_SEQUENCE))));
 
             driverThread = new DriverSenderThread(values, currentSession);
             driverThread.setDaemon(false);
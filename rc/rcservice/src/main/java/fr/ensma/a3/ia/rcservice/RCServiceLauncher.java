@@ -33,6 +33,12 @@ public class RCServiceLauncher implements Runnable {
   @Option(names = "--no-webcamAssistant", description = "Desactive le module d'envoi de la video pour l'assistant")
   boolean noWebcamAssistant;
 
+  @Option(names = "--sensor-batch", description = "Nombre d'echantillons MPU par message capteurs (1 = un message JSON par echantillon)", defaultValue = "1")
+  int sensorBatch;
+
+  @Option(names = "--binary-sensor", description = "Envoie les capteurs au format binaire (une trame par echantillon, ou des lots avec --sensor-batch)")
+  boolean binarySensor;
+
   @Option(names = { "-u", "--url" }, description = "URL du serveur WebSocket", defaultValue = "wss://rcsimu-ia.ensma.fr")
   String wsUrl;
 
@@ -56,7 +62,7 @@ public class RCServiceLauncher implements Runnable {
     if (sensorEnabled) {
       try {
         ISensorAggregator sensorAggregator = new SensorAggregator();
-        SensorFlowSenderService sfs = new SensorFlowSenderService(sensorAggregator);
+        SensorFlowSenderService sfs = new SensorFlowSenderService(sensorAggregator, sensorBatch, binarySensor);
         sfs.connect(wsUrl + "/sensorflow/sender");
       } catch (IOException e) {
         logger.error("Impossible d'initialiser les capteurs", e);
@@ -1,6 +1,11 @@
 package fr.ensma.a3.ia.rcservice;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.glassfish.tyrus.client.ClientManager;
 import org.slf4j.Logger;
@@ -11,14 +16,31 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import fr.ensma.a3.ia.sensorsbusiness.AllSensorData;
 import fr.ensma.a3.ia.sensorsbusiness.ISensorAggregator;
+import fr.ensma.a3.ia.serviceapi.HandshakeMessage;
+import fr.ensma.a3.ia.serviceapi.MonotonicClock;
+import fr.ensma.a3.ia.serviceapi.SensorBatchMessage;
+import fr.ensma.a3.ia.serviceapi.SensorBatchMessageBinaryEncoder;
+import fr.ensma.a3.ia.serviceapi.SensorBatchMessageEncoder;
+import fr.ensma.a3.ia.serviceapi.SensorFrame;
 import jakarta.websocket.ClientEndpointConfig;
 import jakarta.websocket.Endpoint;
 import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
 import jakarta.websocket.Session;
 
 /**
  * Service d'envoi des donnees des capteurs vers le serveur WebSocket.
  *
+ * Avec une taille de lot superieure a 1, le MPU est echantillonne
+ * batchSize fois par intervalle d'envoi et les echantillons partent
+ * regroupes dans un {@link SensorBatchMessage} (JSON ou binaire). Sinon,
+ * en binaire, chaque echantillon est ecrit dans une {@link SensorFrame}
+ * sur un tampon reutilise. Le format est propose au relais a la connexion
+ * ({@link HandshakeMessage}) : sans accord, les echantillons partent un par
+ * un en JSON. Si le relais accepte la numerotation, chaque echantillon recoit
+ * un numero de sequence (un lot porte celui de son premier echantillon) et
+ * chaque message son instant d'envoi ({@link MonotonicClock}).
+ *
  * @author Mickael BARON (mickael.baron@ensma.fr)
  */
 public class SensorFlowSenderService {
@@ -26,39 +48,77 @@ public class SensorFlowSenderService {
 	private static final Logger logger = LoggerFactory.getLogger(SensorFlowSenderService.class);
 	private static final ObjectMapper objectMapper = new ObjectMapper();
 	private static final int SEND_INTERVAL_MS = 50;
+	private static final long WELCOME_TIMEOUT_MS = 2000;
 
 	private final ISensorAggregator sensorAggregator;
+	private final int batchSize;
+	private final boolean binaryCodec;
+	private volatile HandshakeMessage welcome;
+	private boolean sequenced;
+	// Numero du prochain echantillon envoye
+	private long nextSequence = 1;
 
 	public SensorFlowSenderService(ISensorAggregator sensorAggregator) {
+		this(sensorAggregator, 1, false);
+	}
+
+	public SensorFlowSenderService(ISensorAggregator sensorAggregator, int batchSize, boolean binaryCodec) {
 		this.sensorAggregator = sensorAggregator;
+		this.batchSize = Math.max(1, Math.min(SensorBatchMessage.MAX_COUNT, batchSize));
+		this.binaryCodec = binaryCodec;
 	}
 
 	public void connect(String wsUrl) {
 		try {
-			final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+			final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create()
+					.encoders(List.of(binaryCodec ? SensorBatchMessageBinaryEncoder.class : SensorBatchMessageEncoder.class))
+					.build();
 			ClientManager client = ClientManager.createClient();
 
+			CountDownLatch welcomed = new CountDownLatch(1);
+
 			Session currentSession = client.connectToServer(new Endpoint() {
 				@Override
 				public void onOpen(Session session, EndpointConfig config) {
 					logger.info("Connecte au serveur");
+					session.addMessageHandler(new MessageHandler.Whole<String>() {
+						@Override
+						public void onMessage(String message) {
+							HandshakeMessage response = HandshakeMessage.parseWelcome(message);
+							if (response != null) {
+								welcome = response;
+								welcomed.countDown();
+							}
+						}
+					});
 				}
 			}, cec, new URI(wsUrl));
 
+			String preferred = batchSize > 1 ? HandshakeMessage.CODEC_BATCH
+					: binaryCodec ? HandshakeMessage.CODEC_BINARY_V1 : HandshakeMessage.CODEC_JSON;
+			List<String> codecs = HandshakeMessage.CODEC_JSON.equals(preferred) ? List.of(preferred)
+					: List.of(preferred, HandshakeMessage.CODEC_JSON);
+			currentSession.getBasicRemote().sendText(
+					HandshakeMessage.hello(codecs, List.of(HandshakeMessage.FEATURE_SEQUENCE)).toJson());
+
 			Runnable sendTask = () -> {
+				String codec = HandshakeMessage.CODEC_JSON;
 				try {
-					while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
-						String jsonMessage = buildSensorDataJson();
-						if (jsonMessage != null) {
-							currentSession.getBasicRemote().sendText(jsonMessage);
-						}
-						Thread.sleep(SEND_INTERVAL_MS);
+					// Sans reponse (ancien relais), seul le JSON historique est sur
+					if (welcomed.await(WELCOME_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+						codec = welcome.getCodec() == null ? codec : welcome.getCodec();
+						sequenced = welcome.hasFeature(HandshakeMessage.FEATURE_SEQUENCE);
 					}
 				} catch (InterruptedException e) {
-					logger.debug("Thread interrompu");
 					Thread.currentThread().interrupt();
-				} catch (Exception e) {
-					logger.error("Erreur envoi: {}", e.getMessage());
+					return;
+				}
+				if (HandshakeMessage.CODEC_BATCH.equals(codec)) {
+					sendBatches(currentSession);
+				} else if (HandshakeMessage.CODEC_BINARY_V1.equals(codec)) {
+					sendFrames(currentSession);
+				} else {
+					sendJson(currentSession);
 				}
 			};
 
@@ -70,6 +130,106 @@ public class SensorFlowSenderService {
 		}
 	}
 
+	private void sendJson(Session currentSession) {
+		logger.info("Envoi par echantillons JSON{}", sequenced ? " numerotes" : "");
+		try {
+			while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
+				String jsonMessage = buildSensorDataJson();
+				if (jsonMessage != null) {
+					currentSession.getBasicRemote().sendText(jsonMessage);
+				}
+				Thread.sleep(SEND_INTERVAL_MS);
+			}
+		} catch (InterruptedException e) {
+			logger.debug("Thread interrompu");
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("Erreur envoi: {}", e.getMessage());
+		}
+	}
+
+	private void sendFrames(Session currentSession) {
+		logger.info("Envoi par trames binaires{}", sequenced ? " numerotees" : "");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(SensorFrame.LENGTH_SEQUENCE);
+		SensorFrame frame = new SensorFrame().wrap(buffer, 0);
+		try {
+			while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
+				AllSensorData allData = sensorAggregator == null ? null : sensorAggregator.getAllData();
+				if (allData != null && allData.hasMpuData()) {
+					frame.initialize()
+							.setTimestampMs(allData.getTimestampMs())
+							.setMpuData(allData.getMpuTimestampMs(), allData.getMpuAccelX(), allData.getMpuAccelY(),
+									allData.getMpuAccelZ(), allData.getMpuGyroX(), allData.getMpuGyroY(),
+									allData.getMpuGyroZ(), allData.getMpuTemperature());
+					if (allData.hasUrmData()) {
+						frame.setUrmData(allData.getUrmTimestampMs(), allData.getUrmDistanceCm());
+					}
+					if (sequenced) {
+						frame.setSequence(nextSequence++, MonotonicClock.currentTimeMicros());
+					}
+					buffer.clear().limit(frame.getLength());
+					currentSession.getBasicRemote().sendBinary(buffer);
+				}
+				Thread.sleep(SEND_INTERVAL_MS);
+			}
+		} catch (InterruptedException e) {
+			logger.debug("Thread interrompu");
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.error("Erreur envoi: {}", e.getMessage());
+		}
+	}
+
+	private void sendBatches(Session currentSession) {
+		logger.info("Envoi par lots de {} echantillons ({})", batchSize, binaryCodec ? "binaire" : "JSON");
+		SensorBatchMessage batch = new SensorBatchMessage(batchSize);
+		long periodNanos = TimeUnit.MILLISECONDS.toNanos(SEND_INTERVAL_MS) / batchSize;
+		long lastTimestampMs = Long.MIN_VALUE;
+		long nextSample = System.nanoTime();
+		try {
+			while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
+				AllSensorData allData = sensorAggregator == null ? null : sensorAggregator.getAllData();
+				if (allData != null && allData.hasMpuData() && allData.getMpuTimestampMs() != lastTimestampMs) {
+					lastTimestampMs = allData.getMpuTimestampMs();
+					if (!addSample(batch, allData)) {
+						// Lot plein ou fenetre des ecarts depassee : on envoie et on recommence
+						sendBatch(currentSession, batch);
+						addSample(batch, allData);
+					}
+					if (batch.isFull()) {
+						sendBatch(currentSession, batch);
+					}
+				}
+
+				nextSample += periodNanos;
+				long waitNanos = nextSample - System.nanoTime();
+				if (waitNanos > 0) {
+					LockSupport.parkNanos(waitNanos);
+				} else {
+					// En retard : on ne cherche pas a rattraper les echantillons manques
+					nextSample = System.nanoTime();
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Erreur envoi: {}", e.getMessage());
+		}
+	}
+
+	private void sendBatch(Session currentSession, SensorBatchMessage batch) throws Exception {
+		if (sequenced) {
+			batch.setSequence(nextSequence, MonotonicClock.currentTimeMicros());
+			nextSequence += batch.getCount();
+		}
+		currentSession.getBasicRemote().sendObject(batch);
+		batch.clear();
+	}
+
+	private boolean addSample(SensorBatchMessage batch, AllSensorData allData) {
+		return batch.add(allData.getMpuTimestampMs(), allData.getMpuAccelX(), allData.getMpuAccelY(),
+				allData.getMpuAccelZ(), allData.getMpuGyroX(), allData.getMpuGyroY(), allData.getMpuGyroZ(),
+				allData.getMpuTemperature());
+	}
+
 	private String buildSensorDataJson() {
 		if (sensorAggregator == null) {
 			return null;
@@ -83,6 +243,10 @@ public class SensorFlowSenderService {
 		try {
 			ObjectNode root = objectMapper.createObjectNode();
 			root.put("timestampMs", allData.getTimestampMs());
+			if (sequenced) {
+				root.put("sequence", nextSequence++);
+				root.put("sendTimeMicros", MonotonicClock.currentTimeMicros());
+			}
 
 			ObjectNode mpuNode = objectMapper.createObjectNode();
 			mpuNode.put("accelX", allData.getMpuAccelX());
@@ -21,8 +21,12 @@ public class WebcamAssistantFrameStreamSenderService {
 
 	private static final Logger logger = LoggerFactory.getLogger(WebcamAssistantFrameStreamSenderService.class);
 
+	// Cadence minimale (2 images/s) atteinte a congestion maximale
+	private static final long MAX_FRAME_INTERVAL_MS = 500;
+
 	private IWebcamFrameStream refWebcamBusiness;
 	private final AtomicBoolean sendInProgress = new AtomicBoolean(false);
+	private final CongestionFeedback congestion = new CongestionFeedback();
 
 	public WebcamAssistantFrameStreamSenderService(IWebcamFrameStream pRefWebcamBusiness) {
 		this.refWebcamBusiness = pRefWebcamBusiness;
@@ -37,6 +41,7 @@ public class WebcamAssistantFrameStreamSenderService {
 				@Override
 				public void onOpen(Session session, EndpointConfig config) {
 					logger.info("Webcam Assistant connectee");
+					session.addMessageHandler(String.class, congestion);
 				}
 			}, cec, new URI(wsUrl));
 
@@ -44,10 +49,14 @@ public class WebcamAssistantFrameStreamSenderService {
 				try {
 					refWebcamBusiness.initializeAssistantWebcam();
 
+					long lastSendMillis = 0;
 					while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
 						ByteBuffer frame = refWebcamBusiness.getAssistantFrame();
 						if (frame != null) {
-							if (sendInProgress.compareAndSet(false, true)) {
+							long now = System.currentTimeMillis();
+							boolean due = now - lastSendMillis >= congestion.getFrameIntervalMs(MAX_FRAME_INTERVAL_MS);
+							if (due && sendInProgress.compareAndSet(false, true)) {
+								lastSendMillis = now;
 								currentSession.getAsyncRemote().sendBinary(frame, result -> {
 									sendInProgress.set(false);
 									if (!result.isOK()) {
@@ -73,4 +82,11 @@ public class WebcamAssistantFrameStreamSenderService {
 			logger.error("Impossible de connecter la webcam assistant", e);
 		}
 	}
+
+	/**
+	 * @return Retour de congestion des recepteurs, pour adapter la capture
+	 */
+	public CongestionFeedback getCongestion() {
+		return congestion;
+	}
 }
@@ -1,8 +1,16 @@
 package fr.ensma.a3.ia.serviceapi;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
+ * Commande de pilotage. Le numero de sequence et l'instant d'envoi
+ * ({@link MonotonicClock}) sont optionnels : a 0, ils ne sont ni ecrits en
+ * JSON ni en binaire (version 1).
+ *
  * @author Mickael BARON (mickael.baron@ensma.fr)
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class ControllerMessage {
 
     private byte streer;
@@ -17,6 +25,12 @@ public class ControllerMessage {
 
     private boolean resetPanAssistantCamera;
 
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private long sequence;
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private long sendTimeMicros;
+
     public float getStreer() {
         return streer;
     }
@@ -64,4 +78,20 @@ public class ControllerMessage {
     public void setResetPanAssistantCamera(boolean resetPanAssistantCamera) {
         this.resetPanAssistantCamera = resetPanAssistantCamera;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getSendTimeMicros() {
+        return sendTimeMicros;
+    }
+
+    public void setSendTimeMicros(long sendTimeMicros) {
+        this.sendTimeMicros = sendTimeMicros;
+    }
 }
@@ -0,0 +1,43 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.DecodeException;
+import jakarta.websocket.Decoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Decode la forme binaire d'un {@link ControllerMessage}. Le decodeur lit le
+ * tampon au travers d'une {@link ControllerMessageFlyweight} et remplit
+ * toujours la meme instance de message : le gestionnaire ne doit pas la
+ * conserver au-dela de l'appel.
+ *
+ * Enregistre avec {@link ControllerMessageDecoder}, il permet a un meme
+ * recepteur d'accepter indifferemment les emetteurs JSON et binaires.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ControllerMessageBinaryDecoder implements Decoder.Binary<ControllerMessage> {
+
+    private final ControllerMessageFlyweight flyweight = new ControllerMessageFlyweight();
+
+    private final ControllerMessage message = new ControllerMessage();
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public ControllerMessage decode(ByteBuffer bytes) throws DecodeException {
+        return flyweight.wrap(bytes).copyTo(message);
+    }
+
+    @Override
+    public boolean willDecode(ByteBuffer bytes) {
+        return ControllerMessageFlyweight.matches(bytes);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.EncodeException;
+import jakarta.websocket.Encoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Encode un {@link ControllerMessage} dans le format binaire decrit par
+ * {@link ControllerMessageFlyweight}. Le tampon renvoye est reutilise d'un
+ * appel a l'autre : il doit etre envoye avant l'encodage suivant, ce que
+ * garantit un envoi synchrone par {@code getBasicRemote()}.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ControllerMessageBinaryEncoder implements Encoder.Binary<ControllerMessage> {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(ControllerMessageFlyweight.LENGTH_SEQUENCE);
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public ByteBuffer encode(ControllerMessage object) throws EncodeException {
+        buffer.clear();
+        ControllerMessageFlyweight.write(object, buffer);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -13,6 +13,8 @@ import jakarta.websocket.EndpointConfig;
  */
 public class ControllerMessageDecoder implements Decoder.Text<ControllerMessage> {
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     @Override
     public void init(EndpointConfig config) {
     }
@@ -23,7 +25,6 @@ public class ControllerMessageDecoder implements Decoder.Text<ControllerMessage>
 
     @Override
     public ControllerMessage decode(String s) throws DecodeException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
             ControllerMessage readValue = mapper.readValue(s, ControllerMessage.class);
             return readValue;
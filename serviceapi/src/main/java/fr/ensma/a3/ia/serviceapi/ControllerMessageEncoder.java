@@ -12,6 +12,8 @@ import jakarta.websocket.EndpointConfig;
  */
 public class ControllerMessageEncoder implements Encoder.Text<ControllerMessage> {
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     @Override
     public void init(EndpointConfig config) {
     }
@@ -22,7 +24,6 @@ public class ControllerMessageEncoder implements Encoder.Text<ControllerMessage>
 
     @Override
     public String encode(ControllerMessage object) throws EncodeException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
             return mapper.writeValueAsString(object);
         } catch (JsonProcessingException e) {
@@ -0,0 +1,176 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Vue sur la forme binaire d'un {@link ControllerMessage}. Les champs sont lus
+ * directement dans le tampon enveloppe, sans copie ni allocation : la vue reste
+ * valable tant que le tampon n'est pas reutilise.
+ *
+ * Format (version 1, 8 octets) :
+ * <pre>
+ * 0 magic    0xA3
+ * 1 version  1
+ * 2 streer
+ * 3 throttle
+ * 4 brake
+ * 5 horirontalPanAssistantCamera
+ * 6 verticalPanAssistantCamera
+ * 7 drapeaux (bit 0 : resetPanAssistantCamera)
+ * </pre>
+ * La version 2 (20 octets) ajoute le numero de sequence et l'instant d'envoi :
+ * <pre>
+ * 8  sequence        32 bits non signes
+ * 12 sendTimeMicros  64 bits
+ * </pre>
+ * Elle n'est ecrite que pour un message numerote. Une version ulterieure ne
+ * peut qu'ajouter des octets en fin de message : un lecteur v1 lit donc les
+ * huit premiers octets de toute version.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ControllerMessageFlyweight {
+
+    public static final byte MAGIC = (byte) 0xA3;
+
+    public static final byte VERSION = 1;
+
+    public static final int LENGTH = 8;
+
+    public static final byte VERSION_SEQUENCE = 2;
+
+    public static final int LENGTH_SEQUENCE = 20;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int VERSION_OFFSET = 1;
+
+    private static final int STREER_OFFSET = 2;
+
+    private static final int THROTTLE_OFFSET = 3;
+
+    private static final int BRAKE_OFFSET = 4;
+
+    private static final int HORIZONTAL_PAN_OFFSET = 5;
+
+    private static final int VERTICAL_PAN_OFFSET = 6;
+
+    private static final int FLAGS_OFFSET = 7;
+
+    private static final int SEQUENCE_OFFSET = 8;
+
+    private static final int SEND_TIME_OFFSET = 12;
+
+    private static final int RESET_PAN_FLAG = 0x01;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    /**
+     * Indique si le tampon contient, a partir de sa position, un message
+     * binaire de commande lisible par cette version.
+     */
+    public static boolean matches(ByteBuffer buffer) {
+        if (buffer == null || buffer.remaining() < LENGTH) {
+            return false;
+        }
+        int position = buffer.position();
+        return buffer.get(position + MAGIC_OFFSET) == MAGIC && buffer.get(position + VERSION_OFFSET) >= VERSION;
+    }
+
+    /**
+     * Ecrit le message a la position courante du tampon, qui avance de
+     * {@link #LENGTH} octets, ou {@link #LENGTH_SEQUENCE} pour un message
+     * numerote.
+     */
+    public static void write(ControllerMessage message, ByteBuffer target) {
+        boolean sequenced = message.getSequence() > 0;
+        target.put(MAGIC);
+        target.put(sequenced ? VERSION_SEQUENCE : VERSION);
+        target.put((byte) message.getStreer());
+        target.put(message.getThrottle());
+        target.put((byte) message.getBrake());
+        target.put(message.getHorirontalPanAssistantCamera());
+        target.put(message.getVerticalPanAssistantCamera());
+        target.put((byte) (message.isResetPanAssistantCamera() ? RESET_PAN_FLAG : 0));
+        if (sequenced) {
+            target.putInt((int) message.getSequence());
+            target.putLong(message.getSendTimeMicros());
+        }
+    }
+
+    /**
+     * Place la vue sur le message commencant a la position courante du tampon.
+     * La position du tampon n'est pas modifiee.
+     */
+    public ControllerMessageFlyweight wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        return this;
+    }
+
+    public byte getVersion() {
+        return buffer.get(offset + VERSION_OFFSET);
+    }
+
+    public byte getStreer() {
+        return buffer.get(offset + STREER_OFFSET);
+    }
+
+    public byte getThrottle() {
+        return buffer.get(offset + THROTTLE_OFFSET);
+    }
+
+    public byte getBrake() {
+        return buffer.get(offset + BRAKE_OFFSET);
+    }
+
+    public byte getHorirontalPanAssistantCamera() {
+        return buffer.get(offset + HORIZONTAL_PAN_OFFSET);
+    }
+
+    public byte getVerticalPanAssistantCamera() {
+        return buffer.get(offset + VERTICAL_PAN_OFFSET);
+    }
+
+    public boolean isResetPanAssistantCamera() {
+        return (buffer.get(offset + FLAGS_OFFSET) & RESET_PAN_FLAG) != 0;
+    }
+
+    /**
+     * @return true si le message porte un numero de sequence (version 2 et plus)
+     */
+    public boolean hasSequence() {
+        return getVersion() >= VERSION_SEQUENCE && buffer.limit() - offset >= LENGTH_SEQUENCE;
+    }
+
+    /**
+     * @return Numero de sequence, 0 si le message n'en porte pas
+     */
+    public long getSequence() {
+        return hasSequence() ? Integer.toUnsignedLong(buffer.getInt(offset + SEQUENCE_OFFSET)) : 0;
+    }
+
+    /**
+     * @return Instant d'envoi en microsecondes ({@link MonotonicClock}), 0 s'il est absent
+     */
+    public long getSendTimeMicros() {
+        return hasSequence() ? buffer.getLong(offset + SEND_TIME_OFFSET) : 0;
+    }
+
+    /**
+     * Recopie les champs de la vue dans un message existant.
+     */
+    public ControllerMessage copyTo(ControllerMessage message) {
+        message.setStreer(getStreer());
+        message.setThrottle(getThrottle());
+        message.setBrake(getBrake());
+        message.setHorirontalPanAssistantCamera(getHorirontalPanAssistantCamera());
+        message.setVerticalPanAssistantCamera(getVerticalPanAssistantCamera());
+        message.setResetPanAssistantCamera(isResetPanAssistantCamera());
+        message.setSequence(getSequence());
+        message.setSendTimeMicros(getSendTimeMicros());
+        return message;
+    }
+}
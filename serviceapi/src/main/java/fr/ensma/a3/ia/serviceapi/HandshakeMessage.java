@@ -0,0 +1,146 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Annonce des codecs et fonctions d'un pair du relais. Un emetteur envoie
+ * {"type":"hello","codecs":[..],"features":[..]} en premier message ; le
+ * relais repond {"type":"welcome","channel":..,"codec":..,"codecs":[..],"features":[..]}
+ * ou {@code codec} est l'encodage a utiliser (null si aucun codec annonce
+ * n'est connu du canal). Un recepteur annonce ses codecs dans l'URL
+ * ({@link #withCodecs}) ou par un message "hello", sans reponse : le relais
+ * lui delivre alors un encodage de sa liste, en transcodant si besoin.
+ *
+ * Les codecs sont ranges par ordre de preference.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HandshakeMessage {
+
+    public static final String HELLO = "hello";
+
+    public static final String WELCOME = "welcome";
+
+    public static final String CODEC_JSON = "json";
+
+    public static final String CODEC_BINARY_V1 = "binary-v1";
+
+    public static final String CODEC_BATCH = "batch";
+
+    public static final String FEATURE_SEQUENCE = "seq";
+
+    public static final String FEATURE_COMPRESSION = "deflate";
+
+    public static final String CODECS_PARAMETER = "codecs";
+
+    public static final String FEATURES_PARAMETER = "features";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private String type;
+
+    private String channel;
+
+    private String codec;
+
+    private List<String> codecs;
+
+    private List<String> features;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public List<String> getCodecs() {
+        return codecs;
+    }
+
+    public void setCodecs(List<String> codecs) {
+        this.codecs = codecs;
+    }
+
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(List<String> features) {
+        this.features = features;
+    }
+
+    public boolean hasFeature(String feature) {
+        return features != null && features.contains(feature);
+    }
+
+    /**
+     * @return L'annonce d'un pair, codecs par ordre de preference
+     */
+    public static HandshakeMessage hello(List<String> codecs, List<String> features) {
+        HandshakeMessage message = new HandshakeMessage();
+        message.setType(HELLO);
+        message.setCodecs(codecs);
+        message.setFeatures(features);
+        return message;
+    }
+
+    public String toJson() throws IOException {
+        return mapper.writeValueAsString(this);
+    }
+
+    /**
+     * @return La reponse du relais, ou null si le message n'en est pas une
+     */
+    public static HandshakeMessage parseWelcome(String message) {
+        if (message == null || !message.contains("\"" + WELCOME + "\"")) {
+            return null;
+        }
+        try {
+            HandshakeMessage welcome = mapper.readValue(message, HandshakeMessage.class);
+            return WELCOME.equals(welcome.getType()) ? welcome : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return L'URL du canal completee de la liste des codecs acceptes (?codecs=binary-v1,json)
+     */
+    public static String withCodecs(String url, List<String> codecs) {
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + CODECS_PARAMETER + "=" + String.join(",", codecs);
+    }
+
+    /**
+     * @return L'URL du canal completee des codecs et fonctions acceptes (?codecs=json&features=seq)
+     */
+    public static String withCodecs(String url, List<String> codecs, List<String> features) {
+        String withCodecs = withCodecs(url, codecs);
+        return features.isEmpty() ? withCodecs
+                : withCodecs + "&" + FEATURES_PARAMETER + "=" + String.join(",", features);
+    }
+}
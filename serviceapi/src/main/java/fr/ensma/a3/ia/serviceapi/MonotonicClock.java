@@ -0,0 +1,26 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Horloge d'envoi des messages, en microsecondes depuis l'epoque Unix. Elle
+ * est calee une seule fois sur l'heure murale puis avance avec
+ * {@code System.nanoTime()} : elle ne recule jamais, meme si l'heure systeme
+ * est corrigee. L'age d'un message a l'arrivee ({@link SequenceTracker})
+ * suppose des horloges synchronisees (NTP) entre emetteur et recepteur.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class MonotonicClock {
+
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private static final long BASE_EPOCH_MICROS = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+    private MonotonicClock() {
+    }
+
+    public static long currentTimeMicros() {
+        return BASE_EPOCH_MICROS + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - BASE_NANOS);
+    }
+}
@@ -0,0 +1,304 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lot d'echantillons MPU range par colonnes : un horodatage de base, un ecart
+ * en millisecondes par echantillon et un tableau par axe. Le lot est reutilisable :
+ * {@link #clear()} le vide sans liberer ses tableaux.
+ *
+ * Les ecarts sont codes sur 16 bits non signes : un lot couvre donc au plus
+ * {@link #MAX_DELTA_MS} millisecondes.
+ *
+ * Format binaire (version 1, 12 + 30 x N octets) :
+ * <pre>
+ * 0  magic            0xA4
+ * 1  version          1
+ * 2  N                16 bits non signes
+ * 4  baseTimestampMs  64 bits
+ * 12 deltaMs          N x 16 bits non signes
+ *    aX ... temperature, une colonne de N flottants 32 bits par mesure
+ * </pre>
+ * Un lot numerote est ecrit en version 2, dont l'en-tete de 24 octets ajoute
+ * avant les ecarts :
+ * <pre>
+ * 12 sequence         32 bits non signes, numero du premier echantillon
+ * 16 sendTimeMicros   64 bits
+ * </pre>
+ * Les echantillons sont numerotes un a un : le lot suivant commence a
+ * {@code sequence + N}.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessage {
+
+    public static final byte MAGIC = (byte) 0xA4;
+
+    public static final byte VERSION = 1;
+
+    public static final int HEADER_LENGTH = 12;
+
+    public static final byte VERSION_SEQUENCE = 2;
+
+    public static final int HEADER_LENGTH_SEQUENCE = 24;
+
+    public static final int MAX_DELTA_MS = 0xFFFF;
+
+    public static final int MAX_COUNT = 0xFFFF;
+
+    /**
+     * Noms des colonnes de mesures, dans l'ordre des formats JSON et binaire.
+     */
+    public static final String[] COLUMN_NAMES = { "aX", "aY", "aZ", "gX", "gY", "gZ", "temperature" };
+
+    private static final int AX = 0;
+
+    private static final int AY = 1;
+
+    private static final int AZ = 2;
+
+    private static final int GX = 3;
+
+    private static final int GY = 4;
+
+    private static final int GZ = 5;
+
+    private static final int TEMPERATURE = 6;
+
+    private long baseTimestampMs;
+
+    private long sequence;
+
+    private long sendTimeMicros;
+
+    private int count;
+
+    private int[] deltaMs;
+
+    private float[][] columns;
+
+    public SensorBatchMessage() {
+        this(16);
+    }
+
+    public SensorBatchMessage(int capacity) {
+        allocate(Math.max(1, Math.min(MAX_COUNT, capacity)));
+    }
+
+    private void allocate(int capacity) {
+        deltaMs = new int[capacity];
+        columns = new float[COLUMN_NAMES.length][capacity];
+    }
+
+    /**
+     * Prepare le lot pour recevoir {@code size} echantillons, en agrandissant
+     * les tableaux si necessaire. Utilise par les decodeurs.
+     */
+    void reset(long baseTimestampMs, int size) {
+        if (size > getCapacity()) {
+            allocate(size);
+        }
+        this.baseTimestampMs = baseTimestampMs;
+        this.count = size;
+    }
+
+    /**
+     * Ajoute un echantillon. Renvoie {@code false}, sans rien modifier, si le
+     * lot est plein ou si l'echantillon sort de la fenetre couverte par les
+     * ecarts : le lot doit alors etre envoye puis vide.
+     */
+    public boolean add(long timestampMs, float aX, float aY, float aZ, float gX, float gY, float gZ,
+            float temperature) {
+        if (count == getCapacity()) {
+            return false;
+        }
+        if (count == 0) {
+            baseTimestampMs = timestampMs;
+        }
+        long delta = timestampMs - baseTimestampMs;
+        if (delta < 0 || delta > MAX_DELTA_MS) {
+            return false;
+        }
+        int index = count++;
+        deltaMs[index] = (int) delta;
+        columns[AX][index] = aX;
+        columns[AY][index] = aY;
+        columns[AZ][index] = aZ;
+        columns[GX][index] = gX;
+        columns[GY][index] = gY;
+        columns[GZ][index] = gZ;
+        columns[TEMPERATURE][index] = temperature;
+        return true;
+    }
+
+    public void clear() {
+        count = 0;
+        sequence = 0;
+        sendTimeMicros = 0;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public boolean isFull() {
+        return count == getCapacity();
+    }
+
+    public int getCapacity() {
+        return deltaMs.length;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getBaseTimestampMs() {
+        return baseTimestampMs;
+    }
+
+    /**
+     * @return Numero du premier echantillon, 0 si le lot n'est pas numerote
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Instant d'envoi en microsecondes ({@link MonotonicClock}), 0 s'il est absent
+     */
+    public long getSendTimeMicros() {
+        return sendTimeMicros;
+    }
+
+    /**
+     * Numerote le lot juste avant son envoi ; {@link #clear()} efface le numero.
+     */
+    public void setSequence(long sequence, long sendTimeMicros) {
+        this.sequence = sequence;
+        this.sendTimeMicros = sendTimeMicros;
+    }
+
+    public long getTimestampMs(int index) {
+        return baseTimestampMs + deltaMs[index];
+    }
+
+    public int getDeltaMs(int index) {
+        return deltaMs[index];
+    }
+
+    public float getaX(int index) {
+        return columns[AX][index];
+    }
+
+    public float getaY(int index) {
+        return columns[AY][index];
+    }
+
+    public float getaZ(int index) {
+        return columns[AZ][index];
+    }
+
+    public float getgX(int index) {
+        return columns[GX][index];
+    }
+
+    public float getgY(int index) {
+        return columns[GY][index];
+    }
+
+    public float getgZ(int index) {
+        return columns[GZ][index];
+    }
+
+    public float getTemperature(int index) {
+        return columns[TEMPERATURE][index];
+    }
+
+    /**
+     * Taille en octets de la forme binaire du lot.
+     */
+    public int getEncodedLength() {
+        return (sequence > 0 ? HEADER_LENGTH_SEQUENCE : HEADER_LENGTH)
+                + count * (Short.BYTES + COLUMN_NAMES.length * Float.BYTES);
+    }
+
+    /**
+     * Indique si le tampon contient, a partir de sa position, un lot binaire
+     * lisible par cette version.
+     */
+    public static boolean matches(ByteBuffer buffer) {
+        if (buffer == null || buffer.remaining() < HEADER_LENGTH) {
+            return false;
+        }
+        int position = buffer.position();
+        byte version = buffer.get(position + 1);
+        if (buffer.get(position) != MAGIC || (version != VERSION && version != VERSION_SEQUENCE)) {
+            return false;
+        }
+        int size = Short.toUnsignedInt(buffer.getShort(position + 2));
+        return buffer.remaining() >= (version == VERSION ? HEADER_LENGTH : HEADER_LENGTH_SEQUENCE)
+                + size * (Short.BYTES + COLUMN_NAMES.length * Float.BYTES);
+    }
+
+    /**
+     * Ecrit la forme binaire du lot a la position courante du tampon, qui doit
+     * disposer d'au moins {@link #getEncodedLength()} octets.
+     */
+    public void writeTo(ByteBuffer target) {
+        target.put(MAGIC);
+        target.put(sequence > 0 ? VERSION_SEQUENCE : VERSION);
+        target.putShort((short) count);
+        target.putLong(baseTimestampMs);
+        if (sequence > 0) {
+            target.putInt((int) sequence);
+            target.putLong(sendTimeMicros);
+        }
+        for (int i = 0; i < count; i++) {
+            target.putShort((short) deltaMs[i]);
+        }
+        for (float[] column : columns) {
+            for (int i = 0; i < count; i++) {
+                target.putFloat(column[i]);
+            }
+        }
+    }
+
+    /**
+     * Remplace le contenu du lot par celui lu a la position courante du
+     * tampon, qui avance jusqu'a la fin du lot.
+     */
+    public void readFrom(ByteBuffer source) {
+        source.get();
+        byte version = source.get();
+        int size = Short.toUnsignedInt(source.getShort());
+        reset(source.getLong(), size);
+        if (version >= VERSION_SEQUENCE) {
+            sequence = Integer.toUnsignedLong(source.getInt());
+            sendTimeMicros = source.getLong();
+        } else {
+            sequence = 0;
+            sendTimeMicros = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            deltaMs[i] = Short.toUnsignedInt(source.getShort());
+        }
+        for (float[] column : columns) {
+            for (int i = 0; i < size; i++) {
+                column[i] = source.getFloat();
+            }
+        }
+    }
+
+    /**
+     * Colonnes exposees aux codecs. Seuls les {@link #getCount()} premiers
+     * elements sont significatifs.
+     */
+    int[] deltaColumn() {
+        return deltaMs;
+    }
+
+    float[] column(int column) {
+        return columns[column];
+    }
+}
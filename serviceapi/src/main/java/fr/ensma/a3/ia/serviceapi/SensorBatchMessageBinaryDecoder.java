@@ -0,0 +1,38 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.DecodeException;
+import jakarta.websocket.Decoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Decode la forme binaire d'un {@link SensorBatchMessage}. Le decodeur remplit
+ * toujours la meme instance de lot : le gestionnaire ne doit pas la conserver
+ * au-dela de l'appel.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessageBinaryDecoder implements Decoder.Binary<SensorBatchMessage> {
+
+    private final SensorBatchMessage message = new SensorBatchMessage();
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public SensorBatchMessage decode(ByteBuffer bytes) throws DecodeException {
+        message.readFrom(bytes);
+        return message;
+    }
+
+    @Override
+    public boolean willDecode(ByteBuffer bytes) {
+        return SensorBatchMessage.matches(bytes);
+    }
+}
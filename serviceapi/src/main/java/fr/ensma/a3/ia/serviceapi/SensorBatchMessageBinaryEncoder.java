@@ -0,0 +1,39 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.EncodeException;
+import jakarta.websocket.Encoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Encode un {@link SensorBatchMessage} dans sa forme binaire. Le tampon
+ * renvoye est reutilise (et agrandi si besoin) d'un appel a l'autre : il doit
+ * etre envoye avant l'encodage suivant.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessageBinaryEncoder implements Encoder.Binary<SensorBatchMessage> {
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public ByteBuffer encode(SensorBatchMessage object) throws EncodeException {
+        int length = object.getEncodedLength();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        object.writeTo(buffer);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,69 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.websocket.DecodeException;
+import jakarta.websocket.Decoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Decode la forme JSON d'un {@link SensorBatchMessage} (voir
+ * {@link SensorBatchMessageEncoder}). Le decodeur remplit toujours la meme
+ * instance de lot.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessageDecoder implements Decoder.Text<SensorBatchMessage> {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final SensorBatchMessage message = new SensorBatchMessage();
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public SensorBatchMessage decode(String s) throws DecodeException {
+        try {
+            JsonNode root = mapper.readTree(s);
+            JsonNode deltas = root.path("deltaMs");
+            int count = Math.min(root.path("count").asInt(deltas.size()), deltas.size());
+            message.reset(root.path("baseTimestampMs").asLong(), count);
+            message.setSequence(root.path("sequence").asLong(), root.path("sendTimeMicros").asLong());
+            int[] deltaColumn = message.deltaColumn();
+            for (int i = 0; i < count; i++) {
+                deltaColumn[i] = deltas.get(i).asInt();
+            }
+            for (int column = 0; column < SensorBatchMessage.COLUMN_NAMES.length; column++) {
+                JsonNode values = root.path(SensorBatchMessage.COLUMN_NAMES[column]);
+                if (values.size() < count) {
+                    throw new DecodeException(s, "Colonne incomplete: " + SensorBatchMessage.COLUMN_NAMES[column]);
+                }
+                float[] target = message.column(column);
+                for (int i = 0; i < count; i++) {
+                    target[i] = (float) values.get(i).asDouble();
+                }
+            }
+            return message;
+        } catch (IOException e) {
+            throw new DecodeException(s, "Lot JSON illisible", e);
+        }
+    }
+
+    /**
+     * Un lot se distingue d'un echantillon isole par sa propriete
+     * {@code baseTimestampMs}.
+     */
+    @Override
+    public boolean willDecode(String s) {
+        return s != null && s.contains("\"baseTimestampMs\"");
+    }
+}
@@ -0,0 +1,68 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jakarta.websocket.EncodeException;
+import jakarta.websocket.Encoder;
+import jakarta.websocket.EndpointConfig;
+
+/**
+ * Encode un {@link SensorBatchMessage} en JSON, une propriete tableau par
+ * colonne :
+ * <pre>
+ * {"baseTimestampMs":...,"count":N,"deltaMs":[...],"aX":[...],...,"temperature":[...]}
+ * </pre>
+ * Un lot numerote ajoute {"sequence":..,"sendTimeMicros":..} apres "count".
+ * Le JSON est ecrit en flux, sans arbre intermediaire.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessageEncoder implements Encoder.Text<SensorBatchMessage> {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    @Override
+    public void init(EndpointConfig config) {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public String encode(SensorBatchMessage object) throws EncodeException {
+        StringWriter writer = new StringWriter(64 + object.getCount() * 80);
+        try (JsonGenerator generator = factory.createGenerator(writer)) {
+            int count = object.getCount();
+            generator.writeStartObject();
+            generator.writeNumberField("baseTimestampMs", object.getBaseTimestampMs());
+            generator.writeNumberField("count", count);
+            if (object.getSequence() > 0) {
+                generator.writeNumberField("sequence", object.getSequence());
+                generator.writeNumberField("sendTimeMicros", object.getSendTimeMicros());
+            }
+            generator.writeArrayFieldStart("deltaMs");
+            int[] deltas = object.deltaColumn();
+            for (int i = 0; i < count; i++) {
+                generator.writeNumber(deltas[i]);
+            }
+            generator.writeEndArray();
+            for (int column = 0; column < SensorBatchMessage.COLUMN_NAMES.length; column++) {
+                generator.writeArrayFieldStart(SensorBatchMessage.COLUMN_NAMES[column]);
+                float[] values = object.column(column);
+                for (int i = 0; i < count; i++) {
+                    generator.writeNumber(values[i]);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new EncodeException(object, "Encodage JSON du lot impossible", e);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+
+/**
+ * Trame capteurs binaire de taille fixe, lue et ecrite directement dans un
+ * tampon (a la maniere de SBE) : aucun objet n'est cree par echantillon. Une
+ * meme instance se replace sur chaque nouvelle trame avec {@link #wrap}.
+ *
+ * Format (version 1, 64 octets, gros-boutiste) :
+ * <pre>
+ * 0  magic           0xA5
+ * 1  version         1
+ * 2  drapeaux        bit 0 : MPU present, bit 1 : URM present
+ * 3  reserve
+ * 4  sequence        32 bits non signes (version 2, reserve en version 1)
+ * 8  timestampMs     64 bits
+ * 16 mpuTimestampMs  64 bits
+ * 24 accelX, accelY, accelZ, gyroX, gyroY, gyroZ, temperature  (7 x 32 bits)
+ * 52 distanceCm      32 bits
+ * 56 urmTimestampMs  64 bits
+ * 64 sendTimeMicros  64 bits (version 2 seulement, trame de 72 octets)
+ * </pre>
+ * La version 2 n'est ecrite que pour une trame numerotee ; un lecteur v1 en
+ * lit les 64 premiers octets.
+ * Le relais (simurcserver) lit le meme format avec sa propre vue, le serveur
+ * ne dependant pas de ce module.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorFrame {
+
+    public static final byte MAGIC = (byte) 0xA5;
+
+    public static final byte VERSION = 1;
+
+    public static final int LENGTH = 64;
+
+    public static final byte VERSION_SEQUENCE = 2;
+
+    public static final int LENGTH_SEQUENCE = 72;
+
+    public static final int MPU_FLAG = 0x01;
+
+    public static final int URM_FLAG = 0x02;
+
+    private static final int MAGIC_OFFSET = 0;
+
+    private static final int VERSION_OFFSET = 1;
+
+    private static final int FLAGS_OFFSET = 2;
+
+    private static final int SEQUENCE_OFFSET = 4;
+
+    private static final int TIMESTAMP_OFFSET = 8;
+
+    private static final int MPU_TIMESTAMP_OFFSET = 16;
+
+    private static final int ACCEL_X_OFFSET = 24;
+
+    private static final int ACCEL_Y_OFFSET = 28;
+
+    private static final int ACCEL_Z_OFFSET = 32;
+
+    private static final int GYRO_X_OFFSET = 36;
+
+    private static final int GYRO_Y_OFFSET = 40;
+
+    private static final int GYRO_Z_OFFSET = 44;
+
+    private static final int TEMPERATURE_OFFSET = 48;
+
+    private static final int DISTANCE_OFFSET = 52;
+
+    private static final int URM_TIMESTAMP_OFFSET = 56;
+
+    private static final int SEND_TIME_OFFSET = 64;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    /**
+     * Indique si le tampon contient, a partir de sa position, une trame
+     * lisible par cette version.
+     */
+    public static boolean matches(ByteBuffer buffer) {
+        if (buffer == null || buffer.remaining() < LENGTH) {
+            return false;
+        }
+        int position = buffer.position();
+        return buffer.get(position + MAGIC_OFFSET) == MAGIC && buffer.get(position + VERSION_OFFSET) >= VERSION;
+    }
+
+    /**
+     * Place la vue sur la trame commencant a la position courante du tampon.
+     * La position du tampon n'est pas modifiee.
+     */
+    public SensorFrame wrap(ByteBuffer buffer) {
+        return wrap(buffer, buffer.position());
+    }
+
+    public SensorFrame wrap(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Place la vue sur un segment memoire (memoire partagee, tampon natif).
+     * Les valeurs y sont lues dans l'ordre gros-boutiste du format.
+     */
+    public SensorFrame wrap(MemorySegment segment) {
+        return wrap(segment.asByteBuffer(), 0);
+    }
+
+    /**
+     * Ecrit l'en-tete (version 1) et efface les drapeaux : la trame est prete
+     * a etre remplie.
+     */
+    public SensorFrame initialize() {
+        buffer.put(offset + MAGIC_OFFSET, MAGIC);
+        buffer.put(offset + VERSION_OFFSET, VERSION);
+        buffer.put(offset + FLAGS_OFFSET, (byte) 0);
+        return this;
+    }
+
+    public byte getVersion() {
+        return buffer.get(offset + VERSION_OFFSET);
+    }
+
+    /**
+     * @return Taille de la trame : {@link #LENGTH_SEQUENCE} si elle est numerotee, {@link #LENGTH} sinon
+     */
+    public int getLength() {
+        return hasSequence() ? LENGTH_SEQUENCE : LENGTH;
+    }
+
+    public boolean hasSequence() {
+        return getVersion() >= VERSION_SEQUENCE && buffer.limit() - offset >= LENGTH_SEQUENCE;
+    }
+
+    /**
+     * @return Numero de sequence, 0 si la trame n'en porte pas
+     */
+    public long getSequence() {
+        return hasSequence() ? Integer.toUnsignedLong(buffer.getInt(offset + SEQUENCE_OFFSET)) : 0;
+    }
+
+    /**
+     * @return Instant d'envoi en microsecondes ({@link MonotonicClock}), 0 s'il est absent
+     */
+    public long getSendTimeMicros() {
+        return hasSequence() ? buffer.getLong(offset + SEND_TIME_OFFSET) : 0;
+    }
+
+    /**
+     * Numerote la trame et passe en version 2 : le tampon doit disposer de
+     * {@link #LENGTH_SEQUENCE} octets.
+     */
+    public SensorFrame setSequence(long sequence, long sendTimeMicros) {
+        buffer.put(offset + VERSION_OFFSET, VERSION_SEQUENCE);
+        buffer.putInt(offset + SEQUENCE_OFFSET, (int) sequence);
+        buffer.putLong(offset + SEND_TIME_OFFSET, sendTimeMicros);
+        return this;
+    }
+
+    public boolean hasMpuData() {
+        return (buffer.get(offset + FLAGS_OFFSET) & MPU_FLAG) != 0;
+    }
+
+    public boolean hasUrmData() {
+        return (buffer.get(offset + FLAGS_OFFSET) & URM_FLAG) != 0;
+    }
+
+    public long getTimestampMs() {
+        return buffer.getLong(offset + TIMESTAMP_OFFSET);
+    }
+
+    public SensorFrame setTimestampMs(long timestampMs) {
+        buffer.putLong(offset + TIMESTAMP_OFFSET, timestampMs);
+        return this;
+    }
+
+    public long getMpuTimestampMs() {
+        return buffer.getLong(offset + MPU_TIMESTAMP_OFFSET);
+    }
+
+    public float getAccelX() {
+        return buffer.getFloat(offset + ACCEL_X_OFFSET);
+    }
+
+    public float getAccelY() {
+        return buffer.getFloat(offset + ACCEL_Y_OFFSET);
+    }
+
+    public float getAccelZ() {
+        return buffer.getFloat(offset + ACCEL_Z_OFFSET);
+    }
+
+    public float getGyroX() {
+        return buffer.getFloat(offset + GYRO_X_OFFSET);
+    }
+
+    public float getGyroY() {
+        return buffer.getFloat(offset + GYRO_Y_OFFSET);
+    }
+
+    public float getGyroZ() {
+        return buffer.getFloat(offset + GYRO_Z_OFFSET);
+    }
+
+    public float getTemperature() {
+        return buffer.getFloat(offset + TEMPERATURE_OFFSET);
+    }
+
+    /**
+     * Renseigne l'echantillon MPU et positionne son drapeau.
+     */
+    public SensorFrame setMpuData(long mpuTimestampMs, float accelX, float accelY, float accelZ, float gyroX,
+            float gyroY, float gyroZ, float temperature) {
+        buffer.putLong(offset + MPU_TIMESTAMP_OFFSET, mpuTimestampMs);
+        buffer.putFloat(offset + ACCEL_X_OFFSET, accelX);
+        buffer.putFloat(offset + ACCEL_Y_OFFSET, accelY);
+        buffer.putFloat(offset + ACCEL_Z_OFFSET, accelZ);
+        buffer.putFloat(offset + GYRO_X_OFFSET, gyroX);
+        buffer.putFloat(offset + GYRO_Y_OFFSET, gyroY);
+        buffer.putFloat(offset + GYRO_Z_OFFSET, gyroZ);
+        buffer.putFloat(offset + TEMPERATURE_OFFSET, temperature);
+        setFlag(MPU_FLAG);
+        return this;
+    }
+
+    public float getDistanceCm() {
+        return buffer.getFloat(offset + DISTANCE_OFFSET);
+    }
+
+    public long getUrmTimestampMs() {
+        return buffer.getLong(offset + URM_TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * Renseigne la mesure URM et positionne son drapeau.
+     */
+    public SensorFrame setUrmData(long urmTimestampMs, float distanceCm) {
+        buffer.putLong(offset + URM_TIMESTAMP_OFFSET, urmTimestampMs);
+        buffer.putFloat(offset + DISTANCE_OFFSET, distanceCm);
+        setFlag(URM_FLAG);
+        return this;
+    }
+
+    private void setFlag(int flag) {
+        buffer.put(offset + FLAGS_OFFSET, (byte) (buffer.get(offset + FLAGS_OFFSET) | flag));
+    }
+}
@@ -0,0 +1,216 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Comptabilite cote recepteur d'un flux numerote (voir
+ * {@link HandshakeMessage#FEATURE_SEQUENCE}) : pertes, doublons, desordre
+ * et age a l'arrivee. Les doublons sont reperes sur une fenetre glissante des
+ * 64 derniers numeros, a la maniere de l'anti-rejeu d'IPsec. Un numero
+ * anterieur a cette fenetre signale un emetteur qui a redemarre sa
+ * numerotation (reconnexion du simulateur) : elle repart de ce numero.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SequenceTracker implements SequenceTrackerMXBean {
+
+    private static final int WINDOW = Long.SIZE;
+
+    private final String name;
+
+    private final LatencyHistogram ageMicros = new LatencyHistogram();
+
+    // Plus grand numero recu, 0 avant le premier
+    private long highest;
+
+    // Bit i : numero highest - i deja recu
+    private long window;
+
+    private long received;
+
+    private long unsequenced;
+
+    private long missing;
+
+    private long gaps;
+
+    private long duplicates;
+
+    private long reordered;
+
+    private long restarts;
+
+    public SequenceTracker(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Enregistre le compteur aupres du serveur JMX de la JVM. Un second
+     * compteur du meme nom n'est pas expose.
+     */
+    public SequenceTracker register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(
+                    "fr.ensma.a3.ia.serviceapi:type=SequenceTracker,name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            // Deja enregistre : le premier reste visible
+        }
+        return this;
+    }
+
+    /**
+     * @param sequence       Numero du message, 0 s'il n'est pas numerote
+     * @param sendTimeMicros Instant d'envoi ({@link MonotonicClock}), 0 s'il est absent
+     * @return true si le message est le plus recent recu, false s'il est en
+     *         retard ou en double. Le resultat est indicatif : un emetteur qui
+     *         redemarre peut reutiliser des numeros deja vus
+     */
+    public synchronized boolean record(long sequence, long sendTimeMicros) {
+        recordAge(sendTimeMicros);
+        if (sequence <= 0) {
+            unsequenced++;
+            return true;
+        }
+        return recordSequence(sequence);
+    }
+
+    /**
+     * Enregistre un lot dont les echantillons portent les numeros
+     * {@code firstSequence} a {@code firstSequence + count - 1}.
+     */
+    public synchronized void record(long firstSequence, int count, long sendTimeMicros) {
+        recordAge(sendTimeMicros);
+        if (firstSequence <= 0) {
+            unsequenced += count;
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            recordSequence(firstSequence + i);
+        }
+    }
+
+    private boolean recordSequence(long sequence) {
+        received++;
+        if (highest == 0 || sequence > highest) {
+            if (highest != 0) {
+                long distance = sequence - highest;
+                if (distance > 1) {
+                    missing += distance - 1;
+                    gaps++;
+                }
+                window = distance >= WINDOW ? 0 : window << distance;
+            }
+            window |= 1;
+            highest = sequence;
+            return true;
+        }
+        long distance = highest - sequence;
+        if (distance >= WINDOW) {
+            // Hors de la fenetre : la numerotation repart de ce numero
+            restarts++;
+            highest = sequence;
+            window = 1;
+            return true;
+        }
+        long bit = 1L << distance;
+        if ((window & bit) != 0) {
+            duplicates++;
+            return false;
+        }
+        window |= bit;
+        reordered++;
+        missing--;
+        return false;
+    }
+
+    private void recordAge(long sendTimeMicros) {
+        if (sendTimeMicros > 0) {
+            // Un age negatif (horloges decalees) est ramene a 0
+            ageMicros.record(MonotonicClock.currentTimeMicros() - sendTimeMicros);
+        }
+    }
+
+    @Override
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    @Override
+    public synchronized long getUnsequenced() {
+        return unsequenced;
+    }
+
+    @Override
+    public synchronized long getMissing() {
+        return missing;
+    }
+
+    @Override
+    public synchronized long getGaps() {
+        return gaps;
+    }
+
+    @Override
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public synchronized long getReordered() {
+        return reordered;
+    }
+
+    @Override
+    public synchronized long getRestarts() {
+        return restarts;
+    }
+
+    @Override
+    public long getAgeCount() {
+        return ageMicros.getCount();
+    }
+
+    @Override
+    public long getAgeP50Micros() {
+        return ageMicros.getValueAtQuantile(0.50);
+    }
+
+    @Override
+    public long getAgeP99Micros() {
+        return ageMicros.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getAgeMaxMicros() {
+        return ageMicros.getMax();
+    }
+
+    /**
+     * Remet les compteurs a zero ; la numerotation en cours est conservee.
+     */
+    @Override
+    public synchronized void reset() {
+        received = 0;
+        unsequenced = 0;
+        missing = 0;
+        gaps = 0;
+        duplicates = 0;
+        reordered = 0;
+        restarts = 0;
+        ageMicros.reset();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: recus=%d manquants=%d sauts=%d doublons=%d desordre=%d redemarrages=%d "
+                + "age p50=%dus p99=%dus max=%dus", name, received, missing, gaps, duplicates, reordered, restarts,
+                getAgeP50Micros(), getAgeP99Micros(), getAgeMaxMicros());
+    }
+}
@@ -0,0 +1,52 @@
+package fr.ensma.a3.ia.serviceapi;
+
+/**
+ * Compteurs et age a l'arrivee d'un flux numerote, exposes en JMX (jconsole,
+ * VisualVM) sous fr.ensma.a3.ia.serviceapi:type=SequenceTracker,name=canal.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public interface SequenceTrackerMXBean {
+
+    /**
+     * @return Messages (ou echantillons d'un lot) numerotes recus, doublons compris
+     */
+    long getReceived();
+
+    /**
+     * @return Messages recus sans numero de sequence
+     */
+    long getUnsequenced();
+
+    /**
+     * @return Numeros manquants, diminue quand un message en retard comble un trou
+     */
+    long getMissing();
+
+    /**
+     * @return Sauts de numerotation (un saut peut couvrir plusieurs messages)
+     */
+    long getGaps();
+
+    long getDuplicates();
+
+    /**
+     * @return Messages arrives apres un message de numero superieur
+     */
+    long getReordered();
+
+    /**
+     * @return Redemarrages de la numerotation (nouvel emetteur)
+     */
+    long getRestarts();
+
+    long getAgeCount();
+
+    long getAgeP50Micros();
+
+    long getAgeP99Micros();
+
+    long getAgeMaxMicros();
+
+    void reset();
+}
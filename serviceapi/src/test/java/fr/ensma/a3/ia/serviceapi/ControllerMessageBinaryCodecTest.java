@@ -0,0 +1,113 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ControllerMessageBinaryCodecTest {
+
+    private static ControllerMessage message(int streer, int throttle, int brake, int horizontal, int vertical,
+            boolean reset) {
+        ControllerMessage message = new ControllerMessage();
+        message.setStreer((byte) streer);
+        message.setThrottle((byte) throttle);
+        message.setBrake((byte) brake);
+        message.setHorirontalPanAssistantCamera((byte) horizontal);
+        message.setVerticalPanAssistantCamera((byte) vertical);
+        message.setResetPanAssistantCamera(reset);
+        return message;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        ByteBuffer encoded = new ControllerMessageBinaryEncoder().encode(message(-100, 80, 0, 127, -128, true));
+
+        assertEquals(ControllerMessageFlyweight.LENGTH, encoded.remaining());
+        ControllerMessageBinaryDecoder decoder = new ControllerMessageBinaryDecoder();
+        assertTrue(decoder.willDecode(encoded));
+        ControllerMessage decoded = decoder.decode(encoded);
+        assertEquals(-100f, decoded.getStreer());
+        assertEquals(80, decoded.getThrottle());
+        assertEquals(0f, decoded.getBrake());
+        assertEquals(127, decoded.getHorirontalPanAssistantCamera());
+        assertEquals(-128, decoded.getVerticalPanAssistantCamera());
+        assertTrue(decoded.isResetPanAssistantCamera());
+        assertEquals(0, decoded.getSequence());
+        assertEquals(0, decoded.getSendTimeMicros());
+    }
+
+    @Test
+    public void roundTripWithSequence() throws Exception {
+        ControllerMessage message = message(1, 2, 3, 4, 5, false);
+        // Numero au-dela de Integer.MAX_VALUE : lu en 32 bits non signes
+        message.setSequence(0xFFFFFFF0L);
+        message.setSendTimeMicros(1_700_000_000_000_000L);
+        ByteBuffer encoded = new ControllerMessageBinaryEncoder().encode(message);
+
+        assertEquals(ControllerMessageFlyweight.LENGTH_SEQUENCE, encoded.remaining());
+        assertEquals(ControllerMessageFlyweight.VERSION_SEQUENCE, encoded.get(1));
+        ControllerMessage decoded = new ControllerMessageBinaryDecoder().decode(encoded);
+        assertEquals(0xFFFFFFF0L, decoded.getSequence());
+        assertEquals(1_700_000_000_000_000L, decoded.getSendTimeMicros());
+        assertFalse(decoded.isResetPanAssistantCamera());
+        assertEquals(3f, decoded.getBrake());
+    }
+
+    @Test
+    public void encoderReusesBuffer() throws Exception {
+        ControllerMessageBinaryEncoder encoder = new ControllerMessageBinaryEncoder();
+        ControllerMessage numbered = message(1, 1, 1, 1, 1, false);
+        numbered.setSequence(1);
+        encoder.encode(numbered);
+
+        // Un message non numerote apres un numerote reprend la taille v1
+        assertEquals(ControllerMessageFlyweight.LENGTH, encoder.encode(message(2, 2, 2, 2, 2, false)).remaining());
+    }
+
+    @Test
+    public void version2ReadAsVersion1() {
+        ByteBuffer buffer = ByteBuffer.allocate(ControllerMessageFlyweight.LENGTH_SEQUENCE);
+        ControllerMessage message = message(10, 20, 30, 40, 50, false);
+        message.setSequence(42);
+        ControllerMessageFlyweight.write(message, buffer);
+
+        // Tronque aux 8 premiers octets : lisible, sans numero
+        ByteBuffer truncated = buffer.flip().limit(ControllerMessageFlyweight.LENGTH);
+        ControllerMessageFlyweight flyweight = new ControllerMessageFlyweight().wrap(truncated);
+        assertFalse(flyweight.hasSequence());
+        assertEquals(0, flyweight.getSequence());
+        assertEquals(50, flyweight.getVerticalPanAssistantCamera());
+    }
+
+    @Test
+    public void flyweightAtOffset() {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + ControllerMessageFlyweight.LENGTH);
+        buffer.position(3);
+        ControllerMessageFlyweight.write(message(7, 8, 9, 10, 11, true), buffer);
+        buffer.position(3);
+
+        ControllerMessageFlyweight flyweight = new ControllerMessageFlyweight().wrap(buffer);
+        assertEquals(7, flyweight.getStreer());
+        assertEquals(11, flyweight.getVerticalPanAssistantCamera());
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void willDecode() {
+        ControllerMessageBinaryDecoder decoder = new ControllerMessageBinaryDecoder();
+        assertFalse(decoder.willDecode(ByteBuffer.allocate(ControllerMessageFlyweight.LENGTH - 1)));
+        assertFalse(decoder.willDecode(ByteBuffer.allocate(ControllerMessageFlyweight.LENGTH)));
+        // Trame capteurs : autre magic
+        ByteBuffer frame = ByteBuffer.allocate(SensorFrame.LENGTH);
+        new SensorFrame().wrap(frame).initialize();
+        assertFalse(decoder.willDecode(frame));
+        assertFalse(decoder.willDecode(null));
+    }
+}
@@ -0,0 +1,61 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Memes valeurs attendues que LatencyHistogramTest du module simurcserver :
+ * les deux copies de l'histogramme doivent evoluer ensemble.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class LatencyHistogramTest {
+
+    private static final long[] SAMPLES = { 0, 1, 15, 16, 17, 31, 32, 33, 100, 1000, 1023, 1024, 1025, 65_535,
+            1_000_000, 123_456_789L, -5 };
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long sample : SAMPLES) {
+            histogram.record(sample);
+        }
+
+        assertEquals(17, histogram.getCount());
+        assertEquals(123_456_789L, histogram.getMax());
+        assertEquals(0, histogram.getValueAtQuantile(0));
+        assertEquals(0, histogram.getValueAtQuantile(0.1));
+        assertEquals(16, histogram.getValueAtQuantile(0.25));
+        assertEquals(33, histogram.getValueAtQuantile(0.5));
+        assertEquals(1087, histogram.getValueAtQuantile(0.75));
+        assertEquals(1_015_807, histogram.getValueAtQuantile(0.9));
+        // Borne haute du seau ramenee au maximum observe
+        assertEquals(123_456_789L, histogram.getValueAtQuantile(0.99));
+        assertEquals(123_456_789L, histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void buckets() {
+        // Valeur -> borne haute de son seau : exacte sous 32, puis 16 seaux par puissance de deux
+        long[][] bounds = { { 16, 16 }, { 31, 31 }, { 32, 33 }, { 33, 33 }, { 34, 35 }, { 1000, 1023 },
+                { 1025, 1087 }, { 1_000_000, 1_015_807 } };
+        for (long[] bound : bounds) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(bound[0]);
+            histogram.record(Long.MAX_VALUE / 2);
+            assertEquals(bound[1], histogram.getValueAtQuantile(0.5));
+        }
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+    }
+}
@@ -0,0 +1,156 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorBatchMessageTest {
+
+    private static SensorBatchMessage batch(int count) {
+        SensorBatchMessage batch = new SensorBatchMessage(count);
+        for (int i = 0; i < count; i++) {
+            assertTrue(batch.add(1000 + 10L * i, i, -i, 9.81f, 0.1f * i, 0, Float.NaN, 21.5f));
+        }
+        return batch;
+    }
+
+    private static ByteBuffer encode(SensorBatchMessage batch) {
+        ByteBuffer buffer = ByteBuffer.allocate(batch.getEncodedLength());
+        batch.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+        return buffer.flip();
+    }
+
+    @Test
+    public void roundTrip() {
+        ByteBuffer buffer = encode(batch(5));
+
+        assertEquals(SensorBatchMessage.HEADER_LENGTH + 5 * 30, buffer.remaining());
+        assertTrue(SensorBatchMessage.matches(buffer));
+        SensorBatchMessage decoded = new SensorBatchMessage(1);
+        decoded.readFrom(buffer);
+        assertEquals(0, buffer.remaining());
+        assertEquals(5, decoded.getCount());
+        assertEquals(1000, decoded.getBaseTimestampMs());
+        assertEquals(1040, decoded.getTimestampMs(4));
+        assertEquals(40, decoded.getDeltaMs(4));
+        assertEquals(-3f, decoded.getaY(3));
+        assertEquals(9.81f, decoded.getaZ(0));
+        assertEquals(0.1f * 2, decoded.getgX(2));
+        assertTrue(Float.isNaN(decoded.getgZ(1)));
+        assertEquals(21.5f, decoded.getTemperature(4));
+        assertEquals(0, decoded.getSequence());
+    }
+
+    @Test
+    public void roundTripWithSequence() {
+        SensorBatchMessage batch = batch(3);
+        batch.setSequence(0xFFFFFFFEL, 123456789L);
+        ByteBuffer buffer = encode(batch);
+
+        assertEquals(SensorBatchMessage.HEADER_LENGTH_SEQUENCE + 3 * 30, buffer.remaining());
+        assertEquals(SensorBatchMessage.VERSION_SEQUENCE, buffer.get(1));
+        SensorBatchMessage decoded = new SensorBatchMessage();
+        decoded.readFrom(buffer);
+        assertEquals(0xFFFFFFFEL, decoded.getSequence());
+        assertEquals(123456789L, decoded.getSendTimeMicros());
+        assertEquals(1020, decoded.getTimestampMs(2));
+    }
+
+    @Test
+    public void readResetsSequence() {
+        SensorBatchMessage numbered = batch(2);
+        numbered.setSequence(10, 1);
+        SensorBatchMessage decoded = new SensorBatchMessage();
+        decoded.readFrom(encode(numbered));
+
+        decoded.readFrom(encode(batch(2)));
+        assertEquals(0, decoded.getSequence());
+        assertEquals(0, decoded.getSendTimeMicros());
+    }
+
+    @Test
+    public void empty() {
+        SensorBatchMessage decoded = new SensorBatchMessage();
+        decoded.readFrom(encode(new SensorBatchMessage()));
+
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void addLimits() {
+        SensorBatchMessage batch = new SensorBatchMessage(2);
+        assertTrue(batch.add(100, 0, 0, 0, 0, 0, 0, 0));
+        // Anterieur a la base, ou au-dela de la fenetre des ecarts 16 bits
+        assertFalse(batch.add(99, 0, 0, 0, 0, 0, 0, 0));
+        assertFalse(batch.add(100 + SensorBatchMessage.MAX_DELTA_MS + 1, 0, 0, 0, 0, 0, 0, 0));
+        assertTrue(batch.add(100 + SensorBatchMessage.MAX_DELTA_MS, 0, 0, 0, 0, 0, 0, 0));
+        assertTrue(batch.isFull());
+        assertFalse(batch.add(101, 0, 0, 0, 0, 0, 0, 0));
+        assertEquals(2, batch.getCount());
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+        assertTrue(batch.add(5000, 0, 0, 0, 0, 0, 0, 0));
+        assertEquals(5000, batch.getBaseTimestampMs());
+    }
+
+    @Test
+    public void maxDeltaRoundTrip() {
+        SensorBatchMessage batch = new SensorBatchMessage(2);
+        batch.add(0, 0, 0, 0, 0, 0, 0, 0);
+        batch.add(SensorBatchMessage.MAX_DELTA_MS, 0, 0, 0, 0, 0, 0, 0);
+        SensorBatchMessage decoded = new SensorBatchMessage();
+        decoded.readFrom(encode(batch));
+
+        // Ecart 0xFFFF relu non signe
+        assertEquals(SensorBatchMessage.MAX_DELTA_MS, decoded.getDeltaMs(1));
+    }
+
+    @Test
+    public void readGrowsCapacity() {
+        SensorBatchMessage decoded = new SensorBatchMessage(1);
+        decoded.readFrom(encode(batch(40)));
+
+        assertEquals(40, decoded.getCount());
+        assertEquals(1390, decoded.getTimestampMs(39));
+    }
+
+    @Test
+    public void matches() {
+        ByteBuffer buffer = encode(batch(4));
+        assertTrue(SensorBatchMessage.matches(buffer));
+        // Lot tronque
+        assertFalse(SensorBatchMessage.matches(buffer.duplicate().limit(buffer.limit() - 1)));
+        // Version inconnue
+        ByteBuffer future = encode(batch(4));
+        future.put(1, (byte) 9);
+        assertFalse(SensorBatchMessage.matches(future));
+        assertFalse(SensorBatchMessage.matches(ByteBuffer.allocate(SensorBatchMessage.HEADER_LENGTH)));
+        assertFalse(SensorBatchMessage.matches(null));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        SensorBatchMessage batch = batch(3);
+        batch.setSequence(21, 99);
+        String json = new SensorBatchMessageEncoder().encode(batch);
+
+        SensorBatchMessageDecoder decoder = new SensorBatchMessageDecoder();
+        assertTrue(decoder.willDecode(json));
+        SensorBatchMessage decoded = decoder.decode(json);
+        assertEquals(3, decoded.getCount());
+        assertEquals(21, decoded.getSequence());
+        assertEquals(99, decoded.getSendTimeMicros());
+        assertEquals(1020, decoded.getTimestampMs(2));
+        assertEquals(-2f, decoded.getaY(2));
+        assertTrue(Float.isNaN(decoded.getgZ(0)));
+    }
+}
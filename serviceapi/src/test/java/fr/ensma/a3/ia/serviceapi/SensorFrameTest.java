@@ -0,0 +1,105 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorFrameTest {
+
+    /**
+     * Trame v2 de reference. Le relais relit exactement ces octets dans
+     * SensorFrameViewTest (simurcserver) : toute evolution du format doit
+     * modifier les deux tests ensemble.
+     */
+    static final String REFERENCE_FRAME = "A502030000000007" + "00000000000003E8" + "00000000000003DE"
+            + "3FC00000C0100000" + "411C00003F000000" + "BE00000040400000" + "41CC0000422A0000"
+            + "00000000000003E3" + "000000000001E240";
+
+    private static ByteBuffer referenceFrame() {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.LENGTH_SEQUENCE);
+        new SensorFrame().wrap(buffer).initialize().setTimestampMs(1000)
+                .setMpuData(990, 1.5f, -2.25f, 9.75f, 0.5f, -0.125f, 3.0f, 25.5f).setUrmData(995, 42.5f)
+                .setSequence(7, 123456);
+        return buffer;
+    }
+
+    @Test
+    public void layout() {
+        assertArrayEquals(HexFormat.of().parseHex(REFERENCE_FRAME), referenceFrame().array());
+    }
+
+    @Test
+    public void roundTrip() {
+        SensorFrame frame = new SensorFrame().wrap(referenceFrame());
+
+        assertTrue(frame.hasSequence());
+        assertEquals(SensorFrame.LENGTH_SEQUENCE, frame.getLength());
+        assertEquals(7, frame.getSequence());
+        assertEquals(123456, frame.getSendTimeMicros());
+        assertEquals(1000, frame.getTimestampMs());
+        assertTrue(frame.hasMpuData());
+        assertEquals(990, frame.getMpuTimestampMs());
+        assertEquals(1.5f, frame.getAccelX());
+        assertEquals(-2.25f, frame.getAccelY());
+        assertEquals(9.75f, frame.getAccelZ());
+        assertEquals(0.5f, frame.getGyroX());
+        assertEquals(-0.125f, frame.getGyroY());
+        assertEquals(3.0f, frame.getGyroZ());
+        assertEquals(25.5f, frame.getTemperature());
+        assertTrue(frame.hasUrmData());
+        assertEquals(995, frame.getUrmTimestampMs());
+        assertEquals(42.5f, frame.getDistanceCm());
+    }
+
+    @Test
+    public void version1() {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.LENGTH);
+        SensorFrame frame = new SensorFrame().wrap(buffer).initialize().setTimestampMs(5);
+
+        assertEquals(SensorFrame.VERSION, frame.getVersion());
+        assertEquals(SensorFrame.LENGTH, frame.getLength());
+        assertFalse(frame.hasSequence());
+        assertEquals(0, frame.getSequence());
+        assertFalse(frame.hasMpuData());
+        assertFalse(frame.hasUrmData());
+    }
+
+    @Test
+    public void version2ReadAsVersion1() {
+        // Un lecteur v1 ne voit que les 64 premiers octets
+        ByteBuffer truncated = referenceFrame().limit(SensorFrame.LENGTH);
+        SensorFrame frame = new SensorFrame().wrap(truncated);
+
+        assertTrue(SensorFrame.matches(truncated));
+        assertFalse(frame.hasSequence());
+        assertEquals(0, frame.getSendTimeMicros());
+        assertEquals(42.5f, frame.getDistanceCm());
+    }
+
+    @Test
+    public void matches() {
+        assertTrue(SensorFrame.matches(referenceFrame()));
+        assertFalse(SensorFrame.matches(ByteBuffer.allocate(SensorFrame.LENGTH)));
+        assertFalse(SensorFrame.matches(referenceFrame().position(1)));
+        assertFalse(SensorFrame.matches(null));
+    }
+
+    @Test
+    public void initializeClearsFlags() {
+        ByteBuffer buffer = referenceFrame();
+        SensorFrame frame = new SensorFrame().wrap(buffer).initialize();
+
+        assertFalse(frame.hasMpuData());
+        assertFalse(frame.hasUrmData());
+        assertEquals(SensorFrame.VERSION, frame.getVersion());
+    }
+}
@@ -0,0 +1,146 @@
+package fr.ensma.a3.ia.serviceapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SequenceTrackerTest {
+
+    @Test
+    public void inOrder() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        for (long sequence = 1; sequence <= 100; sequence++) {
+            assertTrue(tracker.record(sequence, 0));
+        }
+
+        assertEquals(100, tracker.getReceived());
+        assertEquals(0, tracker.getMissing());
+        assertEquals(0, tracker.getGaps());
+        assertEquals(0, tracker.getDuplicates());
+        assertEquals(0, tracker.getReordered());
+        assertEquals(0, tracker.getRestarts());
+    }
+
+    @Test
+    public void gapThenLateArrival() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, 0);
+        assertTrue(tracker.record(5, 0));
+        assertEquals(3, tracker.getMissing());
+        assertEquals(1, tracker.getGaps());
+
+        // Le message 3 arrive en retard : il comble un trou
+        assertFalse(tracker.record(3, 0));
+        assertEquals(2, tracker.getMissing());
+        assertEquals(1, tracker.getReordered());
+    }
+
+    @Test
+    public void duplicate() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, 0);
+        tracker.record(2, 0);
+        tracker.record(3, 0);
+
+        assertFalse(tracker.record(2, 0));
+        assertFalse(tracker.record(3, 0));
+        assertEquals(2, tracker.getDuplicates());
+        assertEquals(0, tracker.getMissing());
+        assertEquals(0, tracker.getReordered());
+    }
+
+    @Test
+    public void windowEdge() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, 0);
+        tracker.record(100, 0);
+
+        // Derniere position de la fenetre (100 - 63) : desordre, pas redemarrage
+        assertFalse(tracker.record(37, 0));
+        assertEquals(1, tracker.getReordered());
+        assertEquals(0, tracker.getRestarts());
+        assertFalse(tracker.record(37, 0));
+        assertEquals(1, tracker.getDuplicates());
+    }
+
+    @Test
+    public void windowSlidesOverLargeJump() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(10, 0);
+        tracker.record(10 + 64, 0);
+
+        // 10 est sorti de la fenetre : la numerotation repart
+        assertTrue(tracker.record(10, 0));
+        assertEquals(1, tracker.getRestarts());
+        assertEquals(0, tracker.getDuplicates());
+    }
+
+    @Test
+    public void senderRestart() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        for (long sequence = 1; sequence <= 500; sequence++) {
+            tracker.record(sequence, 0);
+        }
+
+        // Simulateur reconnecte : sa numerotation repart de 1 et ses messages
+        // sont de nouveau les plus recents
+        assertTrue(tracker.record(1, 0));
+        assertEquals(1, tracker.getRestarts());
+        for (long sequence = 2; sequence <= 100; sequence++) {
+            assertTrue(tracker.record(sequence, 0));
+        }
+        assertEquals(0, tracker.getDuplicates());
+        assertEquals(0, tracker.getMissing());
+    }
+
+    @Test
+    public void unsequenced() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        assertTrue(tracker.record(0, 0));
+        assertTrue(tracker.record(0, 0));
+
+        assertEquals(2, tracker.getUnsequenced());
+        assertEquals(0, tracker.getReceived());
+    }
+
+    @Test
+    public void batch() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, 10, 0);
+        tracker.record(21, 10, 0);
+
+        assertEquals(20, tracker.getReceived());
+        assertEquals(10, tracker.getMissing());
+        assertEquals(1, tracker.getGaps());
+
+        tracker.record(0, 5, 0);
+        assertEquals(5, tracker.getUnsequenced());
+    }
+
+    @Test
+    public void age() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, MonotonicClock.currentTimeMicros());
+
+        assertEquals(1, tracker.getAgeCount());
+    }
+
+    @Test
+    public void reset() {
+        SequenceTracker tracker = new SequenceTracker("test");
+        tracker.record(1, 0);
+        tracker.record(3, 0);
+        tracker.reset();
+
+        assertEquals(0, tracker.getReceived());
+        assertEquals(0, tracker.getMissing());
+        // La numerotation en cours est conservee
+        assertTrue(tracker.record(4, 0));
+        assertEquals(0, tracker.getGaps());
+    }
+}
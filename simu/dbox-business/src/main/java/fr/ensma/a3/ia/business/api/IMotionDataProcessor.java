@@ -26,6 +26,9 @@ public interface IMotionDataProcessor {
      * 4. Calcul des vibrations moteur (RPM, torque) si applicable
      * 5. Application des gains et filtres configurés
      *
+     * L'instance renvoyée appartient au processor et est réécrite à chaque
+     * appel : elle doit être utilisée (ou copiée) avant l'appel suivant.
+     *
      * @param rawData Données brutes du capteur MPU6050
      * @return Données traitées prêtes pour la DBOX, ou null si données invalides
      */
@@ -93,6 +93,19 @@ public interface IMotionService extends AutoCloseable {
      */
     boolean processAndSend(String jsonMessage);
 
+    /**
+     * Traite et envoie un échantillon MPU passé champ par champ
+     *
+     * Surcharge sans objet intermédiaire, appelée lorsque la couche Service lit
+     * les trames binaires en place : aucune allocation par échantillon.
+     *
+     * @param timestampMs Horodatage de l'échantillon (ms)
+     * @return true si le traitement et l'envoi ont réussi, false sinon
+     * @throws IllegalStateException si le service n'est pas démarré
+     */
+    boolean processAndSend(long timestampMs, float accelX, float accelY, float accelZ,
+                           float gyroX, float gyroY, float gyroZ, float temperature);
+
     /**
      * Envoie une commande de position neutre à la DBOX
      *
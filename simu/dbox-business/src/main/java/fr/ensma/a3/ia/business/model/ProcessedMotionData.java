@@ -228,6 +228,30 @@ public class ProcessedMotionData {
         );
     }
 
+    /**
+     * Remplace toutes les valeurs (avec clamping) sans créer de nouvelle instance
+     */
+    public void set(long timestamp, float roll, float pitch, float heave, float rpm, float torque) {
+        this.timestamp = timestamp;
+        setRoll(roll);
+        setPitch(pitch);
+        setHeave(heave);
+        setRpm(rpm);
+        setTorque(torque);
+    }
+
+    /**
+     * Recopie les valeurs d'une autre instance
+     */
+    public void copyFrom(ProcessedMotionData other) {
+        this.timestamp = other.timestamp;
+        this.roll = other.roll;
+        this.pitch = other.pitch;
+        this.heave = other.heave;
+        this.rpm = other.rpm;
+        this.torque = other.torque;
+    }
+
     /**
      * Crée une copie des données
      */
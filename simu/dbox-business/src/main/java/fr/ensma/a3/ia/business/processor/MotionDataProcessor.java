@@ -98,6 +98,9 @@ public class MotionDataProcessor implements IMotionDataProcessor {
     /** Dernières valeurs traitées (pour le filtrage) */
     private ProcessedMotionData lastProcessed;
 
+    /** Résultat renvoyé par process(), réécrit à chaque appel */
+    private final ProcessedMotionData current = new ProcessedMotionData();
+
     // ===========================================================================
     // CONSTRUCTEUR
     // ===========================================================================
@@ -199,7 +202,8 @@ public class MotionDataProcessor implements IMotionDataProcessor {
 
         // === ETAPE 6: CREATION DES DONNEES TRAITEES ===
 
-        ProcessedMotionData processed = new ProcessedMotionData(
+        // Instance réutilisée : aucune allocation par échantillon
+        current.set(
             rawData.getTimestamp(),
             roll,
             pitch,
@@ -209,14 +213,14 @@ public class MotionDataProcessor implements IMotionDataProcessor {
         );
 
         // Sauvegarde pour le prochain filtrage
-        lastProcessed = processed.copy();
+        lastProcessed.copyFrom(current);
 
-        return processed;
+        return current;
     }
 
     @Override
     public void reset() {
-        lastProcessed = new ProcessedMotionData(); // Retour position neutre
+        lastProcessed.reset(); // Retour position neutre
         System.out.println("[MotionDataProcessor] Reset effectué");
     }
 
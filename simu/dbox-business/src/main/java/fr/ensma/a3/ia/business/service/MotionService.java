@@ -40,6 +40,9 @@ public class MotionService implements IMotionService, AutoCloseable {
     private long processedPacketCount;
     private long errorCount;
 
+    /** Échantillon réutilisé par les surcharges JSON et champ par champ (un seul thread appelant) */
+    private final RawMotionData sample = new RawMotionData();
+
     /**
      * Constructeur avec DBOX activée
      */
@@ -230,7 +233,7 @@ public class MotionService implements IMotionService, AutoCloseable {
             }
 
             MpuDataDTO mpu = sensorData.getMpuData();
-            RawMotionData rawData = new RawMotionData(
+            return processAndSend(
                 mpu.getTimestampMs(),
                 mpu.getAccelX(),
                 mpu.getAccelY(),
@@ -241,8 +244,6 @@ public class MotionService implements IMotionService, AutoCloseable {
                 mpu.getTemperature()
             );
 
-            return processAndSend(rawData);
-
         } catch (Exception e) {
             errorCount++;
             lastError = "Erreur de parsing JSON: " + e.getMessage();
@@ -251,6 +252,20 @@ public class MotionService implements IMotionService, AutoCloseable {
         }
     }
 
+    @Override
+    public boolean processAndSend(long timestampMs, float accelX, float accelY, float accelZ,
+                                  float gyroX, float gyroY, float gyroZ, float temperature) {
+        sample.setTimestamp(timestampMs);
+        sample.setAccelX(accelX);
+        sample.setAccelY(accelY);
+        sample.setAccelZ(accelZ);
+        sample.setGyroX(gyroX);
+        sample.setGyroY(gyroY);
+        sample.setGyroZ(gyroZ);
+        sample.setTemperature(temperature);
+        return processAndSend(sample);
+    }
+
     @Override
     public boolean sendNeutralPosition() {
         if (!running) {
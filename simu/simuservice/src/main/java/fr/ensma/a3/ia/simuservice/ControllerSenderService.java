@@ -2,17 +2,23 @@ package fr.ensma.a3.ia.simuservice;
 
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.glassfish.tyrus.client.ClientManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.ensma.a3.ia.serviceapi.ControllerMessage;
+import fr.ensma.a3.ia.serviceapi.ControllerMessageBinaryEncoder;
 import fr.ensma.a3.ia.serviceapi.ControllerMessageEncoder;
+import fr.ensma.a3.ia.serviceapi.HandshakeMessage;
+import fr.ensma.a3.ia.serviceapi.MonotonicClock;
 import fr.ensma.a3.ia.simucontrollerbusiness.ISimuControllerBusiness;
 import jakarta.websocket.ClientEndpointConfig;
 import jakarta.websocket.Endpoint;
 import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
 import jakarta.websocket.Session;
 
 /**
@@ -22,10 +28,21 @@ public class ControllerSenderService {
 
 	private static final Logger logger = LoggerFactory.getLogger(ControllerSenderService.class);
 
+	private static final long WELCOME_TIMEOUT_MS = 2000;
+
 	private ISimuControllerBusiness simuControllerBusiness;
 
+	private boolean binaryCodec;
+
+	private volatile HandshakeMessage welcome;
+
 	public ControllerSenderService(ISimuControllerBusiness simuControllerBusiness) {
+		this(simuControllerBusiness, false);
+	}
+
+	public ControllerSenderService(ISimuControllerBusiness simuControllerBusiness, boolean binaryCodec) {
 		this.simuControllerBusiness = simuControllerBusiness;
+		this.binaryCodec = binaryCodec;
 	}
 
 	private byte floatToByte(float value) {
@@ -35,21 +52,49 @@ public class ControllerSenderService {
 
 	public void connect(String wsUrl) {
 		try {
-			final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create()
-					.encoders(List.of(ControllerMessageEncoder.class)).build();
+			final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
 			ClientManager client = ClientManager.createClient();
+			CountDownLatch welcomed = new CountDownLatch(1);
 
 			Session currentSession = client.connectToServer(new Endpoint() {
 				@Override
 				public void onOpen(Session session, EndpointConfig config) {
 					logger.info("Connecte au controleur");
+					session.addMessageHandler(new MessageHandler.Whole<String>() {
+						@Override
+						public void onMessage(String message) {
+							HandshakeMessage response = HandshakeMessage.parseWelcome(message);
+							if (response != null) {
+								welcome = response;
+								welcomed.countDown();
+							}
+						}
+					});
 				}
 			}, cec, new URI(wsUrl));
 
+			// Annonce des codecs : le relais choisit, et transcode pour les recepteurs qui ne lisent pas le binaire
+			List<String> codecs = binaryCodec
+					? List.of(HandshakeMessage.CODEC_BINARY_V1, HandshakeMessage.CODEC_JSON)
+					: List.of(HandshakeMessage.CODEC_JSON);
+			currentSession.getBasicRemote().sendText(
+					HandshakeMessage.hello(codecs, List.of(HandshakeMessage.FEATURE_SEQUENCE)).toJson());
+
 			Runnable sendTask = () -> {
+				// Envoi synchrone : le meme message est reutilise a chaque iteration
+				ControllerMessage newMessage = new ControllerMessage();
+				ControllerMessageEncoder jsonEncoder = new ControllerMessageEncoder();
+				ControllerMessageBinaryEncoder binaryEncoder = new ControllerMessageBinaryEncoder();
 				try {
+					// Sans reponse (ancien relais), seul le JSON historique est sur
+					boolean accepted = welcomed.await(WELCOME_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+					boolean binary = accepted && HandshakeMessage.CODEC_BINARY_V1.equals(welcome.getCodec());
+					// Numero de sequence et instant d'envoi : le recepteur ecarte les commandes perimees
+					boolean sequenced = accepted && welcome.hasFeature(HandshakeMessage.FEATURE_SEQUENCE);
+					long sequence = 0;
+					logger.info("Format des commandes : {}{}", binary ? "binaire" : "JSON",
+							sequenced ? ", numerotees" : "");
 					while (!Thread.currentThread().isInterrupted() && currentSession.isOpen()) {
-						ControllerMessage newMessage = new ControllerMessage();
 						newMessage.setThrottle(floatToByte(simuControllerBusiness.getThrottle()));
 						newMessage.setBrake(floatToByte(simuControllerBusiness.getBrake()));
 						newMessage.setHorirontalPanAssistantCamera(
@@ -58,11 +103,19 @@ public class ControllerSenderService {
 								floatToByte(simuControllerBusiness.getVerticalPanAssistantCamera()));
 						newMessage.setStreer(floatToByte(simuControllerBusiness.getSteer()));
 						newMessage.setResetPanAssistantCamera(simuControllerBusiness.getInitPanAssistantCamera());
+						if (sequenced) {
+							newMessage.setSequence(++sequence);
+							newMessage.setSendTimeMicros(MonotonicClock.currentTimeMicros());
+						}
 
 						logger.trace("Envoi: throttle={} brake={} steer={}",
 								newMessage.getThrottle(), newMessage.getBrake(), newMessage.getStreer());
 
-						currentSession.getBasicRemote().sendObject(newMessage);
+						if (binary) {
+							currentSession.getBasicRemote().sendBinary(binaryEncoder.encode(newMessage));
+						} else {
+							currentSession.getBasicRemote().sendText(jsonEncoder.encode(newMessage));
+						}
 						Thread.sleep(100);
 					}
 				} catch (InterruptedException e) {
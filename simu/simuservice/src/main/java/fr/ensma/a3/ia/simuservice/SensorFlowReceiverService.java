@@ -1,12 +1,24 @@
 package fr.ensma.a3.ia.simuservice;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.glassfish.tyrus.client.ClientManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import fr.ensma.a3.ia.business.api.IMotionService;
+import fr.ensma.a3.ia.serviceapi.HandshakeMessage;
+import fr.ensma.a3.ia.serviceapi.SensorBatchMessage;
+import fr.ensma.a3.ia.serviceapi.SensorBatchMessageDecoder;
+import fr.ensma.a3.ia.serviceapi.SensorFrame;
+import fr.ensma.a3.ia.serviceapi.SequenceTracker;
 import jakarta.websocket.ClientEndpointConfig;
 import jakarta.websocket.Endpoint;
 import jakarta.websocket.EndpointConfig;
@@ -14,19 +26,38 @@ import jakarta.websocket.MessageHandler;
 import jakarta.websocket.Session;
 
 /**
+ * Recoit le flux capteurs sous toutes ses formes (echantillon JSON, trame
+ * binaire, lot JSON ou binaire) et le transmet a {@link IMotionService}. Les
+ * numeros de sequence des echantillons alimentent un {@link SequenceTracker}
+ * expose en JMX (pertes, doublons, desordre, age a l'arrivee).
+ *
  * @author Mickael BARON (mickael.baron@ensma.fr)
  */
 public class SensorFlowReceiverService {
 
     private static final Logger logger = LoggerFactory.getLogger(SensorFlowReceiverService.class);
 
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
     private final IMotionService motionService;
 
+    private final SensorBatchMessageDecoder batchDecoder = new SensorBatchMessageDecoder();
+
+    private final SensorBatchMessage binaryBatch = new SensorBatchMessage();
+
+    private final SensorFrame frame = new SensorFrame();
+
+    private final SequenceTracker sequenceTracker = new SequenceTracker("sensorflow").register();
+
     public SensorFlowReceiverService(IMotionService motionService) {
         this.motionService = motionService;
     }
 
     public void connect(String wsUrl) {
+        // Tous les encodages sont lus : le relais ne transcode pas pour ce recepteur
+        List<String> codecs = List.of(HandshakeMessage.CODEC_BINARY_V1, HandshakeMessage.CODEC_BATCH,
+                HandshakeMessage.CODEC_JSON);
+        List<String> features = List.of(HandshakeMessage.FEATURE_SEQUENCE);
         try {
             final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
             ClientManager client = ClientManager.createClient();
@@ -39,13 +70,77 @@ public class SensorFlowReceiverService {
 
                         @Override
                         public void onMessage(String message) {
-                            motionService.processAndSend(message);
+                            if (batchDecoder.willDecode(message)) {
+                                try {
+                                    processBatch(batchDecoder.decode(message));
+                                } catch (Exception e) {
+                                    logger.error("Lot capteurs illisible: {}", e.getMessage());
+                                }
+                            } else {
+                                recordSequence(message);
+                                motionService.processAndSend(message);
+                            }
+                        }
+                    });
+                    session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+
+                        @Override
+                        public void onMessage(ByteBuffer message) {
+                            if (SensorFrame.matches(message)) {
+                                // Lecture en place, sans DTO
+                                frame.wrap(message);
+                                sequenceTracker.record(frame.getSequence(), frame.getSendTimeMicros());
+                                if (frame.hasMpuData()) {
+                                    motionService.processAndSend(frame.getMpuTimestampMs(), frame.getAccelX(),
+                                            frame.getAccelY(), frame.getAccelZ(), frame.getGyroX(), frame.getGyroY(),
+                                            frame.getGyroZ(), frame.getTemperature());
+                                }
+                            } else if (SensorBatchMessage.matches(message)) {
+                                binaryBatch.readFrom(message);
+                                processBatch(binaryBatch);
+                            } else {
+                                logger.debug("Message binaire ignore ({} octets)", message.remaining());
+                            }
                         }
                     });
                 }
-            }, cec, new URI(wsUrl));
+            }, cec, new URI(HandshakeMessage.withCodecs(wsUrl, codecs, features)));
         } catch (Exception e) {
             logger.error("Impossible de se connecter au flux capteurs", e);
         }
     }
+
+    // Lit seulement les champs de premier niveau "sequence" et "sendTimeMicros"
+    private void recordSequence(String message) {
+        long sequence = 0;
+        long sendTimeMicros = 0;
+        if (message.contains("\"sequence\"")) {
+            try (JsonParser parser = jsonFactory.createParser(message)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if ("sequence".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                            sequence = parser.getLongValue();
+                        } else if ("sendTimeMicros".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                            sendTimeMicros = parser.getLongValue();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Numero de sequence illisible: {}", e.getMessage());
+            }
+        }
+        sequenceTracker.record(sequence, sendTimeMicros);
+    }
+
+    private void processBatch(SensorBatchMessage batch) {
+        sequenceTracker.record(batch.getSequence(), batch.getCount(), batch.getSendTimeMicros());
+        for (int i = 0; i < batch.getCount(); i++) {
+            motionService.processAndSend(batch.getTimestampMs(i), batch.getaX(i), batch.getaY(i), batch.getaZ(i),
+                    batch.getgX(i), batch.getgY(i), batch.getgZ(i), batch.getTemperature(i));
+        }
+    }
 }
@@ -28,6 +28,9 @@ public class SimuServiceLauncher implements Runnable {
     @Option(names = "--no-dbox", description = "Desactive la connexion DBOX (mode test)")
     boolean noDbox;
 
+    @Option(names = "--binary-controller", description = "Propose au relais le format binaire compact pour les controles")
+    boolean binaryController;
+
     @Override
     public void run() {
         printBanner();
@@ -41,7 +44,8 @@ public class SimuServiceLauncher implements Runnable {
 
         if (controllerEnabled) {
             ISimuControllerBusiness simuControllerBusiness = SimuControllerBusiness.getInstance();
-            ControllerSenderService controllerSenderService = new ControllerSenderService(simuControllerBusiness);
+            ControllerSenderService controllerSenderService = new ControllerSenderService(simuControllerBusiness,
+                    binaryController);
             controllerSenderService.connect("wss://rcsimu-ia.ensma.fr/rccontroller/sender");
         }
 
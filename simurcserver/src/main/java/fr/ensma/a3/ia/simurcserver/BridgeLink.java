@@ -0,0 +1,133 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+
+/**
+ * Abonnement d'un noeud a un canal d'un autre noeud : une seule connexion par
+ * noeud distant et par canal, quel que soit le nombre de recepteurs locaux.
+ * Les messages recus sont reinjectes dans le registre local.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class BridgeLink {
+
+    private final String peer;
+
+    private final SessionRegistry<String> registry;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private volatile Session session;
+
+    private volatile boolean connecting;
+
+    private volatile boolean closed;
+
+    public BridgeLink(String peer, SessionRegistry<String> registry) {
+        this.peer = peer;
+        this.registry = registry;
+    }
+
+    /**
+     * Ouvre la connexion sur un thread de connector : un noeud injoignable
+     * (connectToServer bloque jusqu'a l'expiration du delai) ne retarde ni les
+     * autres liens ni leurs reconnexions.
+     */
+    void connectAsync(ExecutorService connector, WebSocketContainer container, String nodeId) {
+        connecting = true;
+        connector.execute(() -> {
+            try {
+                connect(container, nodeId);
+            } catch (Exception e) {
+                System.err.println("Noeud injoignable " + peer + " : " + e.getMessage());
+            } finally {
+                connecting = false;
+            }
+        });
+    }
+
+    void connect(WebSocketContainer container, String nodeId) throws Exception {
+        URI uri = new URI(peer + "/" + registry.getChannel() + "/" + registry.getVehicle() + "/receiver?"
+                + ClusterBridge.BRIDGE_PARAMETER + "=" + nodeId);
+        session = container.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+                session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                    @Override
+                    public void onMessage(String message) {
+                        receivedCount.incrementAndGet();
+                        registry.broadcastBridged(message, RelayMessage.sizeOf(message));
+                    }
+                });
+                session.addMessageHandler(ByteBuffer.class, new MessageHandler.Whole<ByteBuffer>() {
+                    @Override
+                    public void onMessage(ByteBuffer message) {
+                        receivedCount.incrementAndGet();
+                        // Le conteneur peut reutiliser son tampon
+                        ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+                        copy.put(message).flip();
+                        registry.broadcastBridged(copy.asReadOnlyBuffer(), copy.remaining());
+                    }
+                });
+            }
+
+            @Override
+            public void onClose(Session session, CloseReason closeReason) {
+                System.out.println("Lien de cluster ferme (" + peer + ", " + registry.getChannel() + "/"
+                        + registry.getVehicle() + ") : " + closeReason.getReasonPhrase());
+            }
+        }, ClientEndpointConfig.Builder.create().build(), uri);
+        if (closed) {
+            // Lien abandonne pendant la connexion
+            close();
+        }
+    }
+
+    public boolean isOpen() {
+        Session current = session;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * @return true tant que la connexion est en cours d'ouverture
+     */
+    public boolean isConnecting() {
+        return connecting;
+    }
+
+    void close() {
+        closed = true;
+        Session current = session;
+        if (current != null && current.isOpen()) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la fermeture du lien de cluster : " + e.getMessage());
+            }
+        }
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public SessionRegistry<String> getRegistry() {
+        return registry;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+}
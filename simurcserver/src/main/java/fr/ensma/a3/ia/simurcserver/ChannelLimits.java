@@ -0,0 +1,137 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Limites de debit d'un canal, modifiables a chaud (voir
+ * {@link RelayLimitsServlet}) : par emetteur, pour l'ensemble du canal (tous
+ * vehicules confondus) et pour le serveur. Un canal de controle
+ * (rccontroller, webcamcontroller) n'est jamais refuse par la limite du
+ * serveur mais la consomme : ce sont les flux les plus lourds qui cedent
+ * quand le serveur est charge.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ChannelLimits {
+
+    private static final TokenBucket globalBytes = new TokenBucket(RelayConfig.getLimitBurstBytes(null));
+
+    private static volatile double globalBytesPerSecond = RelayConfig.getInt(null, "limit.global.bytesPerSecond", 0);
+
+    private final boolean control;
+
+    private final TokenBucket channelMessages = new TokenBucket();
+
+    private final int burstBytes;
+
+    private final TokenBucket channelBytes;
+
+    private volatile double senderMessagesPerSecond;
+
+    private volatile double senderBytesPerSecond;
+
+    private volatile double channelMessagesPerSecond;
+
+    private volatile double channelBytesPerSecond;
+
+    public ChannelLimits(String channel, boolean control) {
+        this.control = control;
+        this.burstBytes = RelayConfig.getLimitBurstBytes(channel);
+        this.channelBytes = new TokenBucket(burstBytes);
+        this.senderMessagesPerSecond = RelayConfig.getInt(channel, "limit.sender.messagesPerSecond", 0);
+        this.senderBytesPerSecond = RelayConfig.getInt(channel, "limit.sender.bytesPerSecond", 0);
+        this.channelMessagesPerSecond = RelayConfig.getInt(channel, "limit.channel.messagesPerSecond", 0);
+        this.channelBytesPerSecond = RelayConfig.getInt(channel, "limit.channel.bytesPerSecond", 0);
+    }
+
+    /**
+     * Admet ou refuse un message d'un emetteur, dont les seaux sont fournis.
+     * Tout ou rien : un message refuse par un seau rend les jetons pris dans
+     * les precedents, il ne penalise ni l'emetteur ni les autres vehicules.
+     */
+    boolean admit(TokenBucket senderMessages, TokenBucket senderBytes, int bytes) {
+        double senderMessagesRate = senderMessagesPerSecond;
+        double senderBytesRate = senderBytesPerSecond;
+        double channelMessagesRate = channelMessagesPerSecond;
+        double channelBytesRate = channelBytesPerSecond;
+        if (!senderMessages.tryAcquire(1, senderMessagesRate)) {
+            return false;
+        }
+        if (senderBytes.tryAcquire(bytes, senderBytesRate)) {
+            if (channelMessages.tryAcquire(1, channelMessagesRate)) {
+                if (channelBytes.tryAcquire(bytes, channelBytesRate)) {
+                    if (control) {
+                        globalBytes.consume(bytes, globalBytesPerSecond);
+                        return true;
+                    }
+                    if (globalBytes.tryAcquire(bytes, globalBytesPerSecond)) {
+                        return true;
+                    }
+                    channelBytes.refund(bytes, channelBytesRate);
+                }
+                channelMessages.refund(1, channelMessagesRate);
+            }
+            senderBytes.refund(bytes, senderBytesRate);
+        }
+        senderMessages.refund(1, senderMessagesRate);
+        return false;
+    }
+
+    /**
+     * @return Un seau en octets pour un nouvel emetteur, qui admet le plus gros message du canal
+     */
+    TokenBucket newBytesBucket() {
+        return new TokenBucket(burstBytes);
+    }
+
+    /**
+     * Decompte sans condition les octets de la suite d'une trame deja admise.
+     */
+    void consume(TokenBucket senderBytes, int bytes) {
+        senderBytes.consume(bytes, senderBytesPerSecond);
+        channelBytes.consume(bytes, channelBytesPerSecond);
+        globalBytes.consume(bytes, globalBytesPerSecond);
+    }
+
+    public boolean isControl() {
+        return control;
+    }
+
+    public double getSenderMessagesPerSecond() {
+        return senderMessagesPerSecond;
+    }
+
+    public void setSenderMessagesPerSecond(double senderMessagesPerSecond) {
+        this.senderMessagesPerSecond = senderMessagesPerSecond;
+    }
+
+    public double getSenderBytesPerSecond() {
+        return senderBytesPerSecond;
+    }
+
+    public void setSenderBytesPerSecond(double senderBytesPerSecond) {
+        this.senderBytesPerSecond = senderBytesPerSecond;
+    }
+
+    public double getChannelMessagesPerSecond() {
+        return channelMessagesPerSecond;
+    }
+
+    public void setChannelMessagesPerSecond(double channelMessagesPerSecond) {
+        this.channelMessagesPerSecond = channelMessagesPerSecond;
+    }
+
+    public double getChannelBytesPerSecond() {
+        return channelBytesPerSecond;
+    }
+
+    public void setChannelBytesPerSecond(double channelBytesPerSecond) {
+        this.channelBytesPerSecond = channelBytesPerSecond;
+    }
+
+    public static double getGlobalBytesPerSecond() {
+        return globalBytesPerSecond;
+    }
+
+    public static void setGlobalBytesPerSecond(double bytesPerSecond) {
+        globalBytesPerSecond = bytesPerSecond;
+    }
+}
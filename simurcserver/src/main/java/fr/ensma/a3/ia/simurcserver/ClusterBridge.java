@@ -0,0 +1,131 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+
+/**
+ * Relie les noeuds du cluster declares dans simurcserver.cluster.peers
+ * (adresses WebSocket separees par des virgules, par exemple
+ * ws://node-b:9080,ws://node-c:9080). Pour chaque canal ayant des recepteurs
+ * locaux, le noeud s'abonne une fois a chaque noeud distant : un emetteur
+ * connecte n'importe ou est visible de tous les recepteurs du cluster, et
+ * chaque noeud n'envoie qu'une copie par noeud distant. Chaque lien s'ouvre
+ * sur son propre thread : un noeud injoignable ne retarde pas les autres.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class ClusterBridge {
+
+    static final String BRIDGE_PARAMETER = "bridge";
+
+    private static final Map<String, BridgeLink> links = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService scheduler;
+
+    // Ouvertures de liens, au plus une en cours par lien
+    private static ExecutorService connector;
+
+    private static List<String> peers = List.of();
+
+    private static String nodeId;
+
+    private static WebSocketContainer container;
+
+    private ClusterBridge() {
+    }
+
+    public static synchronized void start() {
+        String value = RelayConfig.getString(null, "cluster.peers");
+        if (scheduler != null || value == null || value.isBlank()) {
+            return;
+        }
+        List<String> configured = new ArrayList<>();
+        for (String peer : value.split(",")) {
+            String trimmed = peer.trim();
+            if (!trimmed.isEmpty()) {
+                configured.add(trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed);
+            }
+        }
+        peers = List.copyOf(configured);
+        String configuredId = RelayConfig.getString(null, "cluster.nodeId");
+        nodeId = configuredId != null ? configuredId : UUID.randomUUID().toString();
+        container = ContainerProvider.getWebSocketContainer();
+
+        int intervalMs = Math.max(100, RelayConfig.getInt(null, "cluster.syncIntervalMs", 1000));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "relay-cluster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        connector = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "relay-cluster-connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(ClusterBridge::sync, 0, intervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("Cluster (noeud " + nodeId + ") : " + peers);
+    }
+
+    public static synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            connector.shutdownNow();
+            connector = null;
+        }
+        links.values().forEach(BridgeLink::close);
+        links.clear();
+    }
+
+    public static List<BridgeLink> getLinks() {
+        return List.copyOf(links.values());
+    }
+
+    // Ouvre les liens des canaux suivis localement, ferme ceux qui ne servent plus
+    private static void sync() {
+        try {
+            for (RelayChannel channel : RelayChannels.all()) {
+                // Un canal derive est recalcule sur chaque noeud depuis son entree
+                if (channel.isDerived()) {
+                    continue;
+                }
+                for (SessionRegistry<String> registry : channel.getRegistries().values()) {
+                    if (!registry.hasLocalReceivers()) {
+                        continue;
+                    }
+                    for (String peer : peers) {
+                        String key = peer + "|" + registry.getChannel() + "/" + registry.getVehicle();
+                        BridgeLink link = links.get(key);
+                        if (link == null || !(link.isOpen() || link.isConnecting())) {
+                            link = new BridgeLink(peer, registry);
+                            links.put(key, link);
+                            link.connectAsync(connector, container, nodeId);
+                        }
+                    }
+                }
+            }
+
+            Iterator<BridgeLink> it = links.values().iterator();
+            while (it.hasNext()) {
+                BridgeLink link = it.next();
+                if (!(link.isOpen() || link.isConnecting()) || !link.getRegistry().hasLocalReceivers()) {
+                    link.close();
+                    it.remove();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erreur de synchronisation du cluster : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Annonce des codecs et fonctions d'un pair, en parametres de connexion
+ * (?codecs=binary-v1,json&features=seq) ou en message
+ * {"type":"hello","codecs":["binary-v1","json"],"features":["seq"]}. Les
+ * codecs sont ranges par ordre de preference. Le relais repond a l'emetteur
+ * par {"type":"welcome",...} (voir {@link #welcome}).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+final class CodecRequest {
+
+    static final String CODECS_PARAMETER = "codecs";
+
+    static final String FEATURES_PARAMETER = "features";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final List<ECodec> codecs;
+
+    private final Set<EFeature> features;
+
+    private CodecRequest(List<ECodec> codecs, Set<EFeature> features) {
+        this.codecs = codecs;
+        this.features = features;
+    }
+
+    List<ECodec> getCodecs() {
+        return codecs;
+    }
+
+    Set<EFeature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return L'annonce passee en parametres de connexion, null sans parametre codecs
+     */
+    static CodecRequest fromParameters(Map<String, List<String>> parameters) {
+        List<String> codecs = parameters.get(CODECS_PARAMETER);
+        if (codecs == null || codecs.isEmpty()) {
+            return null;
+        }
+        Set<EFeature> features = EnumSet.noneOf(EFeature.class);
+        List<String> featureValues = parameters.get(FEATURES_PARAMETER);
+        if (featureValues != null) {
+            for (String value : featureValues) {
+                for (String label : value.split(",")) {
+                    EFeature feature = EFeature.byLabel(label);
+                    if (feature != null) {
+                        features.add(feature);
+                    }
+                }
+            }
+        }
+        return new CodecRequest(ECodec.parseList(String.join(",", codecs)), features);
+    }
+
+    /**
+     * @return L'annonce d'un message "hello", null pour tout autre message
+     */
+    static CodecRequest parseHello(String message) {
+        boolean hello = false;
+        List<ECodec> codecs = new ArrayList<>();
+        Set<EFeature> features = EnumSet.noneOf(EFeature.class);
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) {
+                    hello = value == JsonToken.VALUE_STRING && "hello".equals(parser.getText());
+                } else if ("codecs".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        ECodec codec = ECodec.byLabel(parser.getText());
+                        if (codec != null && !codecs.contains(codec)) {
+                            codecs.add(codec);
+                        }
+                    }
+                } else if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        EFeature feature = EFeature.byLabel(parser.getText());
+                        if (feature != null) {
+                            features.add(feature);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return hello ? new CodecRequest(codecs, features) : null;
+    }
+
+    /**
+     * Reponse du relais a un emetteur : le codec a utiliser (le premier de sa
+     * liste que le canal sait lire, null si aucun), les codecs du canal et les
+     * fonctions retenues.
+     */
+    static String welcome(String channel, ECodec codec, List<ECodec> codecs, Collection<EFeature> features) {
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"type\":\"welcome\",\"channel\":\"").append(channel).append("\",\"codec\":");
+        if (codec == null) {
+            json.append("null");
+        } else {
+            json.append('"').append(codec.getLabel()).append('"');
+        }
+        json.append(",\"codecs\":[");
+        for (int i = 0; i < codecs.size(); i++) {
+            json.append(i == 0 ? "\"" : ",\"").append(codecs.get(i).getLabel()).append('"');
+        }
+        json.append("],\"features\":[");
+        boolean first = true;
+        for (EFeature feature : features) {
+            json.append(first ? "\"" : ",\"").append(feature.getLabel()).append('"');
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,56 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcule periodiquement la congestion de chaque flux (remplissage des files
+ * et latence de diffusion des recepteurs) et la renvoie a son emetteur, qui
+ * peut alors reduire sa cadence ou sa qualite d'image.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class CongestionMonitor {
+
+    private static final double MIN_DELTA = 0.05;
+
+    private static final long MAX_SILENCE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static ScheduledExecutorService scheduler;
+
+    private CongestionMonitor() {
+    }
+
+    public static synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        int intervalMs = Math.max(10, RelayConfig.getInt(null, "congestion.intervalMs", 250));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "relay-congestion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(CongestionMonitor::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void tick() {
+        try {
+            for (RelayChannel channel : RelayChannels.all()) {
+                for (SessionRegistry<String> registry : channel.getRegistries().values()) {
+                    registry.publishCongestion(MIN_DELTA, MAX_SILENCE_NANOS);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erreur du calcul de congestion : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Transcodage des commandes de /rccontroller entre le JSON historique et la
+ * forme binaire de fr.ensma.a3.ia.serviceapi.ControllerMessageFlyweight
+ * (8 octets : magic 0xA3, version, streer, throttle, brake, panoramique
+ * horizontal et vertical, drapeaux). Le numero de sequence et l'instant
+ * d'envoi sont conserves : un message numerote passe en version 2 (20 octets).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ControllerTranscoder implements MessageTranscoder {
+
+    static final byte MAGIC = (byte) 0xA3;
+
+    static final byte VERSION = 1;
+
+    static final int LENGTH = 8;
+
+    static final byte VERSION_SEQUENCE = 2;
+
+    static final int LENGTH_SEQUENCE = 20;
+
+    private static final int RESET_PAN_FLAG = 0x01;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final List<ECodec> CODECS = List.of(ECodec.BINARY_V1, ECodec.JSON);
+
+    @Override
+    public List<ECodec> getCodecs() {
+        return CODECS;
+    }
+
+    @Override
+    public ECodec codecOf(Object payload) {
+        if (payload instanceof String) {
+            return ECodec.JSON;
+        }
+        if (payload instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) payload;
+            if (buffer.remaining() >= LENGTH && buffer.get(buffer.position()) == MAGIC
+                    && buffer.get(buffer.position() + 1) >= VERSION) {
+                return ECodec.BINARY_V1;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Object> transcode(Object payload, ECodec source, ECodec target) throws Exception {
+        if (source == ECodec.JSON && target == ECodec.BINARY_V1) {
+            JsonNode root = objectMapper.readTree((String) payload);
+            long sequence = root.path("sequence").asLong();
+            ByteBuffer buffer = ByteBuffer.allocate(sequence > 0 ? LENGTH_SEQUENCE : LENGTH);
+            buffer.put(MAGIC);
+            buffer.put(sequence > 0 ? VERSION_SEQUENCE : VERSION);
+            buffer.put((byte) root.path("streer").asInt());
+            buffer.put((byte) root.path("throttle").asInt());
+            buffer.put((byte) root.path("brake").asInt());
+            buffer.put((byte) root.path("horirontalPanAssistantCamera").asInt());
+            buffer.put((byte) root.path("verticalPanAssistantCamera").asInt());
+            buffer.put((byte) (root.path("resetPanAssistantCamera").asBoolean() ? RESET_PAN_FLAG : 0));
+            if (sequence > 0) {
+                buffer.putInt((int) sequence);
+                buffer.putLong(root.path("sendTimeMicros").asLong());
+            }
+            buffer.flip();
+            return List.of(buffer.asReadOnlyBuffer());
+        }
+        if (source == ECodec.BINARY_V1 && target == ECodec.JSON) {
+            ByteBuffer buffer = (ByteBuffer) payload;
+            int offset = buffer.position();
+            String json = String.format(Locale.ROOT,
+                    "{\"streer\":%d,\"throttle\":%d,\"brake\":%d,\"horirontalPanAssistantCamera\":%d,"
+                            + "\"verticalPanAssistantCamera\":%d,\"resetPanAssistantCamera\":%b",
+                    buffer.get(offset + 2), buffer.get(offset + 3), buffer.get(offset + 4),
+                    buffer.get(offset + 5), buffer.get(offset + 6),
+                    (buffer.get(offset + 7) & RESET_PAN_FLAG) != 0);
+            if (buffer.get(offset + 1) >= VERSION_SEQUENCE && buffer.remaining() >= LENGTH_SEQUENCE) {
+                json += String.format(Locale.ROOT, ",\"sequence\":%d,\"sendTimeMicros\":%d",
+                        Integer.toUnsignedLong(buffer.getInt(offset + 8)), buffer.getLong(offset + 12));
+            }
+            return List.of(json + "}");
+        }
+        return null;
+    }
+}
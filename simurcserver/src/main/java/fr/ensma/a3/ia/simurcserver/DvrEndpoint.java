@@ -0,0 +1,117 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * Rejeu immediat des dernieres secondes d'un canal depuis la memoire (voir
+ * {@link DvrRing}). Parametres : delayMs (retard de depart, par defaut tout
+ * l'anneau) et speed (vitesse de rattrapage, 1.5 par defaut). Une fois le
+ * direct rattrape, la session devient un recepteur ordinaire du canal. Le
+ * tampon de lecture est pris sur le budget commun du rejeu immediat.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/dvr/{channel}/{vehicle}")
+public class DvrEndpoint {
+
+    private SessionRegistry<String> hub;
+
+    private DvrSession dvr;
+
+    private int bufferBytes;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("channel") String channelName,
+            @PathParam("vehicle") String vehicle) throws IOException {
+        System.out.println("DvrEndpoint.onOpen() " + channelName + "/" + vehicle);
+
+        RelayChannel channel = RelayChannels.byName(channelName);
+        if (channel == null || !RelayChannel.isValidVehicle(vehicle)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Canal invalide"));
+            return;
+        }
+        SessionRegistry<String> registry = channel.registry(vehicle);
+        if (registry == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de vehicules"));
+            return;
+        }
+        if (!registry.isDvrEnabled()) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Rejeu immediat desactive"));
+            return;
+        }
+        DvrRing ring = registry.getDvr();
+        if (ring == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Aucun message enregistre"));
+            return;
+        }
+
+        double speed;
+        long delayMs;
+        try {
+            speed = Double.parseDouble(parameter(session, "speed", "1.5"));
+            delayMs = Long.parseLong(parameter(session, "delayMs",
+                    Long.toString(TimeUnit.SECONDS.toMillis(RelayConfig.getDvrSeconds(channelName)))));
+        } catch (NumberFormatException e) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Parametre invalide"));
+            return;
+        }
+        if (speed <= 1 || delayMs < 0) {
+            // A vitesse 1, le differe ne rattraperait jamais le direct
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Vitesse invalide"));
+            return;
+        }
+
+        int frameBytes = RelayConfig.getInt(channelName, "dvr.maxFrameKb", 2048) << 10;
+        if (!DvrRing.reserve(frameBytes)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Memoire du rejeu immediat epuisee"));
+            return;
+        }
+        bufferBytes = frameBytes;
+        hub = registry;
+        registry.openDvrReader();
+        dvr = new DvrSession(session, registry, ring, speed, frameBytes);
+        dvr.start(TimeUnit.MILLISECONDS.toNanos(delayMs));
+    }
+
+    @OnMessage
+    public void onMessage(Session session, String message) {
+        if (dvr != null && dvr.isLive()) {
+            hub.broadcastJSON(session, message);
+        }
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        if (hub != null) {
+            hub.onPong(session, pong.getApplicationData());
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (dvr != null) {
+            dvr.stop();
+            DvrRing.release(bufferBytes);
+            hub.closeDvrReader();
+            hub.unregister(session);
+        }
+    }
+
+    private static String parameter(Session session, String name, String defaultValue) {
+        Map<String, List<String>> parameters = session.getRequestParameterMap();
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
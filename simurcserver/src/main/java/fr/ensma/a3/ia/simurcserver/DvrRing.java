@@ -0,0 +1,309 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Anneau memoire des derniers messages d'un registre, pour le rejeu immediat
+ * ({@link DvrSession}). Les contenus sont copies dans un tampon direct alloue
+ * une fois, et l'index est fait de tableaux de taille fixe : la memoire est
+ * bornee et aucun message conserve ne pese sur le ramasse-miettes. Les plus
+ * anciens messages sont evinces quand la place, l'index ou la duree maximale
+ * sont atteints.
+ * <p>
+ * Chaque message recoit un numero de sequence croissant ; un lecteur garde le
+ * numero du prochain message a lire et saute en tete d'anneau s'il a ete
+ * evince entre-temps.
+ * <p>
+ * La memoire des anneaux et des tampons de lecture est prise sur un budget
+ * commun au relais ({@link RelayConfig#getDvrMaxTotalBytes()}) : au-dela, un
+ * nouvel anneau n'est pas alloue.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class DvrRing {
+
+    static final byte TYPE_TEXT = 0;
+
+    static final byte TYPE_BINARY = 1;
+
+    static final byte FLAG_FRAGMENT = 0x02;
+
+    static final byte FLAG_FIRST = 0x04;
+
+    static final byte FLAG_LAST = 0x08;
+
+    // Memoire reservee par tous les anneaux et lecteurs du relais
+    private static final AtomicLong reservedBytes = new AtomicLong();
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private final ByteBuffer data;
+
+    private final long maxAgeNanos;
+
+    // Index circulaire : emplacement = sequence % taille
+    private final long[] timestamps;
+
+    private final int[] offsets;
+
+    private final int[] lengths;
+
+    private final byte[] types;
+
+    // Plus ancienne sequence conservee, prochaine sequence ecrite
+    private long head;
+
+    private long tail;
+
+    private int writePosition;
+
+    private long usedBytes;
+
+    // Image dont un fragment n'a pas ete conserve : ses fragments suivants sont ignores
+    private long skippedFrame = -1;
+
+    public DvrRing(int capacityBytes, int maxRecords, long maxAgeNanos) {
+        this.data = ByteBuffer.allocateDirect(capacityBytes);
+        this.maxAgeNanos = maxAgeNanos;
+        this.timestamps = new long[maxRecords];
+        this.offsets = new int[maxRecords];
+        this.lengths = new int[maxRecords];
+        this.types = new byte[maxRecords];
+    }
+
+    /**
+     * @return Un anneau dont la memoire est prise sur le budget commun, null si le budget est epuise
+     */
+    static DvrRing allocate(int capacityBytes, int maxRecords, long maxAgeNanos) {
+        if (!reserve(capacityBytes)) {
+            return null;
+        }
+        return new DvrRing(capacityBytes, maxRecords, maxAgeNanos);
+    }
+
+    /**
+     * Rend la memoire de l'anneau au budget commun. Un lecteur en cours garde
+     * sa reference jusqu'a sa fin.
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            release(data.capacity());
+        }
+    }
+
+    /**
+     * @return true si bytes ont pu etre pris sur le budget commun
+     */
+    static boolean reserve(long bytes) {
+        long max = RelayConfig.getDvrMaxTotalBytes();
+        long current;
+        do {
+            current = reservedBytes.get();
+            if (current + bytes > max) {
+                return false;
+            }
+        } while (!reservedBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    static void release(long bytes) {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * @return Memoire prise sur le budget commun par les anneaux et les lecteurs
+     */
+    public static long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Copie un message publie dans l'anneau ; appele depuis le chemin de diffusion.
+     */
+    void append(RelayMessage message) {
+        Object payload = message.getPayload();
+        FrameFragment fragment = message.getFragment();
+        ByteBuffer content;
+        byte type;
+        if (fragment != null) {
+            content = fragment.getData().duplicate();
+            type = (byte) (TYPE_BINARY | FLAG_FRAGMENT | (fragment.isFirst() ? FLAG_FIRST : 0)
+                    | (fragment.isLast() ? FLAG_LAST : 0));
+        } else if (payload instanceof ByteBuffer) {
+            content = ((ByteBuffer) payload).duplicate();
+            type = TYPE_BINARY;
+        } else {
+            content = ByteBuffer.wrap(String.valueOf(payload).getBytes(StandardCharsets.UTF_8));
+            type = TYPE_TEXT;
+        }
+        int length = content.remaining();
+        synchronized (this) {
+            if (fragment != null && fragment.getFrame() == skippedFrame) {
+                // Image incomplete : sans son dernier fragment, les lecteurs l'abandonnent
+                return;
+            }
+            if (length > data.capacity() / 2) {
+                // Trop grand pour l'anneau : il n'est pas conserve, ni le reste de son image
+                if (fragment != null && !fragment.isLast()) {
+                    skippedFrame = fragment.getFrame();
+                }
+                return;
+            }
+            long now = message.getReceivedNanos();
+            while (head < tail && now - timestamps[slot(head)] > maxAgeNanos) {
+                evict();
+            }
+            if (tail - head == timestamps.length) {
+                evict();
+            }
+            int start = writePosition;
+            if (start + length > data.capacity()) {
+                // Retour en debut de tampon : la fin est abandonnee, avec les messages qui s'y trouvent
+                while (head < tail && offsets[slot(head)] >= start) {
+                    evict();
+                }
+                start = 0;
+            }
+            while (head < tail && overlaps(offsets[slot(head)], lengths[slot(head)], start, length)) {
+                evict();
+            }
+            ByteBuffer target = data.duplicate();
+            target.position(start);
+            target.put(content);
+            int slot = slot(tail);
+            timestamps[slot] = now;
+            offsets[slot] = start;
+            lengths[slot] = length;
+            types[slot] = type;
+            tail++;
+            writePosition = start + length;
+            usedBytes += length;
+        }
+    }
+
+    private static boolean overlaps(int offset, int length, int start, int size) {
+        return offset < start + size && start < offset + Math.max(1, length);
+    }
+
+    private void evict() {
+        usedBytes -= lengths[slot(head)];
+        head++;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+
+    /**
+     * @return Sequence du premier message recu a partir de l'instant donne, ou la prochaine sequence
+     */
+    synchronized long sequenceAt(long nanos) {
+        long low = head;
+        long high = tail;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestamps[slot(mid)] < nanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Instant de reception du message, -1 s'il n'est plus (ou pas encore) dans l'anneau
+     */
+    synchronized long timestampOf(long sequence) {
+        return sequence < head || sequence >= tail ? -1 : timestamps[slot(sequence)];
+    }
+
+    /**
+     * Ajoute le contenu d'un message a la position courante de target (les
+     * fragments d'une image s'ajoutent ainsi les uns aux autres).
+     *
+     * @return Description du message, ou null si la sequence n'est plus (ou pas encore) dans l'anneau
+     */
+    synchronized Entry read(long sequence, ByteBuffer target) {
+        if (sequence < head || sequence >= tail) {
+            return null;
+        }
+        int slot = slot(sequence);
+        int length = lengths[slot];
+        if (length > target.remaining()) {
+            return new Entry(sequence, timestamps[slot], types[slot], -1);
+        }
+        ByteBuffer source = data.duplicate();
+        source.limit(offsets[slot] + length).position(offsets[slot]);
+        target.put(source);
+        return new Entry(sequence, timestamps[slot], types[slot], length);
+    }
+
+    synchronized long getHead() {
+        return head;
+    }
+
+    synchronized long getTail() {
+        return tail;
+    }
+
+    public int getCapacity() {
+        return data.capacity();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getRecordCount() {
+        return tail - head;
+    }
+
+    /**
+     * @return Duree couverte par l'anneau en millisecondes
+     */
+    public synchronized long getSpanMillis() {
+        return head == tail ? 0 : (timestamps[slot(tail - 1)] - timestamps[slot(head)]) / 1_000_000;
+    }
+
+    /**
+     * Message lu dans l'anneau.
+     */
+    static final class Entry {
+
+        final long sequence;
+
+        final long receivedNanos;
+
+        final byte type;
+
+        // Taille copiee, -1 si le message ne tenait pas dans la place restante du lecteur
+        final int length;
+
+        private Entry(long sequence, long receivedNanos, byte type, int length) {
+            this.sequence = sequence;
+            this.receivedNanos = receivedNanos;
+            this.type = type;
+            this.length = length;
+        }
+
+        boolean isText() {
+            return (type & TYPE_BINARY) == 0;
+        }
+
+        boolean isFragment() {
+            return (type & FLAG_FRAGMENT) != 0;
+        }
+
+        boolean isFirst() {
+            return (type & FLAG_FIRST) != 0;
+        }
+
+        boolean isLast() {
+            return (type & FLAG_LAST) != 0;
+        }
+    }
+}
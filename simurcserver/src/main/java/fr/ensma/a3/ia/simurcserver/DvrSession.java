@@ -0,0 +1,207 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+/**
+ * Lecture differee d'un registre depuis son {@link DvrRing} : le recepteur
+ * part de quelques secondes en arriere et rattrape le direct a une vitesse
+ * superieure a 1. Une fois la fin de l'anneau atteinte, il devient un
+ * recepteur ordinaire du registre.
+ * <p>
+ * Un seul message est en vol : chaque message est copie (une image est
+ * reconstituee depuis ses fragments) dans un tampon direct propre au lecteur,
+ * alloue une fois.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class DvrSession implements SendHandler {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "relay-dvr");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // En dessous de ce delai, le message est emis sans replanification
+    private static final long DUE_TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Session session;
+
+    private final SessionRegistry<String> registry;
+
+    private final DvrRing ring;
+
+    private final double speed;
+
+    private final ByteBuffer buffer;
+
+    // Prochaine sequence a lire
+    private long sequence;
+
+    // Correspondance instant enregistre / instant reel
+    private long originRecordedNanos;
+
+    private long originWallNanos;
+
+    private boolean inFlight;
+
+    private boolean live;
+
+    private boolean stopped;
+
+    public DvrSession(Session session, SessionRegistry<String> registry, DvrRing ring, double speed,
+            int bufferBytes) {
+        this.session = session;
+        this.registry = registry;
+        this.ring = ring;
+        this.speed = speed;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    /**
+     * Demarre la lecture delayNanos avant le direct.
+     */
+    public synchronized void start(long delayNanos) {
+        long now = System.nanoTime();
+        sequence = ring.sequenceAt(now - delayNanos);
+        anchor(now);
+        SCHEDULER.execute(this::pump);
+    }
+
+    /**
+     * @return true une fois le direct rattrape
+     */
+    public synchronized boolean isLive() {
+        return live;
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    private void anchor(long now) {
+        long first = ring.timestampOf(sequence);
+        originRecordedNanos = first < 0 ? now : first;
+        originWallNanos = now;
+    }
+
+    private synchronized void pump() {
+        if (stopped || live || inFlight) {
+            return;
+        }
+        if (!session.isOpen()) {
+            stopped = true;
+            return;
+        }
+        buffer.clear();
+        boolean assembling = false;
+        while (true) {
+            long timestamp;
+            // Direct rattrape : la bascule se fait sous le verrou de l'anneau,
+            // si bien qu'aucun message publie entre-temps n'est perdu
+            synchronized (ring) {
+                if (sequence >= ring.getTail()) {
+                    live = true;
+                    registry.attachLive(session);
+                    return;
+                }
+                timestamp = ring.timestampOf(sequence);
+            }
+            if (timestamp < 0) {
+                // Rattrape par l'eviction : reprise au plus ancien message conserve
+                sequence = ring.getHead();
+                anchor(System.nanoTime());
+                buffer.clear();
+                assembling = false;
+                continue;
+            }
+            if (!assembling) {
+                long due = originWallNanos + (long) ((timestamp - originRecordedNanos) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > DUE_TOLERANCE_NANOS) {
+                    SCHEDULER.schedule(this::pump, wait, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+
+            DvrRing.Entry entry = ring.read(sequence, buffer);
+            if (entry == null) {
+                continue;
+            }
+            sequence++;
+            if (entry.isFragment()) {
+                if (entry.isFirst() && assembling) {
+                    // Image precedente sans dernier fragment (non conserve par l'anneau) :
+                    // abandonnee, la nouvelle est relue dans un tampon vide
+                    buffer.clear();
+                    assembling = false;
+                    sequence--;
+                    continue;
+                }
+                if (entry.length < 0 || (!entry.isFirst() && !assembling)) {
+                    // Image trop grande pour le tampon, ou commencee avant le point de depart : ignoree
+                    buffer.clear();
+                    assembling = false;
+                    continue;
+                }
+                assembling = true;
+                if (!entry.isLast()) {
+                    continue;
+                }
+                assembling = false;
+            } else if (assembling) {
+                // Message complet apres une image inachevee : elle est abandonnee
+                buffer.clear();
+                assembling = false;
+                sequence--;
+                continue;
+            } else if (entry.length < 0) {
+                buffer.clear();
+                continue;
+            }
+            buffer.flip();
+            send(entry.isText());
+            return;
+        }
+    }
+
+    private void send(boolean text) {
+        inFlight = true;
+        try {
+            if (text) {
+                session.getAsyncRemote().sendText(StandardCharsets.UTF_8.decode(buffer).toString(), this);
+            } else {
+                session.getAsyncRemote().sendBinary(buffer, this);
+            }
+        } catch (Exception e) {
+            onResult(new SendResult(e));
+        }
+    }
+
+    @Override
+    public void onResult(SendResult result) {
+        synchronized (this) {
+            inFlight = false;
+            if (!result.isOK()) {
+                System.err.println("Erreur d'envoi du differe : " + result.getException().getMessage());
+                stopped = true;
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Erreur d'envoi"));
+                } catch (Exception e) {
+                    System.err.println("Erreur lors de la fermeture de la session : " + e.getMessage());
+                }
+                return;
+            }
+        }
+        SCHEDULER.execute(this::pump);
+    }
+}
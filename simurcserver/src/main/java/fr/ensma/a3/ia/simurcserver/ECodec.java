@@ -0,0 +1,55 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodages d'un message de canal, annonces par les pairs a la connexion
+ * (voir {@link CodecRequest}).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum ECodec {
+
+    JSON("json"),           // Un message JSON par echantillon ou commande (format historique)
+
+    BINARY_V1("binary-v1"), // Un message binaire a taille fixe par echantillon ou commande
+
+    BATCH("batch");         // Plusieurs echantillons par message (SensorBatchMessage, JSON ou binaire)
+
+    private final String label;
+
+    ECodec(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return Le codec de ce nom, ou null s'il est inconnu
+     */
+    public static ECodec byLabel(String label) {
+        for (ECodec codec : values()) {
+            if (codec.label.equalsIgnoreCase(label.trim())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Les codecs connus d'une liste "binary-v1,json", dans l'ordre et sans doublon
+     */
+    public static List<ECodec> parseList(String value) {
+        List<ECodec> codecs = new ArrayList<>();
+        for (String label : value.split(",")) {
+            ECodec codec = byLabel(label);
+            if (codec != null && !codecs.contains(codec)) {
+                codecs.add(codec);
+            }
+        }
+        return codecs;
+    }
+}
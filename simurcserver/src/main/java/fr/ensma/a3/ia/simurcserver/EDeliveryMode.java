@@ -0,0 +1,11 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Mode de livraison des messages aux recepteurs d'un canal.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum EDeliveryMode {
+    QUEUED,     // Tous les messages sont livres dans l'ordre, dans la limite de la file
+    CONFLATED,  // Un seul message en attente, remplace par le plus recent (video)
+}
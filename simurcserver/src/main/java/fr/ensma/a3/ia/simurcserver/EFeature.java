@@ -0,0 +1,36 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Fonctions optionnelles annoncees par les pairs a la connexion (voir
+ * {@link CodecRequest}).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum EFeature {
+
+    SEQUENCE("seq"),        // Numero de sequence et horodatage d'envoi dans chaque message
+
+    COMPRESSION("deflate"); // Compression permessage-deflate de la connexion
+
+    private final String label;
+
+    EFeature(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return La fonction de ce nom, ou null si elle est inconnue
+     */
+    public static EFeature byLabel(String label) {
+        for (EFeature feature : values()) {
+            if (feature.label.equalsIgnoreCase(label.trim())) {
+                return feature;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Politique appliquee lorsque la file d'envoi d'un recepteur est pleine.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum EOverflowPolicy {
+    DROP_OLDEST,  // Retire le plus ancien message en attente
+    DROP_NEWEST,  // Ignore le message entrant
+    DISCONNECT,   // Ferme la session du recepteur trop lent
+}
@@ -0,0 +1,55 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Grandeurs du flux capteurs conservees par {@link TelemetryStore}, avec leur
+ * chemin dans le message JSON de /sensorflow.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum ETelemetryField {
+
+    ACCEL_X("accelX", "mpuData"),
+
+    ACCEL_Y("accelY", "mpuData"),
+
+    ACCEL_Z("accelZ", "mpuData"),
+
+    GYRO_X("gyroX", "mpuData"),
+
+    GYRO_Y("gyroY", "mpuData"),
+
+    GYRO_Z("gyroZ", "mpuData"),
+
+    TEMPERATURE("temperature", "mpuData"),
+
+    DISTANCE("distanceCm", "urmData");
+
+    private final String jsonName;
+
+    private final String parent;
+
+    ETelemetryField(String jsonName, String parent) {
+        this.jsonName = jsonName;
+        this.parent = parent;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    /**
+     * @return Le champ de ce nom JSON, ou null
+     */
+    public static ETelemetryField byJsonName(String name) {
+        for (ETelemetryField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Classe de priorite des envois vers un meme pair (voir {@link PeerScheduler}),
+ * de la plus prioritaire a la moins prioritaire.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public enum ETrafficClass {
+    CONTROL,    // Commandes et echos des commandes
+    SENSOR,     // Donnees capteurs
+    VIDEO,      // Images des webcams
+}
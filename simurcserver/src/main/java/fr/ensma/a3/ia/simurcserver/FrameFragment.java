@@ -0,0 +1,60 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fragment d'un message binaire relaye sans attendre la fin de la trame
+ * (mode cut-through). Le contenu est partage entre tous les recepteurs et
+ * n'est jamais modifie.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class FrameFragment {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final ByteBuffer data;
+
+    private final long frame;
+
+    private final boolean first;
+
+    private final boolean last;
+
+    public FrameFragment(ByteBuffer data, long frame, boolean first, boolean last) {
+        this.data = data;
+        this.frame = frame;
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Fragment vide qui clot une trame interrompue chez un recepteur.
+     */
+    public static FrameFragment terminator(long frame) {
+        return new FrameFragment(EMPTY, frame, false, true);
+    }
+
+    /**
+     * @return true pour le fragment vide de {@link #terminator}
+     */
+    public boolean isTerminator() {
+        return data == EMPTY;
+    }
+
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public boolean isFirst() {
+        return first;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ping periodique de toutes les sessions du relais. Une session qui n'a pas
+ * repondu a heartbeat.maxMissed pings consecutifs est deconnectee. Les
+ * registres inutilises sont evinces au passage.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class HeartbeatMonitor {
+
+    private static ScheduledExecutorService scheduler;
+
+    private HeartbeatMonitor() {
+    }
+
+    public static synchronized void start() {
+        int intervalMs = RelayConfig.getInt(null, "heartbeat.intervalMs", 5000);
+        if (scheduler != null || intervalMs <= 0) {
+            return;
+        }
+        int maxMissed = Math.max(1, RelayConfig.getInt(null, "heartbeat.maxMissed", 3));
+        long pongTimeoutNanos = TimeUnit.MILLISECONDS.toNanos((long) intervalMs * maxMissed);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "relay-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> tick(pongTimeoutNanos), intervalMs, intervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void tick(long pongTimeoutNanos) {
+        try {
+            for (RelayChannel channel : RelayChannels.all()) {
+                for (SessionRegistry<String> registry : channel.getRegistries().values()) {
+                    registry.heartbeat(pongTimeoutNanos);
+                }
+                channel.evictIdle();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erreur du heartbeat : " + e.getMessage());
+        }
+    }
+}
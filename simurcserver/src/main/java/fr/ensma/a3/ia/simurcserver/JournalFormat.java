@@ -0,0 +1,63 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Format des segments du journal de session.
+ * <p>
+ * Un segment (segment-NNNNNN.jnl) commence par {@link #MAGIC} puis
+ * {@link #VERSION}, suivis d'enregistrements :
+ *
+ * <pre>
+ * int   longueur totale de l'enregistrement (0 = fin des donnees)
+ * long  instant de reception (ns, monotone, relatif au debut de session)
+ * short identifiant du canal
+ * byte  type (TEXT, BINARY ou CHANNEL) et drapeaux de fragment
+ * int   taille du contenu
+ * byte[] contenu
+ * </pre>
+ *
+ * Un enregistrement CHANNEL associe un identifiant a "canal/vehicule" ; il est
+ * repete en tete de chaque segment pour que les segments restent lisibles
+ * independamment. L'index (segment-NNNNNN.idx) contient des couples
+ * (long instant, int position) espaces d'au moins l'intervalle d'indexation.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class JournalFormat {
+
+    public static final int MAGIC = 0x52434A31; // "RCJ1"
+
+    public static final short VERSION = 1;
+
+    public static final int SEGMENT_HEADER_SIZE = 6;
+
+    public static final int RECORD_HEADER_SIZE = 4 + 8 + 2 + 1 + 4;
+
+    public static final int INDEX_ENTRY_SIZE = 8 + 4;
+
+    public static final byte TYPE_MASK = 0x03;
+
+    public static final byte TYPE_TEXT = 0x01;
+
+    public static final byte TYPE_BINARY = 0x02;
+
+    public static final byte TYPE_CHANNEL = 0x03;
+
+    public static final byte FLAG_FRAGMENT = 0x04;
+
+    public static final byte FLAG_FIRST = 0x08;
+
+    public static final byte FLAG_LAST = 0x10;
+
+    public static final String SEGMENT_SUFFIX = ".jnl";
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    public static final String SESSION_FILE = "session.properties";
+
+    private JournalFormat() {
+    }
+
+    public static String segmentName(int segment) {
+        return String.format("segment-%06d", segment);
+    }
+}
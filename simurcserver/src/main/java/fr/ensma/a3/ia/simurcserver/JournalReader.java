@@ -0,0 +1,212 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Lecture sequentielle d'un journal de session, avec positionnement temporel
+ * par l'index epars de chaque segment.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class JournalReader implements Closeable {
+
+    private final List<Path> segments;
+
+    private final Map<Short, String> channels = new HashMap<>();
+
+    private int segmentIndex = -1;
+
+    private MappedByteBuffer segment;
+
+    // Premier enregistrement trouve par seek(), rendu par le prochain next()
+    private JournalRecord pending;
+
+    public JournalReader(Path sessionDir) throws IOException {
+        try (Stream<Path> files = Files.list(sessionDir)) {
+            segments = files.filter(p -> p.getFileName().toString().endsWith(JournalFormat.SEGMENT_SUFFIX))
+                    .sorted().toList();
+        }
+        if (segments.isEmpty()) {
+            throw new IOException("Aucun segment dans " + sessionDir);
+        }
+        openSegment(0);
+    }
+
+    /**
+     * Se positionne sur le premier enregistrement d'instant superieur ou egal.
+     */
+    public void seek(long timestampNanos) throws IOException {
+        pending = null;
+        int target = 0;
+        for (int i = segments.size() - 1; i > 0; i--) {
+            long first = firstIndexedTimestamp(segments.get(i));
+            if (first != Long.MIN_VALUE && first <= timestampNanos) {
+                target = i;
+                break;
+            }
+        }
+        openSegment(target);
+
+        int offset = indexedOffset(segments.get(target), timestampNanos);
+        // Parcourt les en-tetes jusqu'a l'offset pour connaitre les canaux declares
+        while (segment.position() < offset) {
+            if (!readHeaderOnly()) {
+                break;
+            }
+        }
+        JournalRecord record;
+        while ((record = next()) != null && record.getTimestampNanos() < timestampNanos) {
+            // Enregistrements anterieurs a l'instant demande
+        }
+        pending = record;
+    }
+
+    /**
+     * @return L'enregistrement suivant (hors declarations de canal), ou null a la fin
+     */
+    public JournalRecord next() throws IOException {
+        if (pending != null) {
+            JournalRecord record = pending;
+            pending = null;
+            return record;
+        }
+        while (segment != null) {
+            if (segment.remaining() < JournalFormat.RECORD_HEADER_SIZE) {
+                nextSegment();
+                continue;
+            }
+            int start = segment.position();
+            int length = segment.getInt();
+            if (length == 0) {
+                segment.position(start);
+                if (segmentIndex + 1 < segments.size()) {
+                    nextSegment();
+                    continue;
+                }
+                // Fin des donnees ecrites (session eventuellement en cours)
+                return null;
+            }
+            long timestamp = segment.getLong();
+            short channelId = segment.getShort();
+            byte type = segment.get();
+            int size = segment.getInt();
+            ByteBuffer content = segment.slice(segment.position(), size).asReadOnlyBuffer();
+            segment.position(start + length);
+
+            if ((type & JournalFormat.TYPE_MASK) == JournalFormat.TYPE_CHANNEL) {
+                channels.put(channelId, StandardCharsets.UTF_8.decode(content).toString());
+                continue;
+            }
+            return new JournalRecord(channels.get(channelId), timestamp, type, content);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        pending = null;
+    }
+
+    private boolean readHeaderOnly() {
+        int start = segment.position();
+        if (segment.remaining() < JournalFormat.RECORD_HEADER_SIZE) {
+            return false;
+        }
+        int length = segment.getInt();
+        if (length == 0) {
+            segment.position(start);
+            return false;
+        }
+        segment.getLong();
+        short channelId = segment.getShort();
+        byte type = segment.get();
+        int size = segment.getInt();
+        if ((type & JournalFormat.TYPE_MASK) == JournalFormat.TYPE_CHANNEL) {
+            channels.put(channelId,
+                    StandardCharsets.UTF_8.decode(segment.slice(segment.position(), size)).toString());
+        }
+        segment.position(start + length);
+        return true;
+    }
+
+    private void nextSegment() throws IOException {
+        if (segmentIndex + 1 >= segments.size()) {
+            segment = null;
+            return;
+        }
+        openSegment(segmentIndex + 1);
+    }
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        channels.clear();
+        try (FileChannel channel = FileChannel.open(segments.get(index), StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (segment.remaining() < JournalFormat.SEGMENT_HEADER_SIZE || segment.getInt() != JournalFormat.MAGIC) {
+            throw new IOException("Segment invalide : " + segments.get(index));
+        }
+        short version = segment.getShort();
+        if (version != JournalFormat.VERSION) {
+            throw new IOException("Version de journal non supportee : " + version);
+        }
+    }
+
+    private static long firstIndexedTimestamp(Path segmentPath) throws IOException {
+        Path indexPath = indexOf(segmentPath);
+        if (!Files.exists(indexPath) || Files.size(indexPath) < JournalFormat.INDEX_ENTRY_SIZE) {
+            return Long.MIN_VALUE;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            ByteBuffer entry = ByteBuffer.allocate(JournalFormat.INDEX_ENTRY_SIZE);
+            channel.read(entry, 0);
+            return entry.getLong(0);
+        }
+    }
+
+    // Position de la derniere entree d'index anterieure ou egale a l'instant
+    private static int indexedOffset(Path segmentPath, long timestampNanos) throws IOException {
+        Path indexPath = indexOf(segmentPath);
+        if (!Files.exists(indexPath)) {
+            return JournalFormat.SEGMENT_HEADER_SIZE;
+        }
+        List<long[]> entries = new ArrayList<>();
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        while (index.remaining() >= JournalFormat.INDEX_ENTRY_SIZE) {
+            entries.add(new long[] { index.getLong(), index.getInt() });
+        }
+        int low = 0;
+        int high = entries.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid)[0] <= timestampNanos) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? JournalFormat.SEGMENT_HEADER_SIZE : (int) entries.get(found)[1];
+    }
+
+    private static Path indexOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return segmentPath.resolveSibling(
+                name.substring(0, name.length() - JournalFormat.SEGMENT_SUFFIX.length()) + JournalFormat.INDEX_SUFFIX);
+    }
+}
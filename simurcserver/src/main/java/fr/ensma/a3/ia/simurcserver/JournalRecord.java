@@ -0,0 +1,63 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Enregistrement lu depuis un journal de session.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class JournalRecord {
+
+    private final String channelKey;
+
+    private final long timestampNanos;
+
+    private final byte type;
+
+    private final ByteBuffer content;
+
+    public JournalRecord(String channelKey, long timestampNanos, byte type, ByteBuffer content) {
+        this.channelKey = channelKey;
+        this.timestampNanos = timestampNanos;
+        this.type = type;
+        this.content = content;
+    }
+
+    /**
+     * @return "canal/vehicule"
+     */
+    public String getChannelKey() {
+        return channelKey;
+    }
+
+    /**
+     * @return Instant de reception (ns) relatif au debut de la session
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public boolean isText() {
+        return (type & JournalFormat.TYPE_MASK) == JournalFormat.TYPE_TEXT;
+    }
+
+    public boolean isFragment() {
+        return (type & JournalFormat.FLAG_FRAGMENT) != 0;
+    }
+
+    public boolean isFirst() {
+        return !isFragment() || (type & JournalFormat.FLAG_FIRST) != 0;
+    }
+
+    public boolean isLast() {
+        return !isFragment() || (type & JournalFormat.FLAG_LAST) != 0;
+    }
+
+    /**
+     * @return Vue en lecture seule sur le contenu (segment projete en memoire)
+     */
+    public ByteBuffer getContent() {
+        return content.duplicate();
+    }
+}
@@ -0,0 +1,95 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de latences en nanosecondes, a seaux log-lineaires : chaque
+ * puissance de deux est decoupee en 16 seaux, soit une precision relative
+ * d'environ 6 %. L'enregistrement est sans verrou et sans allocation.
+ * <p>
+ * Le serveur ne depend pas de serviceapi : fr.ensma.a3.ia.serviceapi.LatencyHistogram
+ * en est une copie. Les deux LatencyHistogramTest attendent les memes
+ * valeurs ; toute modification se fait dans les deux modules.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile Quantile entre 0 et 1 (0.99 pour le p99)
+     * @return Borne haute du seau contenant le quantile, 0 si vide
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long lower = (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,34 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.List;
+
+/**
+ * Conversion des messages d'un canal entre les encodages annonces par les
+ * pairs ({@link ECodec}). Le relais ne transcode que pour un recepteur qui
+ * n'accepte pas l'encodage de l'emetteur, et une seule fois par encodage
+ * produit (voir {@link SessionRegistry}). Une instance est partagee entre les
+ * vehicules : elle ne garde aucun etat.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public interface MessageTranscoder {
+
+    /**
+     * @return Les codecs du canal, par ordre de preference du relais
+     */
+    List<ECodec> getCodecs();
+
+    /**
+     * @param payload Contenu d'un {@link RelayMessage}
+     * @return L'encodage du message, ou null s'il n'est pas transcodable (fragment, format inconnu)
+     */
+    ECodec codecOf(Object payload);
+
+    /**
+     * @param payload Message a convertir ; un ByteBuffer est partage et ne
+     *                doit etre lu qu'en lectures absolues
+     * @return Le ou les messages (String ou ByteBuffer en lecture seule) dans
+     *         l'encodage cible, ou null si la conversion n'existe pas
+     */
+    List<Object> transcode(Object payload, ECodec source, ECodec target) throws Exception;
+}
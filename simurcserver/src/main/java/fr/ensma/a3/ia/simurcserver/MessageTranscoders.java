@@ -0,0 +1,31 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Transcodeurs des canaux qui connaissent plusieurs encodages. Les autres
+ * canaux (video, signalisation, repere de mouvement) n'en ont qu'un : leurs
+ * messages sont relayes tels quels.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class MessageTranscoders {
+
+    private static final MessageTranscoder CONTROLLER = new ControllerTranscoder();
+
+    private static final MessageTranscoder SENSOR = new SensorTranscoder();
+
+    private MessageTranscoders() {
+    }
+
+    /**
+     * @return Le transcodeur du canal, null s'il n'a qu'un encodage
+     */
+    static MessageTranscoder forChannel(String channel) {
+        if (RelayChannels.RC_CONTROLLER.getName().equals(channel)) {
+            return CONTROLLER;
+        }
+        if (RelayChannels.SENSOR_FLOW.getName().equals(channel)) {
+            return SENSOR;
+        }
+        return null;
+    }
+}
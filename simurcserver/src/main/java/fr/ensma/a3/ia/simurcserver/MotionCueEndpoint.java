@@ -0,0 +1,61 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * Canal derive /motioncue/{vehicle}, calcule par le relais depuis
+ * /sensorflow (voir {@link MotionCueProcessor}). Reception seule.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/motioncue/{vehicle}")
+public class MotionCueEndpoint {
+
+    private SessionRegistry<String> hub;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("vehicle") String vehicle) throws IOException {
+        System.out.println("MotionCueEndpoint.onOpen() " + vehicle);
+
+        if (!RelayChannel.isValidVehicle(vehicle)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Vehicule invalide"));
+            return;
+        }
+        hub = RelayChannels.MOTION_CUE.registry(vehicle);
+        if (hub == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de vehicules"));
+            return;
+        }
+        hub.register(session, "receiver");
+    }
+
+    @OnMessage
+    public void onMessage(Session session, String message) {
+        if (hub != null) {
+            hub.broadcastJSON(session, message);
+        }
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        if (hub != null) {
+            hub.onPong(session, pong.getApplicationData());
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (hub != null) {
+            hub.unregister(session);
+        }
+    }
+}
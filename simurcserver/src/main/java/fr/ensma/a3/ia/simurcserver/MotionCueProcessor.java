@@ -0,0 +1,180 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Calcule le repere de mouvement D-BOX (roll, pitch, heave, rpm, torque)
+ * depuis le flux /sensorflow (JSON ou trame binaire), avec les memes etapes et les reglages par
+ * defaut que MotionDataProcessor de dbox-business (zone morte, S-curve,
+ * gains, passe-bas, limitation de variation). Le resultat est publie sur
+ * /motioncue/{vehicle} :
+ *
+ * <pre>
+ * {"timestampMs":..,"roll":..,"pitch":..,"heave":..,"rpm":..,"torque":..}
+ * </pre>
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class MotionCueProcessor implements StreamProcessor {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final float GRAVITY = 1.0f;
+
+    private static final float GYRO_SCALE = 0.02f;
+
+    private static final float ACCEL_MAX_RANGE = 2.0f;
+
+    private static final float GYRO_MAX_RANGE = 250.0f;
+
+    private static final float RPM_FACTOR = 300.0f;
+
+    private static final float TORQUE_FACTOR = 30.0f;
+
+    private static final float RPM_RATE_LIMIT = 500.0f;
+
+    private static final float TORQUE_RATE_LIMIT = 50.0f;
+
+    // Reglages par defaut de DboxConfig
+    private static final float SMOOTHING_FACTOR = 0.4f;
+
+    private static final float S_CURVE_INTENSITY = 0.7f;
+
+    private static final float ACCEL_DEADZONE = 0.05f;
+
+    private static final float GYRO_DEADZONE = 5.0f;
+
+    private static final float MAX_RATE_OF_CHANGE = 0.15f;
+
+    private static final float ACCEL_WEIGHT = 0.9f;
+
+    private static final float ACCEL_X_RANGE = 0.8f;
+
+    private static final float ACCEL_Y_RANGE = 0.8f;
+
+    private static final float ACCEL_Z_RANGE = 0.3f;
+
+    private static final float ENGINE_MAX_RPM = 6000.0f;
+
+    private static final float ENGINE_MAX_TORQUE = 450.0f;
+
+    // Dernier repere publie, point de depart du filtrage
+    private float lastRoll;
+
+    private float lastPitch;
+
+    private float lastHeave;
+
+    private float lastRpm;
+
+    private float lastTorque;
+
+    @Override
+    public String process(String message) throws Exception {
+        JsonNode root = objectMapper.readTree(message);
+        JsonNode mpu = root.get("mpuData");
+        if (mpu == null) {
+            return null;
+        }
+        float accelX = (float) mpu.path("accelX").asDouble();
+        float accelY = (float) mpu.path("accelY").asDouble();
+        float accelZ = (float) mpu.path("accelZ").asDouble();
+        float gyroX = (float) mpu.path("gyroX").asDouble();
+        float gyroY = (float) mpu.path("gyroY").asDouble();
+        float gyroZ = (float) mpu.path("gyroZ").asDouble();
+        long timestampMs = root.path("timestampMs").asLong(System.currentTimeMillis());
+        return cue(timestampMs, accelX, accelY, accelZ, gyroX, gyroY, gyroZ);
+    }
+
+    @Override
+    public String process(ByteBuffer message) {
+        SensorFrameView frame = SensorFrameView.of(message);
+        if (frame == null || !frame.hasMpuData()) {
+            return null;
+        }
+        return cue(frame.getTimestampMs(), frame.get(ETelemetryField.ACCEL_X), frame.get(ETelemetryField.ACCEL_Y),
+                frame.get(ETelemetryField.ACCEL_Z), frame.get(ETelemetryField.GYRO_X),
+                frame.get(ETelemetryField.GYRO_Y), frame.get(ETelemetryField.GYRO_Z));
+    }
+
+    private String cue(long timestampMs, float accelX, float accelY, float accelZ, float gyroX, float gyroY,
+            float gyroZ) {
+        if (Math.abs(accelX) > 40 || Math.abs(accelY) > 40 || Math.abs(accelZ) > 40
+                || Math.abs(gyroX) > 2000 || Math.abs(gyroY) > 2000 || Math.abs(gyroZ) > 2000) {
+            return null;
+        }
+
+        float roll = convertToRoll(accelY, gyroX);
+        float pitch = convertToPitch(accelX, gyroY);
+        float heave = convertToHeave(accelZ);
+        float accelMagnitude = (float) Math.sqrt(accelX * accelX + accelY * accelY);
+        float rpm = clamp(accelMagnitude * RPM_FACTOR, 0.0f, ENGINE_MAX_RPM);
+        float torque = clamp(accelMagnitude * TORQUE_FACTOR, 0.0f, ENGINE_MAX_TORQUE);
+
+        roll = limit(lowPass(roll, lastRoll), lastRoll, MAX_RATE_OF_CHANGE);
+        pitch = limit(lowPass(pitch, lastPitch), lastPitch, MAX_RATE_OF_CHANGE);
+        heave = limit(lowPass(heave, lastHeave), lastHeave, MAX_RATE_OF_CHANGE);
+        rpm = limit(lowPass(rpm, lastRpm), lastRpm, RPM_RATE_LIMIT);
+        torque = limit(lowPass(torque, lastTorque), lastTorque, TORQUE_RATE_LIMIT);
+
+        lastRoll = roll;
+        lastPitch = pitch;
+        lastHeave = heave;
+        lastRpm = rpm;
+        lastTorque = torque;
+
+        return String.format(Locale.ROOT,
+                "{\"timestampMs\":%d,\"roll\":%.4f,\"pitch\":%.4f,\"heave\":%.4f,\"rpm\":%.1f,\"torque\":%.2f}",
+                timestampMs, roll, pitch, heave, rpm, torque);
+    }
+
+    private static float convertToRoll(float accelY, float gyroX) {
+        float accelComponent = deadzone(accelY, ACCEL_DEADZONE, ACCEL_MAX_RANGE) / ACCEL_Y_RANGE;
+        float gyroComponent = deadzone(gyroX, GYRO_DEADZONE, GYRO_MAX_RANGE) * GYRO_SCALE;
+        float roll = sCurve(ACCEL_WEIGHT * accelComponent + (1.0f - ACCEL_WEIGHT) * gyroComponent);
+        return clamp(-roll, -1.0f, 1.0f);
+    }
+
+    private static float convertToPitch(float accelX, float gyroY) {
+        float accelComponent = -deadzone(accelX, ACCEL_DEADZONE, ACCEL_MAX_RANGE) / ACCEL_X_RANGE;
+        float gyroComponent = deadzone(gyroY, GYRO_DEADZONE, GYRO_MAX_RANGE) * GYRO_SCALE;
+        float pitch = sCurve(ACCEL_WEIGHT * accelComponent + (1.0f - ACCEL_WEIGHT) * gyroComponent);
+        return clamp(pitch, -1.0f, 1.0f);
+    }
+
+    private static float convertToHeave(float accelZ) {
+        float heave = deadzone(accelZ - GRAVITY, ACCEL_DEADZONE * 0.5f, 1.0f) / ACCEL_Z_RANGE;
+        return clamp(sCurve(heave), -1.0f, 1.0f);
+    }
+
+    private static float sCurve(float value) {
+        float absValue = Math.abs(value);
+        float exponent = 1.0f + S_CURVE_INTENSITY * (1.0f - absValue);
+        return Math.signum(value) * (float) Math.pow(absValue, exponent);
+    }
+
+    private static float deadzone(float value, float deadzone, float maxRange) {
+        float absValue = Math.abs(value);
+        if (absValue <= deadzone) {
+            return 0.0f;
+        }
+        return Math.signum(value) * (absValue - deadzone) / (maxRange - deadzone) * maxRange;
+    }
+
+    private static float lowPass(float value, float previous) {
+        return SMOOTHING_FACTOR * value + (1.0f - SMOOTHING_FACTOR) * previous;
+    }
+
+    private static float limit(float value, float previous, float maxDelta) {
+        float delta = value - previous;
+        return Math.abs(delta) > maxDelta ? previous + Math.signum(delta) * maxDelta : value;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : value > max ? max : value;
+    }
+}
@@ -0,0 +1,659 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+/**
+ * File d'envoi bornee d'un recepteur. Les messages sont envoyes un par un via
+ * getAsyncRemote() : un recepteur lent ne bloque ni l'emetteur ni les autres
+ * recepteurs, il ne fait que remplir sa propre file. En mode
+ * {@link EDeliveryMode#CONFLATED}, la file ne garde qu'un message en attente :
+ * une nouvelle image remplace celle qui n'est pas encore partie.
+ * <p>
+ * Les {@link FrameFragment} (mode cut-through) sont envoyes par
+ * getBasicRemote().sendBinary(ByteBuffer, boolean), seule API d'envoi partiel,
+ * depuis un pool de threads borne (cutThrough.senderThreads). La capacite
+ * compte alors des fragments : une trame qui ne tient pas dans la file est
+ * abandonnee pour ce recepteur, et close par un fragment vide si elle avait
+ * deja commence a partir. Si tous les threads du pool sont occupes au premier
+ * fragment d'une trame, celle-ci est reconstituee et envoyee entiere par
+ * getAsyncRemote() : des recepteurs lents ne multiplient pas les threads.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class OutboundQueue {
+
+    private static final int PARTIAL_SENDER_THREADS = Math.max(1,
+            RelayConfig.getInt(null, "cutThrough.senderThreads", 16));
+
+    private static final ExecutorService PARTIAL_SENDER = Executors.newFixedThreadPool(PARTIAL_SENDER_THREADS, r -> {
+        Thread thread = new Thread(r, "relay-partial-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Envois partiels soumis et non termines, files d'attente du pool comprises
+    private static final AtomicInteger partialSenderBusy = new AtomicInteger();
+
+    private static final int LATENCY_EWMA_WEIGHT = 8;
+
+    private static final long NEVER_ACCEPTED = Long.MIN_VALUE;
+
+    private final Session session;
+
+    private final int capacity;
+
+    private final EOverflowPolicy overflowPolicy;
+
+    private final EDeliveryMode deliveryMode;
+
+    private final RelayStats stats;
+
+    private final ArrayDeque<RelayMessage> pending = new ArrayDeque<>();
+
+    private boolean sending;
+
+    // Trame reconstituee faute de thread d'envoi partiel libre, null sinon ;
+    // manipulee par le seul envoi en cours
+    private ByteArrayOutputStream wholeFrame;
+
+    private boolean closed;
+
+    // Trame dont les fragments sont acceptes, -1 si aucune
+    private long acceptingFrame = -1;
+
+    // Trame partiellement envoyee sur la connexion, -1 si aucune
+    private long wireFrame = -1;
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong supersededCount = new AtomicLong();
+
+    private final long createdNanos = System.nanoTime();
+
+    // Moyenne glissante de la latence de diffusion, mise a jour par l'unique envoi en cours
+    private volatile long latencyEwmaNanos;
+
+    private volatile boolean congestionIgnored;
+
+    // Lien d'un autre noeud du cluster : ne recoit que les messages des emetteurs locaux
+    private volatile boolean bridge;
+
+    // Palier video reduit recu par ce recepteur, null pour le flux d'origine
+    private volatile String tier;
+
+    // Ordonnanceur du pair, null si le recepteur n'en declare pas
+    private volatile PeerScheduler scheduler;
+
+    private volatile ETrafficClass trafficClass = ETrafficClass.SENSOR;
+
+    // Codecs acceptes par le recepteur, par ordre de preference (JSON sans annonce)
+    private volatile List<ECodec> codecs = List.of(ECodec.JSON);
+
+    private volatile Set<EFeature> features = Set.of();
+
+    private boolean schedulerAttached;
+
+    // Message en attente d'un creneau de l'ordonnanceur
+    private RelayMessage parked;
+
+    // Dernier signe de vie du recepteur (connexion ou pong)
+    private volatile long lastPongNanos = createdNanos;
+
+    private volatile long rttNanos = -1;
+
+    // Intervalle minimal entre deux messages (debit maximal du recepteur), 0 sans limite
+    private volatile long minIntervalNanos;
+
+    // Instant du dernier message accepte, NEVER_ACCEPTED avant le premier ;
+    // partage par tous les producteurs (emetteur, ponts, paliers, etages)
+    private final AtomicLong lastAcceptedNanos = new AtomicLong(NEVER_ACCEPTED);
+
+    private final AtomicLong decimatedCount = new AtomicLong();
+
+    public OutboundQueue(Session session, int capacity, EOverflowPolicy overflowPolicy, EDeliveryMode deliveryMode,
+            RelayStats stats) {
+        this.session = session;
+        this.capacity = Math.max(1, capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.deliveryMode = deliveryMode;
+        this.stats = stats;
+    }
+
+    /**
+     * Ajoute un message et demarre l'envoi si aucun n'est en cours. Un
+     * ByteBuffer partage entre plusieurs recepteurs n'est jamais modifie :
+     * chaque envoi en prend une vue.
+     *
+     * @return false si le message n'a pas ete mis en file
+     */
+    public boolean offer(RelayMessage message) {
+        FrameFragment fragment = message.getFragment();
+        // Decimation avant tout verrou : un recepteur a faible debit ne coute qu'une comparaison
+        if ((fragment == null || fragment.isFirst()) && !isDue(message.getReceivedNanos())) {
+            return false;
+        }
+        if (fragment != null) {
+            return offerFragment(message, fragment);
+        }
+
+        RelayMessage next;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (deliveryMode == EDeliveryMode.CONFLATED && !pending.isEmpty()) {
+                supersededCount.addAndGet(pending.size());
+                pending.clear();
+            } else if (pending.size() >= capacity) {
+                droppedCount.incrementAndGet();
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        pending.pollFirst();
+                        break;
+                    case DROP_NEWEST:
+                        return false;
+                    case DISCONNECT:
+                    default:
+                        closed = true;
+                        droppedCount.addAndGet(pending.size());
+                        pending.clear();
+                        break;
+                }
+            }
+            if (closed) {
+                next = null;
+            } else {
+                pending.addLast(message);
+                if (sending) {
+                    return true;
+                }
+                sending = true;
+                next = pollNext();
+            }
+        }
+
+        if (next == null) {
+            disconnect();
+            return false;
+        }
+        dispatch(next);
+        return true;
+    }
+
+    private boolean offerFragment(RelayMessage message, FrameFragment fragment) {
+        RelayMessage next;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (fragment.isFirst()) {
+                if (deliveryMode == EDeliveryMode.CONFLATED) {
+                    supersedePendingFrames();
+                }
+                acceptingFrame = fragment.getFrame();
+            } else if (fragment.getFrame() != acceptingFrame) {
+                // Trame commencee avant la connexion ou deja abandonnee
+                return false;
+            }
+            if (pending.size() >= capacity) {
+                droppedCount.incrementAndGet();
+                if (overflowPolicy != EOverflowPolicy.DISCONNECT) {
+                    abortFrame(fragment.getFrame());
+                    return false;
+                }
+                closed = true;
+                droppedCount.addAndGet(pending.size());
+                pending.clear();
+                next = null;
+            } else {
+                pending.addLast(message);
+                if (fragment.isLast()) {
+                    acceptingFrame = -1;
+                }
+                if (sending) {
+                    return true;
+                }
+                sending = true;
+                next = pollNext();
+            }
+        }
+
+        if (next == null) {
+            disconnect();
+            return false;
+        }
+        dispatch(next);
+        return true;
+    }
+
+    // Retire les trames en attente qui n'ont pas commence a partir
+    private void supersedePendingFrames() {
+        Iterator<RelayMessage> it = pending.iterator();
+        while (it.hasNext()) {
+            FrameFragment queued = it.next().getFragment();
+            if (queued != null) {
+                if (queued.getFrame() == wireFrame) {
+                    continue;
+                }
+                if (queued.isFirst()) {
+                    supersededCount.incrementAndGet();
+                }
+            }
+            it.remove();
+        }
+    }
+
+    // Appele avec une file pleine : un envoi est donc en cours et reprendra la file
+    private void abortFrame(long frame) {
+        pending.removeIf(m -> m.getFragment() != null && m.getFragment().getFrame() == frame);
+        acceptingFrame = -1;
+        if (wireFrame == frame) {
+            pending.addLast(new RelayMessage(FrameFragment.terminator(frame), 0, System.nanoTime()));
+        }
+    }
+
+    // Sans verrou : un seul producteur concurrent gagne le creneau
+    private boolean isDue(long receivedNanos) {
+        long interval = minIntervalNanos;
+        if (interval <= 0) {
+            return true;
+        }
+        long last = lastAcceptedNanos.get();
+        while (true) {
+            if (last != NEVER_ACCEPTED && receivedNanos - last < interval) {
+                decimatedCount.incrementAndGet();
+                return false;
+            }
+            if (lastAcceptedNanos.compareAndSet(last, receivedNanos)) {
+                return true;
+            }
+            last = lastAcceptedNanos.get();
+        }
+    }
+
+    /**
+     * Limite le debit de ce recepteur : les messages arrivant moins de
+     * 1/maxRate secondes apres le dernier accepte sont ignores (une image
+     * entiere en mode cut-through).
+     *
+     * @param maxRate Messages par seconde, 0 ou moins pour tout recevoir
+     */
+    public void setMaxRate(double maxRate) {
+        minIntervalNanos = maxRate > 0 ? (long) (1e9 / maxRate) : 0;
+    }
+
+    /**
+     * @return Debit maximal demande par le recepteur, 0 sans limite
+     */
+    public double getMaxRate() {
+        long interval = minIntervalNanos;
+        return interval > 0 ? 1e9 / interval : 0;
+    }
+
+    /**
+     * @return Nombre de messages ignores pour respecter le debit maximal
+     */
+    public long getDecimatedCount() {
+        return decimatedCount.get();
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean isOpen() {
+        return !closed && session.isOpen();
+    }
+
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public EDeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    /**
+     * @return Nombre de messages remplaces avant envoi (mode CONFLATED)
+     */
+    public long getSupersededCount() {
+        return supersededCount.get();
+    }
+
+    /**
+     * @return Anciennete de la connexion du recepteur en millisecondes
+     */
+    public long getAgeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos);
+    }
+
+    /**
+     * @return Moyenne glissante de la latence entre reception et envoi (ns)
+     */
+    public long getLatencyEwmaNanos() {
+        return latencyEwmaNanos;
+    }
+
+    /**
+     * @return Congestion du recepteur entre 0 et 1 : remplissage de la file ou
+     *         latence rapportee a la latence cible, le plus defavorable des deux
+     */
+    public double getCongestion(long targetLatencyNanos) {
+        double fill = (double) getDepth() / capacity;
+        double latency = targetLatencyNanos > 0 ? (double) latencyEwmaNanos / targetLatencyNanos : 0;
+        return Math.min(1.0, Math.max(fill, latency));
+    }
+
+    /**
+     * @return true si ce recepteur n'est pas pris en compte dans le retour de congestion
+     */
+    public boolean isCongestionIgnored() {
+        return congestionIgnored;
+    }
+
+    public void setCongestionIgnored(boolean congestionIgnored) {
+        this.congestionIgnored = congestionIgnored;
+    }
+
+    /**
+     * Enregistre un pong ; la charge utile est l'instant d'envoi du ping.
+     */
+    public void onPong(ByteBuffer payload) {
+        long now = System.nanoTime();
+        lastPongNanos = now;
+        if (payload != null && payload.remaining() == Long.BYTES) {
+            rttNanos = now - payload.getLong(payload.position());
+        }
+    }
+
+    public long getLastPongNanos() {
+        return lastPongNanos;
+    }
+
+    /**
+     * @return Duree aller-retour du dernier ping en microsecondes, -1 si inconnue
+     */
+    public long getRttMicros() {
+        long rtt = rttNanos;
+        return rtt < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(rtt);
+    }
+
+    public boolean isBridge() {
+        return bridge;
+    }
+
+    public void setBridge(boolean bridge) {
+        this.bridge = bridge;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public List<ECodec> getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * Codecs annonces par le recepteur ; une liste vide revient au JSON.
+     */
+    public void setCodecs(List<ECodec> codecs) {
+        this.codecs = codecs.isEmpty() ? List.of(ECodec.JSON) : List.copyOf(codecs);
+    }
+
+    public Set<EFeature> getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(Set<EFeature> features) {
+        this.features = Set.copyOf(features);
+    }
+
+    /**
+     * Rattache ce recepteur a l'ordonnanceur de son pair, avant tout envoi.
+     */
+    public synchronized void setScheduler(PeerScheduler scheduler, ETrafficClass trafficClass) {
+        this.scheduler = scheduler;
+        this.trafficClass = trafficClass;
+        this.schedulerAttached = scheduler != null;
+    }
+
+    public PeerScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public ETrafficClass getTrafficClass() {
+        return trafficClass;
+    }
+
+    public void close() {
+        PeerScheduler detached = null;
+        synchronized (this) {
+            closed = true;
+            droppedCount.addAndGet(pending.size());
+            pending.clear();
+            parked = null;
+            if (schedulerAttached) {
+                schedulerAttached = false;
+                detached = scheduler;
+            }
+        }
+        if (detached != null) {
+            detached.cancel(this);
+            PeerSchedulers.detach(detached);
+        }
+    }
+
+    /**
+     * Reprend l'envoi du message en attente, appele par {@link PeerScheduler}
+     * quand il lui accorde un creneau.
+     */
+    void resume(int size) {
+        RelayMessage message;
+        synchronized (this) {
+            message = parked;
+            parked = null;
+        }
+        if (message != null) {
+            dispatch(message, true);
+        } else if (scheduler != null) {
+            // File fermee entre-temps : le creneau est rendu
+            scheduler.release(trafficClass, size);
+        }
+    }
+
+    private void dispatch(RelayMessage message) {
+        dispatch(message, false);
+    }
+
+    // Deroule la file tant que les envois se terminent de maniere synchrone,
+    // sinon la suite est reprise par le callback de fin d'envoi.
+    private void dispatch(RelayMessage message, boolean granted) {
+        PeerScheduler current = scheduler;
+        while (message != null) {
+            if (current != null && !granted) {
+                synchronized (this) {
+                    parked = message;
+                }
+                if (!current.acquire(this, trafficClass, message.getSize())) {
+                    return;
+                }
+                synchronized (this) {
+                    parked = null;
+                }
+            }
+            granted = false;
+            Completion completion = new Completion(message);
+            send(message, completion);
+            if (!completion.leave()) {
+                return;
+            }
+            message = pollNext();
+        }
+    }
+
+    private void send(RelayMessage message, SendHandler handler) {
+        try {
+            Object payload = message.getPayload();
+            if (payload instanceof FrameFragment) {
+                FrameFragment fragment = (FrameFragment) payload;
+                if (fragment.isFirst()) {
+                    wholeFrame = partialSenderBusy.get() >= PARTIAL_SENDER_THREADS ? new ByteArrayOutputStream()
+                            : null;
+                }
+                if (wholeFrame != null) {
+                    assembleFragment(fragment, handler);
+                    return;
+                }
+                partialSenderBusy.incrementAndGet();
+                PARTIAL_SENDER.execute(() -> {
+                    try {
+                        sendFragment(fragment, handler);
+                    } finally {
+                        partialSenderBusy.decrementAndGet();
+                    }
+                });
+            } else if (payload instanceof ByteBuffer) {
+                session.getAsyncRemote().sendBinary(((ByteBuffer) payload).duplicate(), handler);
+            } else {
+                session.getAsyncRemote().sendObject(payload, handler);
+            }
+        } catch (Exception e) {
+            handler.onResult(new SendResult(e));
+        }
+    }
+
+    // Accumule le fragment ; la trame part entiere au dernier, ou est oubliee si elle a ete interrompue
+    private void assembleFragment(FrameFragment fragment, SendHandler handler) {
+        if (fragment.isTerminator()) {
+            wholeFrame = null;
+            handler.onResult(new SendResult());
+            return;
+        }
+        ByteBuffer data = fragment.getData().duplicate();
+        byte[] chunk = new byte[data.remaining()];
+        data.get(chunk);
+        wholeFrame.write(chunk, 0, chunk.length);
+        if (!fragment.isLast()) {
+            handler.onResult(new SendResult());
+            return;
+        }
+        byte[] frame = wholeFrame.toByteArray();
+        wholeFrame = null;
+        session.getAsyncRemote().sendBinary(ByteBuffer.wrap(frame), handler);
+    }
+
+    private void sendFragment(FrameFragment fragment, SendHandler handler) {
+        try {
+            session.getBasicRemote().sendBinary(fragment.getData().duplicate(), fragment.isLast());
+            handler.onResult(new SendResult());
+        } catch (Exception e) {
+            handler.onResult(new SendResult(e));
+        }
+    }
+
+    private synchronized RelayMessage pollNext() {
+        RelayMessage next = pending.pollFirst();
+        if (next == null) {
+            sending = false;
+        } else if (next.getFragment() != null) {
+            FrameFragment fragment = next.getFragment();
+            wireFrame = fragment.isLast() ? -1 : fragment.getFrame();
+        }
+        return next;
+    }
+
+    private void disconnect() {
+        System.out.println("Recepteur trop lent deconnecte : " + session.getId());
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "File d'envoi saturee"));
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du recepteur : " + e.getMessage());
+        }
+    }
+
+    private final class Completion implements SendHandler {
+
+        private final Thread caller = Thread.currentThread();
+
+        private final RelayMessage message;
+
+        private boolean returned;
+
+        private boolean completedInline;
+
+        private Completion(RelayMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            PeerScheduler current = scheduler;
+            if (current != null) {
+                current.release(trafficClass, message.getSize());
+            }
+            if (result.isOK()) {
+                if (message.isComplete()) {
+                    sentCount.incrementAndGet();
+                    long latency = System.nanoTime() - message.getReceivedNanos();
+                    latencyEwmaNanos += (latency - latencyEwmaNanos) / LATENCY_EWMA_WEIGHT;
+                }
+                stats.recordOut(message);
+            } else {
+                failedCount.incrementAndGet();
+            }
+            synchronized (this) {
+                if (!returned && Thread.currentThread() == caller) {
+                    completedInline = true;
+                    return;
+                }
+            }
+            dispatch(pollNext());
+        }
+
+        synchronized boolean leave() {
+            returned = true;
+            return completedInline;
+        }
+    }
+}
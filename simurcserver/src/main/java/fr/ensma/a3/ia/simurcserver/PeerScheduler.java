@@ -0,0 +1,218 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordonnanceur des envois vers un meme pair (une machine cliente qui recoit
+ * plusieurs canaux sur des connexions distinctes). Avant chaque envoi, une
+ * {@link OutboundQueue} demande un creneau :
+ * <ul>
+ * <li>les octets en vol vers le pair sont bornes, mais une classe ne compte
+ * que les octets des classes au moins aussi prioritaires qu'elle : une image
+ * en cours d'envoi ne retarde jamais une commande ou une donnee capteur ;</li>
+ * <li>quand plusieurs classes attendent, la plus prioritaire passe, dans la
+ * limite de sa part de debit (deficit round robin) : un flot capteurs ne peut
+ * pas affamer la video.</li>
+ * </ul>
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class PeerScheduler {
+
+    private static final ETrafficClass[] CLASSES = ETrafficClass.values();
+
+    private final String peer;
+
+    private final long inFlightLimit;
+
+    // Credit ajoute a chaque tour, proportionnel a la part de la classe
+    private final long[] quantum = new long[CLASSES.length];
+
+    private final long[] deficit = new long[CLASSES.length];
+
+    private final long[] inFlight = new long[CLASSES.length];
+
+    private final List<ArrayDeque<Waiter>> waiting = new ArrayList<>();
+
+    private final AtomicLong[] sentBytes = new AtomicLong[CLASSES.length];
+
+    private final AtomicLong[] waitCount = new AtomicLong[CLASSES.length];
+
+    private int queueCount;
+
+    PeerScheduler(String peer, long inFlightLimit, int[] sharePercents) {
+        this.peer = peer;
+        this.inFlightLimit = Math.max(1, inFlightLimit);
+        for (ETrafficClass trafficClass : CLASSES) {
+            int i = trafficClass.ordinal();
+            quantum[i] = Math.max(1, this.inFlightLimit * Math.max(1, sharePercents[i]) / 100);
+            waiting.add(new ArrayDeque<>());
+            sentBytes[i] = new AtomicLong();
+            waitCount[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Demande un creneau pour envoyer size octets. En cas de refus, la file
+     * est mise en attente et {@link OutboundQueue#resume(int)} sera appele quand
+     * le creneau lui sera accorde.
+     *
+     * @return true si l'envoi peut partir immediatement
+     */
+    boolean acquire(OutboundQueue queue, ETrafficClass trafficClass, int size) {
+        Waiter waiter = new Waiter(queue, trafficClass, size);
+        List<Waiter> granted;
+        synchronized (this) {
+            waiting.get(trafficClass.ordinal()).addLast(waiter);
+            granted = grant();
+        }
+        boolean immediate = granted.remove(waiter);
+        if (!immediate) {
+            waitCount[trafficClass.ordinal()].incrementAndGet();
+        }
+        resume(granted);
+        return immediate;
+    }
+
+    /**
+     * Signale la fin d'un envoi accorde et reveille les files en attente.
+     */
+    void release(ETrafficClass trafficClass, int size) {
+        List<Waiter> granted;
+        synchronized (this) {
+            inFlight[trafficClass.ordinal()] -= size;
+            granted = grant();
+        }
+        sentBytes[trafficClass.ordinal()].addAndGet(size);
+        resume(granted);
+    }
+
+    /**
+     * Retire une file fermee de l'attente.
+     */
+    void cancel(OutboundQueue queue) {
+        List<Waiter> granted;
+        synchronized (this) {
+            for (ArrayDeque<Waiter> waiters : waiting) {
+                waiters.removeIf(w -> w.queue == queue);
+            }
+            granted = grant();
+        }
+        resume(granted);
+    }
+
+    private static void resume(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.queue.resume(waiter.size);
+        }
+    }
+
+    // Accorde les creneaux possibles, classe la plus prioritaire d'abord
+    private List<Waiter> grant() {
+        List<Waiter> granted = new ArrayList<>();
+        while (true) {
+            boolean starved = false;
+            Waiter next = null;
+            for (ETrafficClass trafficClass : CLASSES) {
+                int i = trafficClass.ordinal();
+                Waiter head = waiting.get(i).peekFirst();
+                if (head == null) {
+                    deficit[i] = 0;
+                    continue;
+                }
+                if (!fits(i, head.size)) {
+                    continue;
+                }
+                if (deficit[i] < head.size) {
+                    starved = true;
+                    continue;
+                }
+                next = head;
+                break;
+            }
+            if (next != null) {
+                int i = next.trafficClass.ordinal();
+                waiting.get(i).pollFirst();
+                deficit[i] -= next.size;
+                inFlight[i] += next.size;
+                granted.add(next);
+            } else if (starved) {
+                // Nouveau tour : chaque classe eligible recoit sa part
+                for (ETrafficClass trafficClass : CLASSES) {
+                    int i = trafficClass.ordinal();
+                    Waiter head = waiting.get(i).peekFirst();
+                    if (head != null && fits(i, head.size)) {
+                        deficit[i] += quantum[i];
+                    }
+                }
+            } else {
+                return granted;
+            }
+        }
+    }
+
+    // Un message plus gros que la limite part seul
+    private boolean fits(int trafficClass, int size) {
+        long used = 0;
+        for (int i = 0; i <= trafficClass; i++) {
+            used += inFlight[i];
+        }
+        return used == 0 || used + size <= inFlightLimit;
+    }
+
+    synchronized void attach() {
+        queueCount++;
+    }
+
+    /**
+     * @return true si plus aucune file n'utilise cet ordonnanceur
+     */
+    synchronized boolean detach() {
+        return --queueCount <= 0;
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public synchronized int getQueueCount() {
+        return queueCount;
+    }
+
+    public synchronized long getInFlight(ETrafficClass trafficClass) {
+        return inFlight[trafficClass.ordinal()];
+    }
+
+    public synchronized int getWaiting(ETrafficClass trafficClass) {
+        return waiting.get(trafficClass.ordinal()).size();
+    }
+
+    public long getSentBytes(ETrafficClass trafficClass) {
+        return sentBytes[trafficClass.ordinal()].get();
+    }
+
+    /**
+     * @return Nombre d'envois qui ont du attendre un creneau
+     */
+    public long getWaitCount(ETrafficClass trafficClass) {
+        return waitCount[trafficClass.ordinal()].get();
+    }
+
+    private static final class Waiter {
+
+        private final OutboundQueue queue;
+
+        private final ETrafficClass trafficClass;
+
+        private final int size;
+
+        private Waiter(OutboundQueue queue, ETrafficClass trafficClass, int size) {
+            this.queue = queue;
+            this.trafficClass = trafficClass;
+            this.size = size;
+        }
+    }
+}
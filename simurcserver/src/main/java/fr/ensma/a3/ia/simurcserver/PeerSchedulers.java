@@ -0,0 +1,39 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ordonnanceurs par pair, crees a la premiere file qui declare ?peer=... et
+ * supprimes quand la derniere se ferme.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class PeerSchedulers {
+
+    public static final String PEER_PARAMETER = "peer";
+
+    private static final Map<String, PeerScheduler> schedulers = new ConcurrentHashMap<>();
+
+    private PeerSchedulers() {
+    }
+
+    static PeerScheduler attach(String peer) {
+        return schedulers.compute(peer, (name, current) -> {
+            PeerScheduler scheduler = current != null ? current
+                    : new PeerScheduler(name, RelayConfig.getSchedulerInFlightBytes(),
+                            RelayConfig.getSchedulerSharePercents());
+            scheduler.attach();
+            return scheduler;
+        });
+    }
+
+    static void detach(PeerScheduler scheduler) {
+        schedulers.computeIfPresent(scheduler.getPeer(),
+                (name, current) -> current == scheduler && current.detach() ? null : current);
+    }
+
+    public static Map<String, PeerScheduler> getSchedulers() {
+        return Map.copyOf(schedulers);
+    }
+}
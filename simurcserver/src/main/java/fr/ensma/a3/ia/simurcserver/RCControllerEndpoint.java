@@ -1,7 +1,9 @@
 package fr.ensma.a3.ia.simurcserver;
 
+import jakarta.websocket.OnClose;
 import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
@@ -12,7 +14,8 @@ import jakarta.websocket.server.ServerEndpoint;
 @ServerEndpoint(value = "/rccontroller/{mode}")
 public class RCControllerEndpoint {
 
-    private static final SessionRegistry<String> hub = new SessionRegistry<>();
+    private static final SessionRegistry<String> hub = RelayChannels.RC_CONTROLLER
+            .registry(RelayChannel.DEFAULT_VEHICLE);
 
     @OnOpen
     public void onOpen(Session session, @PathParam("mode") String mode) {
@@ -25,4 +28,19 @@ public class RCControllerEndpoint {
     public void onMessage(Session session, String message) {       
         hub.broadcastJSON(session, message);
     }
+
+    @OnMessage
+    public void onBinaryMessage(Session session, byte[] message) {
+        hub.broadcastBinary(session, message);
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        hub.onPong(session, pong.getApplicationData());
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        hub.unregister(session);
+    }
 }
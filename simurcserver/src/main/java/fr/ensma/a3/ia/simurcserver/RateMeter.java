@@ -0,0 +1,44 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteur cumule et debit moyen par seconde. Le debit est recalcule a la
+ * lecture, sur l'intervalle ecoule depuis le calcul precedent (au moins une
+ * seconde) : l'enregistrement reste un simple increment sans verrou.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class RateMeter {
+
+    private static final long MIN_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder count = new LongAdder();
+
+    private long windowStartNanos = System.nanoTime();
+
+    private long windowStartCount;
+
+    private double rate;
+
+    public void mark(long n) {
+        count.add(n);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public synchronized double getRatePerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= MIN_WINDOW_NANOS) {
+            long total = count.sum();
+            rate = (total - windowStartCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            windowStartNanos = now;
+            windowStartCount = total;
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,149 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Canal relaye (capteurs, commandes, video...) decoupe en un registre par
+ * vehicule. Les registres sont independants : deux vehicules ne partagent
+ * aucun verrou. Un registre sans emetteur ni recepteur depuis registry.idleMs
+ * est evince, et le nombre de vehicules par canal est borne
+ * (registry.maxVehicles) : des noms de vehicule arbitraires n'epuisent pas
+ * la memoire.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class RelayChannel {
+
+    public static final String DEFAULT_VEHICLE = "default";
+
+    private static final Pattern VEHICLE_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final String name;
+
+    private final EDeliveryMode defaultDeliveryMode;
+
+    private final ChannelLimits limits;
+
+    private final boolean derived;
+
+    private final Map<String, SessionRegistry<String>> registries = new ConcurrentHashMap<>();
+
+    private final int maxVehicles;
+
+    // Registres hors vehicule par defaut, reserves avant leur insertion
+    private final AtomicInteger vehicleCount = new AtomicInteger();
+
+    private final long idleNanos;
+
+    public RelayChannel(String name, EDeliveryMode defaultDeliveryMode) {
+        this(name, defaultDeliveryMode, false);
+    }
+
+    /**
+     * @param control true pour un canal de commande, prioritaire quand le serveur est charge
+     */
+    public RelayChannel(String name, EDeliveryMode defaultDeliveryMode, boolean control) {
+        this(name, defaultDeliveryMode, control, false);
+    }
+
+    /**
+     * @param derived true pour un canal calcule par le relais (voir {@link StreamStage}), sans emetteur
+     */
+    public RelayChannel(String name, EDeliveryMode defaultDeliveryMode, boolean control, boolean derived) {
+        this.name = name;
+        this.defaultDeliveryMode = defaultDeliveryMode;
+        this.limits = new ChannelLimits(name, control);
+        this.derived = derived;
+        this.maxVehicles = RelayConfig.getInt(name, "registry.maxVehicles", 1024);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(RelayConfig.getInt(name, "registry.idleMs", 60000));
+    }
+
+    public static boolean isValidVehicle(String vehicle) {
+        return vehicle != null && VEHICLE_PATTERN.matcher(vehicle).matches();
+    }
+
+    /**
+     * @return Le registre du vehicule, cree a la premiere connexion, ou null
+     *         si le canal a deja registry.maxVehicles vehicules
+     */
+    public SessionRegistry<String> registry(String vehicle) {
+        // Marque sous le verrou de la table : le registre ne peut etre evince
+        // entre son obtention et la connexion qui suit
+        SessionRegistry<String> found = registries.compute(vehicle, (v, current) -> {
+            if (current == null && !DEFAULT_VEHICLE.equals(v) && !reserveVehicle()) {
+                return null;
+            }
+            SessionRegistry<String> registry = current != null ? current
+                    : new SessionRegistry<>(name, v, defaultDeliveryMode, limits);
+            registry.touch();
+            return registry;
+        });
+        if (found == null) {
+            System.out.println("Nombre maximal de vehicules atteint (" + name + ") : " + vehicle);
+        }
+        return found;
+    }
+
+    // Les connexions concurrentes de vehicules differents ne peuvent depasser la borne
+    private boolean reserveVehicle() {
+        int current;
+        do {
+            current = vehicleCount.get();
+            if (current >= maxVehicles) {
+                return false;
+            }
+        } while (!vehicleCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * @return Le registre du vehicule s'il existe, sans le creer
+     */
+    public SessionRegistry<String> find(String vehicle) {
+        return registries.get(vehicle);
+    }
+
+    /**
+     * Evince les registres inutilises ; appele periodiquement par
+     * {@link HeartbeatMonitor}. Le registre par defaut, tenu par les
+     * endpoints historiques, est conserve.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        for (String vehicle : registries.keySet()) {
+            if (!DEFAULT_VEHICLE.equals(vehicle)) {
+                registries.computeIfPresent(vehicle, (v, registry) -> {
+                    if (!registry.evictIfIdle(now, idleNanos)) {
+                        return registry;
+                    }
+                    vehicleCount.decrementAndGet();
+                    return null;
+                });
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ChannelLimits getLimits() {
+        return limits;
+    }
+
+    public boolean isDerived() {
+        return derived;
+    }
+
+    public EDeliveryMode getDefaultDeliveryMode() {
+        return defaultDeliveryMode;
+    }
+
+    public Map<String, SessionRegistry<String>> getRegistries() {
+        return Map.copyOf(registries);
+    }
+}
@@ -0,0 +1,49 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.List;
+
+/**
+ * Canaux relayes par le serveur, partages entre l'adresse historique
+ * (/sensorflow/{mode}, vehicule par defaut) et l'adresse par vehicule
+ * (/sensorflow/{vehicle}/{mode}).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class RelayChannels {
+
+    public static final RelayChannel RC_CONTROLLER = new RelayChannel("rccontroller", EDeliveryMode.QUEUED, true);
+
+    public static final RelayChannel SENSOR_FLOW = new RelayChannel("sensorflow", EDeliveryMode.QUEUED);
+
+    public static final RelayChannel WEBCAM_CONTROLLER = new RelayChannel("webcamcontroller", EDeliveryMode.QUEUED,
+            true);
+
+    public static final RelayChannel WEBCAM_DRIVER_STREAM = new RelayChannel("webcamdriverstream",
+            EDeliveryMode.CONFLATED);
+
+    public static final RelayChannel WEBCAM_ASSISTANT_STREAM = new RelayChannel("webcamassistantstream",
+            EDeliveryMode.CONFLATED);
+
+    // Canal derive, calcule par le relais depuis SENSOR_FLOW (voir StreamStages)
+    public static final RelayChannel MOTION_CUE = new RelayChannel("motioncue", EDeliveryMode.QUEUED, false, true);
+
+    private RelayChannels() {
+    }
+
+    public static List<RelayChannel> all() {
+        return List.of(RC_CONTROLLER, SENSOR_FLOW, WEBCAM_CONTROLLER, WEBCAM_DRIVER_STREAM, WEBCAM_ASSISTANT_STREAM,
+                MOTION_CUE);
+    }
+
+    /**
+     * @return Le canal de ce nom, ou null s'il n'existe pas
+     */
+    public static RelayChannel byName(String name) {
+        for (RelayChannel channel : all()) {
+            if (channel.getName().equals(name)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
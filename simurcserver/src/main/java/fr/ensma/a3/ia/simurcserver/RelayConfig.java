@@ -0,0 +1,230 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Parametres du relais, lus depuis les proprietes systeme (jvm.options) ou les
+ * variables d'environnement. Une valeur propre a un canal
+ * (simurcserver.sensorflow.queue.capacity) est prioritaire sur la valeur
+ * globale (simurcserver.queue.capacity). La variable d'environnement
+ * equivalente est en majuscules avec des '_' (SIMURCSERVER_QUEUE_CAPACITY).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class RelayConfig {
+
+    private static final String PREFIX = "simurcserver.";
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    private static final EOverflowPolicy DEFAULT_OVERFLOW_POLICY = EOverflowPolicy.DROP_OLDEST;
+
+    private static final int DEFAULT_SNAPSHOT_MAX_AGE_MS = 2000;
+
+    private static final int DEFAULT_CONGESTION_TARGET_LATENCY_MS = 200;
+
+    private static final int DEFAULT_SENDER_SILENCE_MS = 3000;
+
+    private static final int DEFAULT_SCHEDULER_IN_FLIGHT_KB = 64;
+
+    // Parts de debit par defaut (%), dans l'ordre de ETrafficClass
+    private static final int[] DEFAULT_SCHEDULER_SHARES = { 20, 30, 50 };
+
+    private static final int DEFAULT_MAX_FRAME_KB = 4096;
+
+    private static final int DEFAULT_DVR_SECONDS = 0;
+
+    private static final int DEFAULT_DVR_VIDEO_MB = 32;
+
+    private static final int DEFAULT_DVR_MB = 2;
+
+    private static final int DEFAULT_DVR_MAX_TOTAL_MB = 256;
+
+    private static final String DEFAULT_VIDEO_TIERS = "medium:640:0.7,low:320:0.5";
+
+    private RelayConfig() {
+    }
+
+    public static int getQueueCapacity(String channel) {
+        return getInt(channel, "queue.capacity", DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public static EOverflowPolicy getOverflowPolicy(String channel) {
+        String value = getString(channel, "queue.overflow");
+        if (value == null) {
+            return DEFAULT_OVERFLOW_POLICY;
+        }
+        try {
+            return EOverflowPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Politique de debordement inconnue : " + value);
+            return DEFAULT_OVERFLOW_POLICY;
+        }
+    }
+
+    /**
+     * @return Age maximal (ms) du dernier message rejoue aux nouveaux recepteurs, 0 pour desactiver
+     */
+    public static int getSnapshotMaxAgeMs(String channel) {
+        return getInt(channel, "snapshot.maxAgeMs", DEFAULT_SNAPSHOT_MAX_AGE_MS);
+    }
+
+    /**
+     * @return true pour relayer les fragments binaires des leur reception
+     */
+    public static boolean isCutThrough(String channel) {
+        String value = getString(channel, "cutThrough");
+        return value != null && Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @return Taille maximale (octets) d'un message binaire recu par fragments
+     */
+    public static int getMaxFrameBytes(String channel) {
+        return getInt(channel, "maxFrameKb", DEFAULT_MAX_FRAME_KB) << 10;
+    }
+
+    /**
+     * @return Capacite minimale (octets) des seaux des limites de debit : le
+     *         plus gros message admis, par defaut la taille maximale d'une trame
+     */
+    public static int getLimitBurstBytes(String channel) {
+        return getInt(channel, "limit.burstBytes", getMaxFrameBytes(channel));
+    }
+
+    /**
+     * @return true pour renvoyer a l'emetteur le niveau de congestion de ses recepteurs
+     */
+    public static boolean isCongestionFeedback(String channel, boolean defaultValue) {
+        String value = getString(channel, "congestion.feedback");
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @return Latence de diffusion (ms) consideree comme une congestion totale
+     */
+    public static int getCongestionTargetLatencyMs(String channel) {
+        return getInt(channel, "congestion.targetLatencyMs", DEFAULT_CONGESTION_TARGET_LATENCY_MS);
+    }
+
+    /**
+     * @return Silence (ms) de l'emetteur au-dela duquel le canal est marque perime
+     */
+    public static int getSenderSilenceMs(String channel) {
+        return getInt(channel, "heartbeat.senderSilenceMs", DEFAULT_SENDER_SILENCE_MS);
+    }
+
+    /**
+     * @return Paliers video "nom:largeur:qualite,..." proposes aux spectateurs,
+     *         ceux par defaut pour un flux video, chaine vide pour aucun
+     */
+    public static String getVideoTiers(String channel, boolean video) {
+        String value = getString(channel, "tiers");
+        if (value == null) {
+            return video ? DEFAULT_VIDEO_TIERS : "";
+        }
+        return value;
+    }
+
+    /**
+     * @return Duree conservee pour le rejeu immediat (s), 0 (defaut) pour desactiver
+     */
+    public static int getDvrSeconds(String channel) {
+        return getInt(channel, "dvr.seconds", DEFAULT_DVR_SECONDS);
+    }
+
+    /**
+     * @return Taille de l'anneau du rejeu immediat, plus grande par defaut pour un flux video
+     */
+    public static int getDvrBufferBytes(String channel, boolean video) {
+        return getInt(channel, "dvr.bufferMb", video ? DEFAULT_DVR_VIDEO_MB : DEFAULT_DVR_MB) << 20;
+    }
+
+    /**
+     * @return Memoire totale des anneaux et des tampons de lecture du rejeu immediat
+     */
+    public static long getDvrMaxTotalBytes() {
+        return (long) getInt(null, "dvr.maxTotalMb", DEFAULT_DVR_MAX_TOTAL_MB) << 20;
+    }
+
+    /**
+     * @return true pour autoriser la modification a chaud des limites de debit (POST /relay/limits)
+     */
+    public static boolean isLimitsWritable() {
+        String value = getString(null, "limits.writable");
+        return value != null && Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @return Octets en vol au-dela desquels un pair n'a plus de creneau d'envoi
+     */
+    public static long getSchedulerInFlightBytes() {
+        return (long) getInt(null, "scheduler.inFlightKb", DEFAULT_SCHEDULER_IN_FLIGHT_KB) << 10;
+    }
+
+    /**
+     * @return Part de debit (%) de chaque {@link ETrafficClass} quand plusieurs attendent
+     */
+    public static int[] getSchedulerSharePercents() {
+        int[] shares = new int[ETrafficClass.values().length];
+        for (ETrafficClass trafficClass : ETrafficClass.values()) {
+            int i = trafficClass.ordinal();
+            shares[i] = getInt(null, "scheduler.share." + trafficClass.name().toLowerCase(),
+                    DEFAULT_SCHEDULER_SHARES[i]);
+        }
+        return shares;
+    }
+
+    public static ETrafficClass getTrafficClass(String channel, ETrafficClass defaultClass) {
+        String value = getString(channel, "trafficClass");
+        if (value == null) {
+            return defaultClass;
+        }
+        try {
+            return ETrafficClass.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Classe de trafic inconnue : " + value);
+            return defaultClass;
+        }
+    }
+
+    public static EDeliveryMode getDeliveryMode(String channel, EDeliveryMode defaultMode) {
+        String value = getString(channel, "delivery");
+        if (value == null) {
+            return defaultMode;
+        }
+        try {
+            return EDeliveryMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Mode de livraison inconnu : " + value);
+            return defaultMode;
+        }
+    }
+
+    static String getString(String channel, String key) {
+        String value = null;
+        if (channel != null) {
+            value = lookup(PREFIX + channel + "." + key);
+        }
+        return value != null ? value : lookup(PREFIX + key);
+    }
+
+    static int getInt(String channel, String key, int defaultValue) {
+        String value = getString(channel, key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valeur entiere invalide pour " + key + " : " + value);
+            return defaultValue;
+        }
+    }
+
+    private static String lookup(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            value = System.getenv(name.toUpperCase().replace('.', '_'));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,32 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Demarre et arrete les services d'arriere-plan du relais avec l'application.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@WebListener
+public class RelayLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        SessionJournal.getInstance();
+        TelemetryStore.getInstance();
+        CongestionMonitor.start();
+        HeartbeatMonitor.start();
+        ClusterBridge.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ClusterBridge.shutdown();
+        HeartbeatMonitor.shutdown();
+        CongestionMonitor.shutdown();
+        TelemetryStore.shutdown();
+        SessionJournal.shutdown();
+    }
+}
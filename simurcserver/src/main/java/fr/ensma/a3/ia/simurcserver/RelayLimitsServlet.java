@@ -0,0 +1,101 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Consulte (GET) et modifie a chaud (POST) les limites de debit. En POST, le
+ * parametre channel designe le canal modifie ; globalBytesPerSecond s'applique
+ * au serveur. Une valeur 0 supprime la limite. La modification est refusee
+ * (403) tant que simurcserver.limits.writable n'est pas a true : par defaut,
+ * n'importe quel client ne peut pas lever les limites.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@WebServlet("/relay/limits")
+public class RelayLimitsServlet extends HttpServlet {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        writeLimits(resp);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!RelayConfig.isLimitsWritable()) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN, "Modification des limites desactivee");
+            return;
+        }
+        try {
+            Double global = parse(req, "globalBytesPerSecond");
+            if (global != null) {
+                ChannelLimits.setGlobalBytesPerSecond(global);
+            }
+
+            String channelName = req.getParameter("channel");
+            if (channelName != null) {
+                RelayChannel channel = RelayChannels.byName(channelName);
+                if (channel == null) {
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Canal inconnu : " + channelName);
+                    return;
+                }
+                ChannelLimits limits = channel.getLimits();
+                Double value = parse(req, "senderMessagesPerSecond");
+                if (value != null) {
+                    limits.setSenderMessagesPerSecond(value);
+                }
+                value = parse(req, "senderBytesPerSecond");
+                if (value != null) {
+                    limits.setSenderBytesPerSecond(value);
+                }
+                value = parse(req, "channelMessagesPerSecond");
+                if (value != null) {
+                    limits.setChannelMessagesPerSecond(value);
+                }
+                value = parse(req, "channelBytesPerSecond");
+                if (value != null) {
+                    limits.setChannelBytesPerSecond(value);
+                }
+            }
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Valeur invalide : " + e.getMessage());
+            return;
+        }
+        writeLimits(resp);
+    }
+
+    private void writeLimits(HttpServletResponse resp) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("globalBytesPerSecond", ChannelLimits.getGlobalBytesPerSecond());
+        ArrayNode channels = root.putArray("channels");
+        for (RelayChannel channel : RelayChannels.all()) {
+            ChannelLimits limits = channel.getLimits();
+            ObjectNode node = channels.addObject();
+            node.put("channel", channel.getName());
+            node.put("control", limits.isControl());
+            node.put("senderMessagesPerSecond", limits.getSenderMessagesPerSecond());
+            node.put("senderBytesPerSecond", limits.getSenderBytesPerSecond());
+            node.put("channelMessagesPerSecond", limits.getChannelMessagesPerSecond());
+            node.put("channelBytesPerSecond", limits.getChannelBytesPerSecond());
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getOutputStream(), root);
+    }
+
+    private static Double parse(HttpServletRequest req, String name) {
+        String value = req.getParameter(name);
+        return value == null ? null : Double.valueOf(value.trim());
+    }
+}
@@ -0,0 +1,101 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Message relaye, partage par toutes les files des recepteurs. Le contenu est
+ * un objet texte, un ByteBuffer en lecture seule ou un {@link FrameFragment}.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class RelayMessage {
+
+    private final Object payload;
+
+    private final int size;
+
+    private final long receivedNanos;
+
+    private final boolean bridged;
+
+    public RelayMessage(Object payload, int size, long receivedNanos) {
+        this(payload, size, receivedNanos, false);
+    }
+
+    public RelayMessage(Object payload, int size, long receivedNanos, boolean bridged) {
+        this.payload = payload;
+        this.size = size;
+        this.receivedNanos = receivedNanos;
+        this.bridged = bridged;
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return Taille en octets (encodage UTF-8 pour un message texte)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Instant (System.nanoTime()) de reception depuis l'emetteur
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * @return true si le message vient d'un autre noeud du cluster
+     */
+    public boolean isBridged() {
+        return bridged;
+    }
+
+    /**
+     * @return Le fragment transporte, ou null pour un message complet
+     */
+    public FrameFragment getFragment() {
+        return payload instanceof FrameFragment ? (FrameFragment) payload : null;
+    }
+
+    /**
+     * @return true si l'envoi de ce message termine un message applicatif
+     */
+    public boolean isComplete() {
+        FrameFragment fragment = getFragment();
+        return fragment == null || fragment.isLast();
+    }
+
+    /**
+     * @return Taille en octets d'un message texte une fois encode en UTF-8,
+     *         calculee sans copie
+     */
+    public static int sizeOf(CharSequence text) {
+        int length = text.length();
+        int size = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    size++;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    // Paire de substitution : 4 octets pour 2 caracteres
+                    size += 2;
+                    i++;
+                } else {
+                    size += 2;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Le meme contenu, date de maintenant (rejeu d'un etat deja relaye)
+     */
+    public RelayMessage restamp() {
+        return new RelayMessage(payload, size, System.nanoTime(), bridged);
+    }
+}
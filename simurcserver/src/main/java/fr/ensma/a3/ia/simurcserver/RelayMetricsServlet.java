@@ -0,0 +1,205 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Expose en JSON les metriques du relais, par canal et par vehicule : debits
+ * entrants et sortants, recepteurs, files d'envoi, pertes et histogramme de
+ * latence de diffusion. Le parametre reset=true remet les histogrammes a zero
+ * apres lecture, pour suivre la latence par intervalle.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@WebServlet("/relay/metrics")
+public class RelayMetricsServlet extends HttpServlet {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        boolean reset = Boolean.parseBoolean(req.getParameter("reset"));
+
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode channels = root.putArray("channels");
+        for (RelayChannel channel : RelayChannels.all()) {
+            Map<String, SessionRegistry<String>> registries = new TreeMap<>(channel.getRegistries());
+            for (SessionRegistry<String> registry : registries.values()) {
+                channels.add(buildRegistryNode(registry, reset));
+            }
+        }
+
+        ArrayNode stages = root.putArray("stages");
+        for (StreamStage stage : StreamStages.all()) {
+            ObjectNode node = stages.addObject();
+            node.put("stage", stage.getName());
+            node.put("input", stage.getInputChannel());
+            node.put("output", stage.getOutputChannel());
+            node.put("processed", stage.getProcessedCount());
+            node.put("dropped", stage.getDroppedCount());
+            node.put("failed", stage.getFailedCount());
+            node.put("processMicros", stage.getAverageProcessMicros());
+            node.set("latencyMicros", buildHistogramNode(stage.getLatency(), reset));
+        }
+
+        ArrayNode peers = root.putArray("peers");
+        for (PeerScheduler scheduler : new TreeMap<>(PeerSchedulers.getSchedulers()).values()) {
+            ObjectNode node = peers.addObject();
+            node.put("peer", scheduler.getPeer());
+            node.put("queues", scheduler.getQueueCount());
+            for (ETrafficClass trafficClass : ETrafficClass.values()) {
+                ObjectNode classNode = node.putObject(trafficClass.name().toLowerCase());
+                classNode.put("inFlightBytes", scheduler.getInFlight(trafficClass));
+                classNode.put("waiting", scheduler.getWaiting(trafficClass));
+                classNode.put("waits", scheduler.getWaitCount(trafficClass));
+                classNode.put("sentBytes", scheduler.getSentBytes(trafficClass));
+            }
+        }
+
+        ArrayNode signaling = root.putArray("signaling");
+        for (SignalingRoom room : new TreeMap<>(SignalingRooms.getRooms()).values()) {
+            ObjectNode node = signaling.addObject();
+            node.put("room", room.getName());
+            node.put("peers", room.getPeerCount());
+            node.set("in", buildFlowNode(room.getStats().getInMessages(), room.getStats().getInBytes()));
+            node.set("out", buildFlowNode(room.getStats().getOutMessages(), room.getStats().getOutBytes()));
+        }
+
+        root.put("dvrReservedBytes", DvrRing.getReservedBytes());
+
+        ArrayNode bridges = root.putArray("bridges");
+        for (BridgeLink link : ClusterBridge.getLinks()) {
+            ObjectNode node = bridges.addObject();
+            node.put("peer", link.getPeer());
+            node.put("channel", link.getRegistry().getChannel());
+            node.put("vehicle", link.getRegistry().getVehicle());
+            node.put("connected", link.isOpen());
+            node.put("received", link.getReceivedCount());
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getOutputStream(), root);
+    }
+
+    private ObjectNode buildRegistryNode(SessionRegistry<String> registry, boolean reset) {
+        RelayStats stats = registry.getStats();
+
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("channel", registry.getChannel());
+        node.put("vehicle", registry.getVehicle());
+        node.put("deliveryMode", registry.getDeliveryMode().name());
+        node.put("trafficClass", registry.getTrafficClass().name());
+        node.put("senderConnected", registry.hasSender());
+        node.put("senderAgeMs", registry.getSenderAgeMillis());
+        node.put("senderIdleMs", registry.getSenderIdleMillis());
+        node.put("stale", registry.isStale());
+        node.set("in", buildFlowNode(stats.getInMessages(), stats.getInBytes()));
+        node.set("out", buildFlowNode(stats.getOutMessages(), stats.getOutBytes()));
+
+        long depth = 0;
+        long dropped = 0;
+        long superseded = 0;
+        ArrayNode receivers = objectMapper.createArrayNode();
+        for (OutboundQueue queue : registry.getReceiverQueues()) {
+            ObjectNode receiver = receivers.addObject();
+            receiver.put("session", queue.getSession().getId());
+            receiver.put("ageMs", queue.getAgeMillis());
+            receiver.put("lastPongAgeMs",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queue.getLastPongNanos()));
+            receiver.put("rttMicros", queue.getRttMicros());
+            receiver.put("bridge", queue.isBridge());
+            receiver.put("peer", queue.getScheduler() == null ? null : queue.getScheduler().getPeer());
+            receiver.put("tier", queue.getTier() == null ? VideoTiering.FULL_TIER : queue.getTier());
+            receiver.put("maxRate", queue.getMaxRate());
+            ArrayNode codecs = receiver.putArray("codecs");
+            for (ECodec codec : queue.getCodecs()) {
+                codecs.add(codec.getLabel());
+            }
+            ArrayNode features = receiver.putArray("features");
+            for (EFeature feature : queue.getFeatures()) {
+                features.add(feature.getLabel());
+            }
+            receiver.put("decimated", queue.getDecimatedCount());
+            receiver.put("depth", queue.getDepth());
+            receiver.put("capacity", queue.getCapacity());
+            receiver.put("sent", queue.getSentCount());
+            receiver.put("dropped", queue.getDroppedCount());
+            receiver.put("superseded", queue.getSupersededCount());
+            receiver.put("failed", queue.getFailedCount());
+            receiver.put("latencyMs", queue.getLatencyEwmaNanos() / 1_000_000.0);
+            depth += queue.getDepth();
+            dropped += queue.getDroppedCount();
+            superseded += queue.getSupersededCount();
+        }
+        node.put("receiverCount", receivers.size());
+        node.put("queueDepth", depth);
+        node.put("dropped", dropped);
+        node.put("superseded", superseded);
+        node.put("congestion", registry.getCongestion());
+        node.put("transcoded", registry.getTranscodedCount());
+        node.put("transcodeFailed", registry.getTranscodeFailedCount());
+        DvrRing dvr = registry.getDvr();
+        if (dvr != null) {
+            ObjectNode dvrNode = node.putObject("dvr");
+            dvrNode.put("capacityBytes", dvr.getCapacity());
+            dvrNode.put("usedBytes", dvr.getUsedBytes());
+            dvrNode.put("records", dvr.getRecordCount());
+            dvrNode.put("spanMs", dvr.getSpanMillis());
+        }
+        VideoTiering tiering = registry.getTiering();
+        if (tiering != null) {
+            ObjectNode tiersNode = node.putObject("tiers");
+            tiersNode.put("skipped", tiering.getSkippedCount());
+            tiersNode.put("errors", tiering.getDecodeErrorCount());
+            ArrayNode list = tiersNode.putArray("list");
+            for (VideoTier tier : tiering.getTiers()) {
+                ObjectNode tierNode = list.addObject();
+                tierNode.put("name", tier.getName());
+                tierNode.put("maxWidth", tier.getMaxWidth());
+                tierNode.put("quality", tier.getQuality());
+                tierNode.put("encoded", tier.getEncodedCount());
+                tierNode.put("encodeMs", tier.getAverageEncodeMillis());
+                tierNode.put("lastSize", tier.getLastSize());
+            }
+        }
+        node.put("rateLimited", registry.getRateLimitedCount());
+        node.put("oversizeFrames", registry.getOversizeFrameCount());
+        node.set("fanOutLatencyMicros", buildHistogramNode(stats.getFanOutLatency(), reset));
+        node.set("receivers", receivers);
+        return node;
+    }
+
+    private ObjectNode buildFlowNode(RateMeter messages, RateMeter bytes) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("messages", messages.getCount());
+        node.put("bytes", bytes.getCount());
+        node.put("messagesPerSecond", messages.getRatePerSecond());
+        node.put("bytesPerSecond", bytes.getRatePerSecond());
+        return node;
+    }
+
+    static ObjectNode buildHistogramNode(LatencyHistogram histogram, boolean reset) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("count", histogram.getCount());
+        node.put("p50", histogram.getValueAtQuantile(0.50) / 1000.0);
+        node.put("p99", histogram.getValueAtQuantile(0.99) / 1000.0);
+        node.put("p999", histogram.getValueAtQuantile(0.999) / 1000.0);
+        node.put("max", histogram.getMax() / 1000.0);
+        if (reset) {
+            histogram.reset();
+        }
+        return node;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Statistiques d'un registre : debits entrants et sortants, et latence entre
+ * la reception d'un message (entree de @OnMessage) et la fin de son envoi a
+ * chaque recepteur.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class RelayStats {
+
+    private final RateMeter inMessages = new RateMeter();
+
+    private final RateMeter inBytes = new RateMeter();
+
+    private final RateMeter outMessages = new RateMeter();
+
+    private final RateMeter outBytes = new RateMeter();
+
+    private final LatencyHistogram fanOutLatency = new LatencyHistogram();
+
+    public void recordIn(RelayMessage message) {
+        if (message.isComplete()) {
+            inMessages.mark(1);
+        }
+        inBytes.mark(message.getSize());
+    }
+
+    public void recordOut(RelayMessage message) {
+        if (message.isComplete()) {
+            outMessages.mark(1);
+        }
+        outBytes.mark(message.getSize());
+        fanOutLatency.record(System.nanoTime() - message.getReceivedNanos());
+    }
+
+    public RateMeter getInMessages() {
+        return inMessages;
+    }
+
+    public RateMeter getInBytes() {
+        return inBytes;
+    }
+
+    public RateMeter getOutMessages() {
+        return outMessages;
+    }
+
+    public RateMeter getOutBytes() {
+        return outBytes;
+    }
+
+    public LatencyHistogram getFanOutLatency() {
+        return fanOutLatency;
+    }
+}
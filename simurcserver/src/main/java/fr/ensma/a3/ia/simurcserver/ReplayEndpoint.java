@@ -0,0 +1,120 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * Rejeu d'une session enregistree par {@link SessionJournal}. Parametres :
+ * vehicle (defaut "default"), speed (defaut 1) et fromMs (position de depart
+ * relative au debut de la session). La session "latest" designe le dernier
+ * enregistrement.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/replay/{session}/{channel}")
+public class ReplayEndpoint {
+
+    private static final Pattern SESSION_PATTERN = Pattern.compile("[0-9]{8}-[0-9]{6}");
+
+    private static final String LATEST = "latest";
+
+    private ReplaySession replay;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("session") String sessionName,
+            @PathParam("channel") String channelName) throws IOException {
+        System.out.println("ReplayEndpoint.onOpen() " + sessionName + "/" + channelName);
+
+        String dir = RelayConfig.getString(null, "journal.dir");
+        if (dir == null || dir.isBlank()) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Journal desactive"));
+            return;
+        }
+        RelayChannel channel = RelayChannels.byName(channelName);
+        String vehicle = parameter(session, "vehicle", RelayChannel.DEFAULT_VEHICLE);
+        if (channel == null || !RelayChannel.isValidVehicle(vehicle)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Canal invalide"));
+            return;
+        }
+        Path sessionDir = resolveSession(Paths.get(dir), sessionName);
+        if (sessionDir == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Session inconnue"));
+            return;
+        }
+
+        double speed;
+        long fromMs;
+        try {
+            speed = Double.parseDouble(parameter(session, "speed", "1"));
+            fromMs = Long.parseLong(parameter(session, "fromMs", "0"));
+        } catch (NumberFormatException e) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Parametre invalide"));
+            return;
+        }
+        if (speed <= 0) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Vitesse invalide"));
+            return;
+        }
+
+        JournalReader reader;
+        try {
+            reader = new JournalReader(sessionDir);
+        } catch (IOException e) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Session illisible"));
+            return;
+        }
+        replay = new ReplaySession(session, reader, channel, vehicle, speed);
+        replay.seek(fromMs);
+    }
+
+    @OnMessage
+    public void onMessage(Session session, String command) {
+        if (replay != null) {
+            replay.handleCommand(command);
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (replay != null) {
+            replay.stop();
+        }
+    }
+
+    private static String parameter(Session session, String name, String defaultValue) {
+        Map<String, List<String>> parameters = session.getRequestParameterMap();
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static Path resolveSession(Path root, String name) throws IOException {
+        if (LATEST.equals(name)) {
+            if (!Files.isDirectory(root)) {
+                return null;
+            }
+            try (Stream<Path> dirs = Files.list(root)) {
+                return dirs.filter(p -> SESSION_PATTERN.matcher(p.getFileName().toString()).matches())
+                        .filter(Files::isDirectory).max(Path::compareTo).orElse(null);
+            }
+        }
+        if (!SESSION_PATTERN.matcher(name).matches()) {
+            return null;
+        }
+        Path sessionDir = root.resolve(name);
+        return Files.isDirectory(sessionDir) ? sessionDir : null;
+    }
+}
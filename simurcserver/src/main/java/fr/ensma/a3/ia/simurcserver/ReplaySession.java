@@ -0,0 +1,289 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+
+/**
+ * Rejeu d'un canal enregistre vers un recepteur. Chaque message est emis a son
+ * echeance : l'ecart avec le message precedent est celui de l'enregistrement,
+ * divise par la vitesse. Les envois passent par une {@link OutboundQueue},
+ * comme pour un recepteur en direct.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class ReplaySession {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "relay-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // En dessous de ce delai, le message est emis sans replanification
+    private static final long DUE_TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int MAX_BATCH = 64;
+
+    private static final long DRAIN_POLL_MS = 50;
+
+    private final Session session;
+
+    private final JournalReader reader;
+
+    private final String channelKey;
+
+    private final OutboundQueue queue;
+
+    private final ByteArrayOutputStream assembly = new ByteArrayOutputStream();
+
+    private boolean assembling;
+
+    private double speed;
+
+    private boolean paused;
+
+    private boolean stopped;
+
+    // Correspondance instant enregistre / instant reel
+    private long originRecordedNanos;
+
+    private long originWallNanos;
+
+    // Prochain enregistrement du canal, en attente de son echeance
+    private JournalRecord next;
+
+    private ScheduledFuture<?> scheduled;
+
+    public ReplaySession(Session session, JournalReader reader, RelayChannel channel, String vehicle, double speed) {
+        this.session = session;
+        this.reader = reader;
+        this.channelKey = channel.getName() + "/" + vehicle;
+        this.speed = speed;
+        String name = channel.getName();
+        this.queue = new OutboundQueue(session, RelayConfig.getQueueCapacity(name),
+                RelayConfig.getOverflowPolicy(name),
+                RelayConfig.getDeliveryMode(name, channel.getDefaultDeliveryMode()), new RelayStats());
+    }
+
+    /**
+     * Repositionne le rejeu a l'instant donne, relatif au debut de la session.
+     * Le premier message du canal a partir de cet instant part aussitot : un
+     * canal enregistre tardivement ne fait pas attendre le recepteur.
+     */
+    public synchronized void seek(long offsetMillis) {
+        if (stopped) {
+            return;
+        }
+        long target = TimeUnit.MILLISECONDS.toNanos(Math.max(0, offsetMillis));
+        try {
+            reader.seek(target);
+            next = nextOfChannel();
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        assembly.reset();
+        assembling = false;
+        anchor(next == null ? target : next.getTimestampNanos());
+        schedule(0);
+    }
+
+    public synchronized void setSpeed(double speed) {
+        if (stopped || speed <= 0) {
+            return;
+        }
+        long position = position();
+        this.speed = speed;
+        anchor(position);
+        schedule(0);
+    }
+
+    public synchronized void pause() {
+        if (stopped || paused) {
+            return;
+        }
+        long position = position();
+        paused = true;
+        anchor(position);
+        cancel();
+    }
+
+    public synchronized void resume() {
+        if (stopped || !paused) {
+            return;
+        }
+        paused = false;
+        anchor(originRecordedNanos);
+        schedule(0);
+    }
+
+    /**
+     * Interprete une commande du recepteur : "seek &lt;ms&gt;", "speed &lt;x&gt;",
+     * "pause" ou "resume".
+     */
+    public void handleCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        try {
+            switch (parts[0]) {
+                case "seek":
+                    seek(Long.parseLong(parts[1]));
+                    break;
+                case "speed":
+                    setSpeed(Double.parseDouble(parts[1]));
+                    break;
+                case "pause":
+                    pause();
+                    break;
+                case "resume":
+                    resume();
+                    break;
+                default:
+                    System.out.println("Commande de rejeu inconnue : " + command);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Commande de rejeu invalide : " + command);
+        }
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        cancel();
+        queue.close();
+        reader.close();
+    }
+
+    private void pump() {
+        synchronized (this) {
+            if (stopped || paused) {
+                return;
+            }
+            try {
+                for (int i = 0; i < MAX_BATCH; i++) {
+                    if (next == null) {
+                        next = nextOfChannel();
+                        if (next == null) {
+                            finish();
+                            return;
+                        }
+                    }
+                    long delay = dueNanos(next) - System.nanoTime();
+                    if (delay > DUE_TOLERANCE_NANOS) {
+                        schedule(delay);
+                        return;
+                    }
+                    emit(next);
+                    next = null;
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            schedule(0);
+        }
+    }
+
+    private JournalRecord nextOfChannel() throws IOException {
+        JournalRecord record;
+        while ((record = reader.next()) != null) {
+            if (channelKey.equals(record.getChannelKey())) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private void emit(JournalRecord record) {
+        ByteBuffer content = record.getContent();
+        if (record.isFragment()) {
+            // Trame enregistree en cut-through : reconstituee avant envoi
+            if (record.isFirst()) {
+                assembly.reset();
+                assembling = true;
+            } else if (!assembling) {
+                // Trame commencee avant la position de rejeu
+                return;
+            }
+            byte[] chunk = new byte[content.remaining()];
+            content.get(chunk);
+            assembly.write(chunk, 0, chunk.length);
+            if (!record.isLast()) {
+                return;
+            }
+            content = ByteBuffer.wrap(assembly.toByteArray()).asReadOnlyBuffer();
+            assembly.reset();
+            assembling = false;
+        }
+
+        if (record.isText()) {
+            String text = StandardCharsets.UTF_8.decode(content).toString();
+            queue.offer(new RelayMessage(text, RelayMessage.sizeOf(text), System.nanoTime()));
+        } else {
+            queue.offer(new RelayMessage(content, content.remaining(), System.nanoTime()));
+        }
+    }
+
+    // Fin de l'enregistrement : la connexion est fermee une fois la file videe
+    private void finish() {
+        if (queue.getDepth() > 0 && queue.isOpen()) {
+            schedule(TimeUnit.MILLISECONDS.toNanos(DRAIN_POLL_MS));
+            return;
+        }
+        stopped = true;
+        close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Fin de l'enregistrement"));
+    }
+
+    private void fail(IOException e) {
+        System.err.println("Erreur de lecture du journal : " + e.getMessage());
+        stopped = true;
+        cancel();
+        close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "Journal illisible"));
+    }
+
+    private void close(CloseReason reason) {
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du rejeu : " + e.getMessage());
+        }
+    }
+
+    private long dueNanos(JournalRecord record) {
+        return originWallNanos + (long) ((record.getTimestampNanos() - originRecordedNanos) / speed);
+    }
+
+    // Instant enregistre correspondant a maintenant
+    private long position() {
+        if (paused) {
+            return originRecordedNanos;
+        }
+        return originRecordedNanos + (long) ((System.nanoTime() - originWallNanos) * speed);
+    }
+
+    private void anchor(long recordedNanos) {
+        originRecordedNanos = recordedNanos;
+        originWallNanos = System.nanoTime();
+    }
+
+    private void schedule(long delayNanos) {
+        cancel();
+        if (!paused) {
+            scheduled = SCHEDULER.schedule(this::pump, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void cancel() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/sensorflow/{vehicle}/{mode}")
+public class SensorFlowVehicleEndpoint {
+
+    private SessionRegistry<String> hub;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("vehicle") String vehicle, @PathParam("mode") String mode)
+            throws IOException {
+        System.out.println("SensorFlowVehicleEndpoint.onOpen() " + vehicle);
+
+        if (!RelayChannel.isValidVehicle(vehicle)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Vehicule invalide"));
+            return;
+        }
+        hub = RelayChannels.SENSOR_FLOW.registry(vehicle);
+        if (hub == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de vehicules"));
+            return;
+        }
+        hub.register(session, mode);
+    }
+
+    @OnMessage
+    public void onMessage(Session session, String message) {
+        if (hub != null) {
+            hub.broadcastJSON(session, message);
+        }
+    }
+
+    @OnMessage
+    public void onBinaryMessage(Session session, byte[] message) {
+        if (hub != null) {
+            hub.broadcastBinary(session, message);
+        }
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        if (hub != null) {
+            hub.onPong(session, pong.getApplicationData());
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (hub != null) {
+            hub.unregister(session);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lecture seule d'une trame capteurs binaire de /sensorflow, au format de
+ * fr.ensma.a3.ia.serviceapi.SensorFrame (64 octets, gros-boutiste). Le
+ * serveur ne depend pas de serviceapi : seuls les decalages sont repris ici.
+ * Une trame numerotee (version 2) fait {@link #LENGTH_SEQUENCE} octets.
+ * Toutes les lectures sont absolues, la position du tampon partage entre les
+ * files d'envoi n'est jamais modifiee.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class SensorFrameView {
+
+    public static final byte MAGIC = (byte) 0xA5;
+
+    public static final int LENGTH = 64;
+
+    public static final int LENGTH_SEQUENCE = 72;
+
+    static final byte VERSION = 1;
+
+    static final byte VERSION_SEQUENCE = 2;
+
+    static final int MPU_FLAG = 0x01;
+
+    static final int URM_FLAG = 0x02;
+
+    static final int FLAGS_OFFSET = 2;
+
+    static final int SEQUENCE_OFFSET = 4;
+
+    static final int TIMESTAMP_OFFSET = 8;
+
+    static final int MPU_TIMESTAMP_OFFSET = 16;
+
+    static final int ACCEL_X_OFFSET = 24;
+
+    static final int DISTANCE_OFFSET = 52;
+
+    static final int URM_TIMESTAMP_OFFSET = 56;
+
+    static final int SEND_TIME_OFFSET = 64;
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private SensorFrameView(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+    }
+
+    /**
+     * @return Une vue sur la trame, ou null si le message n'en est pas une
+     */
+    public static SensorFrameView of(Object payload) {
+        if (!(payload instanceof ByteBuffer)) {
+            return null;
+        }
+        ByteBuffer buffer = (ByteBuffer) payload;
+        if (buffer.remaining() < LENGTH || buffer.get(buffer.position()) != MAGIC
+                || buffer.get(buffer.position() + 1) < 1) {
+            return null;
+        }
+        return new SensorFrameView(buffer);
+    }
+
+    public long getTimestampMs() {
+        return buffer.getLong(offset + TIMESTAMP_OFFSET);
+    }
+
+    public boolean hasMpuData() {
+        return (buffer.get(offset + FLAGS_OFFSET) & MPU_FLAG) != 0;
+    }
+
+    public boolean hasUrmData() {
+        return (buffer.get(offset + FLAGS_OFFSET) & URM_FLAG) != 0;
+    }
+
+    public boolean hasSequence() {
+        return buffer.get(offset + 1) >= VERSION_SEQUENCE && buffer.limit() - offset >= LENGTH_SEQUENCE;
+    }
+
+    /**
+     * @return Numero de sequence, 0 si la trame n'en porte pas
+     */
+    public long getSequence() {
+        return hasSequence() ? Integer.toUnsignedLong(buffer.getInt(offset + SEQUENCE_OFFSET)) : 0;
+    }
+
+    public long getSendTimeMicros() {
+        return hasSequence() ? buffer.getLong(offset + SEND_TIME_OFFSET) : 0;
+    }
+
+    public long getMpuTimestampMs() {
+        return buffer.getLong(offset + MPU_TIMESTAMP_OFFSET);
+    }
+
+    public long getUrmTimestampMs() {
+        return buffer.getLong(offset + URM_TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * @return La valeur du champ, ou NaN si la mesure est absente de la trame
+     */
+    public float get(ETelemetryField field) {
+        if (field == ETelemetryField.DISTANCE) {
+            return hasUrmData() ? buffer.getFloat(offset + DISTANCE_OFFSET) : Float.NaN;
+        }
+        // Champs MPU contigus, dans l'ordre de l'enumeration
+        return hasMpuData() ? buffer.getFloat(offset + ACCEL_X_OFFSET + field.ordinal() * Float.BYTES) : Float.NaN;
+    }
+}
@@ -0,0 +1,227 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Transcodage du flux /sensorflow entre ses trois encodages :
+ * <ul>
+ * <li>JSON : un echantillon {"timestampMs":..,"mpuData":{..},"urmData":{..}} ;</li>
+ * <li>BINARY_V1 : une trame de 64 octets (voir {@link SensorFrameView}) ;</li>
+ * <li>BATCH : un lot par colonnes de fr.ensma.a3.ia.serviceapi.SensorBatchMessage,
+ * en JSON ({"baseTimestampMs":..,..}) ou en binaire (magic 0xA4).</li>
+ * </ul>
+ * Un lot se deplie en autant d'echantillons que de lignes ; le relais ne
+ * regroupe jamais des echantillons isoles en lot. Le numero de sequence
+ * ("sequence", "sendTimeMicros") est conserve : les echantillons d'un lot
+ * numerote sont numerotes a partir de celui du lot.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorTranscoder implements MessageTranscoder {
+
+    static final byte BATCH_MAGIC = (byte) 0xA4;
+
+    static final byte BATCH_VERSION_SEQUENCE = 2;
+
+    static final int BATCH_HEADER_LENGTH = 12;
+
+    static final int BATCH_HEADER_LENGTH_SEQUENCE = 24;
+
+    // Colonnes du lot, dans l'ordre des champs MPU de la trame
+    private static final String[] BATCH_COLUMNS = { "aX", "aY", "aZ", "gX", "gY", "gZ", "temperature" };
+
+    private static final String[] MPU_FIELDS = { "accelX", "accelY", "accelZ", "gyroX", "gyroY", "gyroZ",
+            "temperature" };
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final List<ECodec> CODECS = List.of(ECodec.BATCH, ECodec.BINARY_V1, ECodec.JSON);
+
+    @Override
+    public List<ECodec> getCodecs() {
+        return CODECS;
+    }
+
+    @Override
+    public ECodec codecOf(Object payload) {
+        if (payload instanceof String) {
+            return ((String) payload).contains("\"baseTimestampMs\"") ? ECodec.BATCH : ECodec.JSON;
+        }
+        if (payload instanceof ByteBuffer) {
+            if (SensorFrameView.of(payload) != null) {
+                return ECodec.BINARY_V1;
+            }
+            ByteBuffer buffer = (ByteBuffer) payload;
+            if (buffer.remaining() >= BATCH_HEADER_LENGTH && buffer.get(buffer.position()) == BATCH_MAGIC) {
+                return ECodec.BATCH;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Object> transcode(Object payload, ECodec source, ECodec target) throws Exception {
+        if (target == ECodec.BATCH || source == target) {
+            return null;
+        }
+        if (source == ECodec.BATCH) {
+            return unbatch(payload, target);
+        }
+        if (source == ECodec.JSON) {
+            JsonNode root = objectMapper.readTree((String) payload);
+            JsonNode mpu = root.get("mpuData");
+            JsonNode urm = root.get("urmData");
+            ByteBuffer frame = newFrame(root.path("timestampMs").asLong(), root.path("sequence").asLong(),
+                    root.path("sendTimeMicros").asLong());
+            int flags = 0;
+            if (mpu != null && mpu.isObject()) {
+                flags |= SensorFrameView.MPU_FLAG;
+                frame.putLong(SensorFrameView.MPU_TIMESTAMP_OFFSET, mpu.path("timestampMs").asLong());
+                for (int i = 0; i < MPU_FIELDS.length; i++) {
+                    frame.putFloat(SensorFrameView.ACCEL_X_OFFSET + i * Float.BYTES,
+                            floatOf(mpu.get(MPU_FIELDS[i])));
+                }
+            }
+            if (urm != null && urm.isObject()) {
+                flags |= SensorFrameView.URM_FLAG;
+                frame.putLong(SensorFrameView.URM_TIMESTAMP_OFFSET, urm.path("timestampMs").asLong());
+                frame.putFloat(SensorFrameView.DISTANCE_OFFSET, floatOf(urm.get("distanceCm")));
+            }
+            frame.put(SensorFrameView.FLAGS_OFFSET, (byte) flags);
+            return List.of(frame.asReadOnlyBuffer());
+        }
+        // BINARY_V1 vers JSON
+        SensorFrameView frame = SensorFrameView.of(payload);
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timestampMs\":").append(frame.getTimestampMs());
+        if (frame.hasSequence()) {
+            json.append(",\"sequence\":").append(frame.getSequence()).append(",\"sendTimeMicros\":")
+                    .append(frame.getSendTimeMicros());
+        }
+        if (frame.hasMpuData()) {
+            json.append(",\"mpuData\":{");
+            ETelemetryField[] fields = ETelemetryField.values();
+            for (int i = 0; i < MPU_FIELDS.length; i++) {
+                json.append('"').append(MPU_FIELDS[i]).append("\":");
+                appendFloat(json, frame.get(fields[i])).append(',');
+            }
+            json.append("\"timestampMs\":").append(frame.getMpuTimestampMs()).append('}');
+        }
+        if (frame.hasUrmData()) {
+            json.append(",\"urmData\":{\"distanceCm\":");
+            appendFloat(json, frame.get(ETelemetryField.DISTANCE));
+            json.append(",\"timestampMs\":").append(frame.getUrmTimestampMs()).append('}');
+        }
+        return List.of(json.append('}').toString());
+    }
+
+    // Deplie un lot (JSON ou binaire) en echantillons isoles
+    private static List<Object> unbatch(Object payload, ECodec target) throws Exception {
+        long baseTimestampMs;
+        long sequence;
+        long sendTimeMicros;
+        int[] deltaMs;
+        float[][] columns = new float[BATCH_COLUMNS.length][];
+        if (payload instanceof String) {
+            JsonNode root = objectMapper.readTree((String) payload);
+            JsonNode deltas = root.path("deltaMs");
+            int count = Math.min(root.path("count").asInt(deltas.size()), deltas.size());
+            baseTimestampMs = root.path("baseTimestampMs").asLong();
+            sequence = root.path("sequence").asLong();
+            sendTimeMicros = root.path("sendTimeMicros").asLong();
+            deltaMs = new int[count];
+            for (int i = 0; i < count; i++) {
+                deltaMs[i] = deltas.get(i).asInt();
+            }
+            for (int column = 0; column < BATCH_COLUMNS.length; column++) {
+                JsonNode values = root.path(BATCH_COLUMNS[column]);
+                if (values.size() < count) {
+                    return null;
+                }
+                columns[column] = new float[count];
+                for (int i = 0; i < count; i++) {
+                    columns[column][i] = floatOf(values.get(i));
+                }
+            }
+        } else {
+            ByteBuffer buffer = (ByteBuffer) payload;
+            int position = buffer.position();
+            int count = Short.toUnsignedInt(buffer.getShort(position + 2));
+            boolean sequenced = buffer.get(position + 1) >= BATCH_VERSION_SEQUENCE;
+            int headerLength = sequenced ? BATCH_HEADER_LENGTH_SEQUENCE : BATCH_HEADER_LENGTH;
+            if (buffer.remaining() < headerLength + count * (Short.BYTES + BATCH_COLUMNS.length * Float.BYTES)) {
+                return null;
+            }
+            baseTimestampMs = buffer.getLong(position + 4);
+            sequence = sequenced ? Integer.toUnsignedLong(buffer.getInt(position + 12)) : 0;
+            sendTimeMicros = sequenced ? buffer.getLong(position + 16) : 0;
+            deltaMs = new int[count];
+            int index = position + headerLength;
+            for (int i = 0; i < count; i++, index += Short.BYTES) {
+                deltaMs[i] = Short.toUnsignedInt(buffer.getShort(index));
+            }
+            for (int column = 0; column < BATCH_COLUMNS.length; column++) {
+                columns[column] = new float[count];
+                for (int i = 0; i < count; i++, index += Float.BYTES) {
+                    columns[column][i] = buffer.getFloat(index);
+                }
+            }
+        }
+
+        List<Object> samples = new ArrayList<>(deltaMs.length);
+        for (int i = 0; i < deltaMs.length; i++) {
+            long timestampMs = baseTimestampMs + deltaMs[i];
+            long sampleSequence = sequence > 0 ? sequence + i : 0;
+            if (target == ECodec.BINARY_V1) {
+                ByteBuffer frame = newFrame(timestampMs, sampleSequence, sendTimeMicros);
+                frame.put(SensorFrameView.FLAGS_OFFSET, (byte) SensorFrameView.MPU_FLAG);
+                frame.putLong(SensorFrameView.MPU_TIMESTAMP_OFFSET, timestampMs);
+                for (int column = 0; column < columns.length; column++) {
+                    frame.putFloat(SensorFrameView.ACCEL_X_OFFSET + column * Float.BYTES, columns[column][i]);
+                }
+                samples.add(frame.asReadOnlyBuffer());
+            } else {
+                StringBuilder json = new StringBuilder(256);
+                json.append("{\"timestampMs\":").append(timestampMs);
+                if (sampleSequence > 0) {
+                    json.append(",\"sequence\":").append(sampleSequence).append(",\"sendTimeMicros\":")
+                            .append(sendTimeMicros);
+                }
+                json.append(",\"mpuData\":{");
+                for (int column = 0; column < columns.length; column++) {
+                    json.append('"').append(MPU_FIELDS[column]).append("\":");
+                    appendFloat(json, columns[column][i]).append(',');
+                }
+                samples.add(json.append("\"timestampMs\":").append(timestampMs).append("}}").toString());
+            }
+        }
+        return samples;
+    }
+
+    // Trame vide (drapeaux a 0), numerotee en version 2 si sequence > 0
+    private static ByteBuffer newFrame(long timestampMs, long sequence, long sendTimeMicros) {
+        ByteBuffer frame = ByteBuffer.allocate(sequence > 0 ? SensorFrameView.LENGTH_SEQUENCE : SensorFrameView.LENGTH);
+        frame.put(0, SensorFrameView.MAGIC);
+        frame.put(1, sequence > 0 ? SensorFrameView.VERSION_SEQUENCE : SensorFrameView.VERSION);
+        frame.putLong(SensorFrameView.TIMESTAMP_OFFSET, timestampMs);
+        if (sequence > 0) {
+            frame.putInt(SensorFrameView.SEQUENCE_OFFSET, (int) sequence);
+            frame.putLong(SensorFrameView.SEND_TIME_OFFSET, sendTimeMicros);
+        }
+        return frame;
+    }
+
+    private static float floatOf(JsonNode value) {
+        return value != null && value.isNumber() ? value.floatValue() : Float.NaN;
+    }
+
+    // Le JSON n'a pas de NaN ni d'infini : une mesure absente devient null
+    private static StringBuilder appendFloat(StringBuilder json, float value) {
+        return Float.isFinite(value) ? json.append(value) : json.append("null");
+    }
+}
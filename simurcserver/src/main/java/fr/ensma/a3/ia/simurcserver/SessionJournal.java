@@ -0,0 +1,320 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Journal append-only de tous les messages relayes, ecrit dans des segments
+ * projetes en memoire (voir {@link JournalFormat}). Les registres deposent les
+ * messages dans une file sans verrou ; un unique thread d'ecriture la vide,
+ * si bien que l'enregistrement ne ralentit jamais la diffusion. Si l'ecriture
+ * prend trop de retard, les messages en exces sont comptes et ignores.
+ * <p>
+ * Active en definissant simurcserver.journal.dir : chaque demarrage du serveur
+ * cree une session (sous-repertoire horodate).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SessionJournal {
+
+    private static final DateTimeFormatter SESSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static volatile SessionJournal instance;
+
+    private static boolean initialized;
+
+    private final Path sessionDir;
+
+    private final long startNanos = System.nanoTime();
+
+    private final int segmentSize;
+
+    private final long indexIntervalNanos;
+
+    private final int maxPending;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    // Etat du thread d'ecriture
+    private final Map<String, Short> channelIds = new HashMap<>();
+
+    private int segmentNumber = -1;
+
+    private FileChannel segmentChannel;
+
+    private MappedByteBuffer segment;
+
+    private DataOutputStream index;
+
+    // Long.MIN_VALUE : aucune entree d'index dans le segment courant
+    private long lastIndexedNanos = Long.MIN_VALUE;
+
+    SessionJournal(Path sessionDir, int segmentSize, long indexIntervalNanos, int maxPending)
+            throws IOException {
+        this.sessionDir = sessionDir;
+        this.segmentSize = segmentSize;
+        this.indexIntervalNanos = indexIntervalNanos;
+        this.maxPending = maxPending;
+
+        Files.createDirectories(sessionDir);
+        Properties session = new Properties();
+        session.setProperty("startEpochMs", Long.toString(System.currentTimeMillis()));
+        session.setProperty("version", Short.toString(JournalFormat.VERSION));
+        try (OutputStream out = Files.newOutputStream(sessionDir.resolve(JournalFormat.SESSION_FILE))) {
+            session.store(out, "simurcserver journal");
+        }
+        openSegment();
+
+        writer = new Thread(this::writeLoop, "relay-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return Le journal de la session courante, ou null s'il est desactive
+     */
+    public static SessionJournal getInstance() {
+        synchronized (SessionJournal.class) {
+            if (!initialized) {
+                initialized = true;
+                String dir = RelayConfig.getString(null, "journal.dir");
+                if (dir != null && !dir.isBlank()) {
+                    try {
+                        Path sessionDir = Paths.get(dir).resolve(LocalDateTime.now().format(SESSION_FORMAT));
+                        instance = new SessionJournal(sessionDir,
+                                RelayConfig.getInt(null, "journal.segmentMb", 256) << 20,
+                                TimeUnit.MILLISECONDS.toNanos(RelayConfig.getInt(null, "journal.indexIntervalMs", 100)),
+                                RelayConfig.getInt(null, "journal.maxPending", 4096));
+                        System.out.println("Journal de session : " + sessionDir);
+                    } catch (IOException e) {
+                        System.err.println("Impossible d'ouvrir le journal de session : " + e.getMessage());
+                    }
+                }
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Depose un message relaye ; appele depuis le chemin de diffusion.
+     */
+    public void append(String channelKey, RelayMessage message) {
+        if (!running) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        queue.offer(new Entry(channelKey, message));
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    public Path getSessionDir() {
+        return sessionDir;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public static void shutdown() {
+        SessionJournal journal;
+        synchronized (SessionJournal.class) {
+            journal = instance;
+            instance = null;
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                write(entry);
+                writtenCount.incrementAndGet();
+            } catch (IOException e) {
+                droppedCount.incrementAndGet();
+                System.err.println("Erreur d'ecriture du journal : " + e.getMessage());
+            }
+        }
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            System.err.println("Erreur a la fermeture du journal : " + e.getMessage());
+        }
+    }
+
+    private void write(Entry entry) throws IOException {
+        RelayMessage message = entry.message;
+        long timestamp = message.getReceivedNanos() - startNanos;
+
+        byte type;
+        ByteBuffer content;
+        Object payload = message.getPayload();
+        FrameFragment fragment = message.getFragment();
+        if (fragment != null) {
+            type = (byte) (JournalFormat.TYPE_BINARY | JournalFormat.FLAG_FRAGMENT
+                    | (fragment.isFirst() ? JournalFormat.FLAG_FIRST : 0)
+                    | (fragment.isLast() ? JournalFormat.FLAG_LAST : 0));
+            content = fragment.getData().duplicate();
+        } else if (payload instanceof ByteBuffer) {
+            type = JournalFormat.TYPE_BINARY;
+            content = ((ByteBuffer) payload).duplicate();
+        } else {
+            type = JournalFormat.TYPE_TEXT;
+            content = ByteBuffer.wrap(String.valueOf(payload).getBytes(StandardCharsets.UTF_8));
+        }
+
+        int length = JournalFormat.RECORD_HEADER_SIZE + content.remaining();
+        if (length > segmentSize / 2) {
+            throw new IOException("Message trop grand pour un segment : " + length + " octets");
+        }
+
+        short channelId = channelIdOf(entry.channelKey, timestamp);
+        if (segment.remaining() < length + 4) {
+            openSegment();
+        }
+        // Le test explicite evite le debordement de timestamp - Long.MIN_VALUE
+        if (lastIndexedNanos == Long.MIN_VALUE || timestamp - lastIndexedNanos >= indexIntervalNanos) {
+            index.writeLong(timestamp);
+            index.writeInt(segment.position());
+            lastIndexedNanos = timestamp;
+        }
+        putRecord(timestamp, channelId, type, content);
+    }
+
+    private short channelIdOf(String channelKey, long timestamp) throws IOException {
+        Short id = channelIds.get(channelKey);
+        if (id == null) {
+            id = (short) channelIds.size();
+            channelIds.put(channelKey, id);
+            writeChannelRecord(channelKey, id, timestamp);
+        }
+        return id;
+    }
+
+    private void writeChannelRecord(String channelKey, short id, long timestamp) throws IOException {
+        ByteBuffer name = ByteBuffer.wrap(channelKey.getBytes(StandardCharsets.UTF_8));
+        if (segment.remaining() < JournalFormat.RECORD_HEADER_SIZE + name.remaining() + 4) {
+            openSegment();
+        }
+        putRecord(timestamp, id, JournalFormat.TYPE_CHANNEL, name);
+    }
+
+    private void putRecord(long timestamp, short channelId, byte type, ByteBuffer content) {
+        segment.putInt(JournalFormat.RECORD_HEADER_SIZE + content.remaining());
+        segment.putLong(timestamp);
+        segment.putShort(channelId);
+        segment.put(type);
+        segment.putInt(content.remaining());
+        segment.put(content);
+    }
+
+    private void openSegment() throws IOException {
+        closeSegment();
+        segmentNumber++;
+        String name = JournalFormat.segmentName(segmentNumber);
+        segmentChannel = FileChannel.open(sessionDir.resolve(name + JournalFormat.SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment.putInt(JournalFormat.MAGIC);
+        segment.putShort(JournalFormat.VERSION);
+        index = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(sessionDir.resolve(name + JournalFormat.INDEX_SUFFIX))));
+        lastIndexedNanos = Long.MIN_VALUE;
+
+        // Chaque segment redeclare les canaux connus
+        for (Map.Entry<String, Short> channel : channelIds.entrySet()) {
+            putRecord(0, channel.getValue(), JournalFormat.TYPE_CHANNEL,
+                    ByteBuffer.wrap(channel.getKey().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        if (segment.remaining() >= 4) {
+            segment.putInt(0);
+        }
+        segment.force();
+        segmentChannel.close();
+        index.close();
+        segment = null;
+    }
+
+    private static final class Entry {
+
+        private final String channelKey;
+
+        private final RelayMessage message;
+
+        private Entry(String channelKey, RelayMessage message) {
+            this.channelKey = channelKey;
+            this.message = message;
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package fr.ensma.a3.ia.simurcserver;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Extension;
 import jakarta.websocket.Session;
 
 /**
@@ -12,60 +26,1024 @@ import jakarta.websocket.Session;
  */
 public class SessionRegistry<T> {
 
-    private Session sender;
+    private static final String QUEUE_PROPERTY = "simurcserver.queue";
 
-    private final List<Session> receivers = new ArrayList<>();
+    private final String channel;
+
+    private final String vehicle;
+
+    private final int queueCapacity;
+
+    private final EOverflowPolicy overflowPolicy;
+
+    private final EDeliveryMode deliveryMode;
+
+    private final long snapshotMaxAgeNanos;
+
+    private final boolean cutThrough;
+
+    private volatile Session sender;
+
+    private volatile Snapshot snapshot;
+
+    // Trame binaire en cours de reception, manipulee par le seul thread de l'emetteur
+    private long frameCounter;
+
+    private boolean frameInProgress;
+
+    private List<RelayMessage> frameFragments = new ArrayList<>();
+
+    private final ByteArrayOutputStream frameAssembly = new ByteArrayOutputStream();
+
+    // Taille maximale d'une trame binaire, remplace la limite du conteneur
+    private final int maxFrameBytes;
+
+    // Octets deja recus de la trame en cours
+    private long frameBytes;
+
+    // Trame trop grande : ses fragments suivants sont ignores jusqu'au dernier
+    private boolean frameOversize;
+
+    private final AtomicLong oversizeFrameCount = new AtomicLong();
+
+    private final List<OutboundQueue> receivers = new CopyOnWriteArrayList<>();
+
+    private final RelayStats stats = new RelayStats();
+
+    private final String channelKey;
+
+    private final SessionJournal journal = SessionJournal.getInstance();
+
+    private final ETrafficClass trafficClass;
+
+    // Derniers messages pour le rejeu immediat, alloue a la premiere publication
+    // et libere au depart de l'emetteur ; null si desactive ou pas encore alloue
+    private volatile DvrRing dvr;
+
+    // Duree du rejeu immediat (0 si desactive) et taille de son anneau
+    private final long dvrMaxAgeNanos;
+
+    private final int dvrBufferBytes;
+
+    // Budget commun epuise : pas de nouvel essai avant le prochain emetteur
+    private volatile boolean dvrRefused;
+
+    // Lecteurs du differe qui n'ont pas encore rattrape le direct
+    private final AtomicInteger dvrReaders = new AtomicInteger();
+
+    // Derniere obtention ou deconnexion, pour l'eviction des registres inutilises
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    // Etages alimentes par ce canal
+    private final List<StreamStage> stages;
+
+    // Base de telemetrie, alimentee par le seul flux capteurs
+    private final TelemetryStore telemetry;
+
+    private final boolean congestionFeedback;
+
+    private final long congestionTargetLatencyNanos;
+
+    // Dernier niveau envoye a l'emetteur, manipule par le seul thread de CongestionMonitor
+    private double lastCongestionLevel = -1;
+
+    private long lastCongestionNanos;
+
+    private final AtomicBoolean congestionInFlight = new AtomicBoolean();
+
+    // Reponse d'annonce a l'emetteur courant, en attente de la fin d'un message de congestion en vol
+    private final AtomicReference<String> pendingWelcome = new AtomicReference<>();
+
+    private final long senderSilenceNanos;
+
+    private volatile long senderConnectedNanos;
+
+    // Dernier message de l'emetteur
+    private volatile long senderMessageNanos;
+
+    // Dernier pong de l'emetteur
+    private volatile long senderPongNanos;
+
+    // Emetteur connecte mais muet depuis plus de senderSilenceMs
+    private volatile boolean stale;
+
+    private final ChannelLimits limits;
+
+    // Seaux de l'emetteur courant, remplaces a chaque nouvel emetteur
+    private volatile TokenBucket senderMessages = new TokenBucket();
+
+    private volatile TokenBucket senderBytes;
+
+    // Trame cut-through refusee : ses fragments suivants sont ignores
+    private boolean frameRejected;
+
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+
+    // Paliers video reduits, null si le canal n'en definit pas
+    private final VideoTiering tiering;
+
+    // Transcodeur du canal, null s'il n'a qu'un encodage
+    private final MessageTranscoder transcoder;
+
+    // Le premier message d'un nouvel emetteur peut etre son annonce {"type":"hello",..}
+    private volatile boolean awaitingHello;
+
+    private final AtomicLong transcodedCount = new AtomicLong();
+
+    private final AtomicLong transcodeFailedCount = new AtomicLong();
+
+    public SessionRegistry(String channel, String vehicle, EDeliveryMode defaultDeliveryMode) {
+        this(channel, vehicle, defaultDeliveryMode, new ChannelLimits(channel, false));
+    }
+
+    public SessionRegistry(String channel, String vehicle, EDeliveryMode defaultDeliveryMode, ChannelLimits limits) {
+        this(channel, vehicle, RelayConfig.getQueueCapacity(channel), RelayConfig.getOverflowPolicy(channel),
+                RelayConfig.getDeliveryMode(channel, defaultDeliveryMode), limits);
+    }
+
+    public SessionRegistry(String channel, String vehicle, int queueCapacity, EOverflowPolicy overflowPolicy,
+            EDeliveryMode deliveryMode) {
+        this(channel, vehicle, queueCapacity, overflowPolicy, deliveryMode, new ChannelLimits(channel, false));
+    }
+
+    public SessionRegistry(String channel, String vehicle, int queueCapacity, EOverflowPolicy overflowPolicy,
+            EDeliveryMode deliveryMode, ChannelLimits limits) {
+        this.channel = channel;
+        this.limits = limits;
+        this.senderBytes = limits.newBytesBucket();
+        this.vehicle = vehicle;
+        this.channelKey = channel + "/" + vehicle;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.deliveryMode = deliveryMode;
+        this.snapshotMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(RelayConfig.getSnapshotMaxAgeMs(channel));
+        this.cutThrough = RelayConfig.isCutThrough(channel);
+        this.maxFrameBytes = RelayConfig.getMaxFrameBytes(channel);
+        // Par defaut, seuls les flux video (remplacables) renvoient la congestion a l'emetteur
+        this.congestionFeedback = RelayConfig.isCongestionFeedback(channel,
+                deliveryMode == EDeliveryMode.CONFLATED);
+        this.congestionTargetLatencyNanos = TimeUnit.MILLISECONDS
+                .toNanos(RelayConfig.getCongestionTargetLatencyMs(channel));
+        this.senderSilenceNanos = TimeUnit.MILLISECONDS.toNanos(RelayConfig.getSenderSilenceMs(channel));
+        List<VideoTier> tiers = VideoTiering.parseTiers(
+                RelayConfig.getVideoTiers(channel, deliveryMode == EDeliveryMode.CONFLATED));
+        this.tiering = tiers.isEmpty() ? null : new VideoTiering(tiers, receivers);
+        this.trafficClass = RelayConfig.getTrafficClass(channel, limits.isControl() ? ETrafficClass.CONTROL
+                : deliveryMode == EDeliveryMode.CONFLATED ? ETrafficClass.VIDEO : ETrafficClass.SENSOR);
+        this.dvrMaxAgeNanos = TimeUnit.SECONDS.toNanos(RelayConfig.getDvrSeconds(channel));
+        this.dvrBufferBytes = RelayConfig.getDvrBufferBytes(channel, deliveryMode == EDeliveryMode.CONFLATED);
+        this.stages = StreamStages.forInput(channel);
+        this.telemetry = RelayChannels.SENSOR_FLOW.getName().equals(channel) ? TelemetryStore.getInstance() : null;
+        this.transcoder = MessageTranscoders.forChannel(channel);
+    }
 
     public synchronized void register(Session session, String mode) {
         if ("sender".equals(mode)) {
             if (sender != null && sender.isOpen()) {
                 try {
-                    sender.close(); 
+                    sender.close();
                 } catch (IOException e) {
                     System.err.println("Erreur lors de la fermeture de l'ancien sender : " + e.getMessage());
                 }
             }
             sender = session;
-            System.out.println("Sender connected.");
+            snapshot = null;
+            resetFrame();
+            lastCongestionLevel = -1;
+            long now = System.nanoTime();
+            senderConnectedNanos = now;
+            senderMessageNanos = now;
+            senderPongNanos = now;
+            stale = false;
+            senderMessages = new TokenBucket();
+            senderBytes = limits.newBytesBucket();
+            awaitingHello = true;
+            pendingWelcome.set(null);
+            dvrRefused = false;
+            System.out.println("Sender connected (" + channel + "/" + vehicle + ").");
         } else if ("receiver".equals(mode)) {
-            receivers.add(session);
-            System.out.println("Receiver connected.");
+            addReceiver(session, true);
         } else {
             System.out.println("Mode inconnu : " + mode);
         }
     }
 
-    public synchronized void broadcastJSON(Session source, T message) {
+    /**
+     * Ajoute comme recepteur ordinaire une session qui lisait le differe
+     * ({@link DvrSession}) et vient de rattraper le direct.
+     */
+    public synchronized void attachLive(Session session) {
+        addReceiver(session, false);
+    }
+
+    private void addReceiver(Session session, boolean replaySnapshot) {
+        // Palier demande (?tier=low), le palier d'origine par defaut
+        VideoTier tier = null;
+        List<String> tierName = session.getRequestParameterMap().get("tier");
+        if (tierName != null && !tierName.isEmpty() && !VideoTiering.FULL_TIER.equals(tierName.get(0))) {
+            tier = tiering == null ? null : tiering.getTier(tierName.get(0));
+            if (tier == null) {
+                System.out.println("Palier inconnu (" + channelKey + ") : " + tierName.get(0));
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Palier inconnu"));
+                } catch (IOException e) {
+                    System.err.println("Erreur lors de la fermeture de la session : " + e.getMessage());
+                }
+                return;
+            }
+        }
+        OutboundQueue queue = new OutboundQueue(session, queueCapacity, overflowPolicy, deliveryMode, stats);
+        // Un recepteur secondaire (?feedback=false) ne ralentit pas l'emetteur
+        List<String> feedback = session.getRequestParameterMap().get("feedback");
+        queue.setCongestionIgnored(feedback != null && feedback.contains("false"));
+        if (tier != null) {
+            // Un spectateur en palier reduit ne ralentit jamais l'emetteur
+            queue.setTier(tier.getName());
+            queue.setCongestionIgnored(true);
+        }
+        session.getUserProperties().put(QUEUE_PROPERTY, queue);
+        queue.setBridge(session.getRequestParameterMap().containsKey(ClusterBridge.BRIDGE_PARAMETER));
+        // Les canaux d'une meme machine (?peer=...) partagent un ordonnanceur par priorite
+        List<String> peer = session.getRequestParameterMap().get(PeerSchedulers.PEER_PARAMETER);
+        if (peer != null && !peer.isEmpty() && RelayChannel.isValidVehicle(peer.get(0))) {
+            queue.setScheduler(PeerSchedulers.attach(peer.get(0)), trafficClass);
+        }
+        List<String> maxRate = session.getRequestParameterMap().get("maxRate");
+        if (maxRate != null && !maxRate.isEmpty()) {
+            queue.setMaxRate(SubscribeRequest.parseRate(maxRate.get(0)));
+        }
+        // Codecs acceptes (?codecs=binary-v1,json), JSON par defaut
+        CodecRequest codecs = CodecRequest.fromParameters(session.getRequestParameterMap());
+        if (codecs != null) {
+            queue.setCodecs(codecs.getCodecs());
+            queue.setFeatures(codecs.getFeatures());
+        }
+        // Dernier etat connu pousse avant tout message suivant (un recepteur venu du differe l'a deja recu)
+        if (replaySnapshot && tier != null) {
+            RelayMessage last = tier.getLastFrame();
+            if (last != null && System.nanoTime() - last.getReceivedNanos() <= snapshotMaxAgeNanos) {
+                queue.offer(last.restamp());
+            }
+        } else if (replaySnapshot) {
+            Snapshot last = snapshot;
+            if (last != null && System.nanoTime() - last.receivedNanos <= snapshotMaxAgeNanos) {
+                for (RelayMessage message : last.messages) {
+                    RelayMessage restamped = message.restamp();
+                    deliver(queue, restamped, codecOf(restamped), null);
+                }
+            }
+        }
+        receivers.add(queue);
+        System.out.println("Receiver connected (" + channel + "/" + vehicle + ").");
+    }
+
+    public synchronized void unregister(Session session) {
+        touch();
+        if (sender == session) {
+            sender = null;
+            snapshot = null;
+            if (tiering != null) {
+                tiering.clearLastFrames();
+            }
+            releaseDvr();
+        }
+        receivers.removeIf(q -> {
+            if (q.getSession() == session) {
+                q.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public void broadcastJSON(Session source, T message) {
+        long receivedNanos = System.nanoTime();
         // Sender only
         if (source != sender) {
+            onReceiverMessage(source, message);
             return;
         }
+        if (awaitingHello) {
+            awaitingHello = false;
+            CodecRequest hello = message instanceof String ? CodecRequest.parseHello((String) message) : null;
+            if (hello != null) {
+                welcome(source, hello);
+                return;
+            }
+        }
 
-        receivers.removeIf(s -> !s.isOpen());
+        int size = sizeOf(message);
+        if (!admit(size)) {
+            return;
+        }
+        RelayMessage relayed = new RelayMessage(message, size, receivedNanos);
+        remember(List.of(relayed), receivedNanos);
+        publish(relayed);
+    }
 
-        for (Session s : receivers) {
-            try {
-                s.getBasicRemote().sendObject(message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public void broadcastBinary(Session source, byte[] message) {
+        long receivedNanos = System.nanoTime();
+        // Sender only
+        if (source != sender) {
+            return;
         }
+        awaitingHello = false;
+
+        if (!admit(message.length)) {
+            return;
+        }
+        // Une seule enveloppe partagee, chaque file en prend une vue a l'envoi
+        ByteBuffer buffer = ByteBuffer.wrap(message).asReadOnlyBuffer();
+        RelayMessage relayed = new RelayMessage(buffer, message.length, receivedNanos);
+        remember(List.of(relayed), receivedNanos);
+        publish(relayed);
+    }
+
+    /**
+     * Message relaye par un autre noeud du cluster. Il est diffuse aux
+     * recepteurs locaux mais jamais aux liens des autres noeuds, ce qui evite
+     * les boucles. Un emetteur local reste prioritaire.
+     */
+    public void broadcastBridged(Object payload, int size) {
+        if (sender != null) {
+            return;
+        }
+        long receivedNanos = System.nanoTime();
+        RelayMessage relayed = new RelayMessage(payload, size, receivedNanos, true);
+        remember(List.of(relayed), receivedNanos);
+        publish(relayed);
     }
 
-    public synchronized void broadcastBinary(Session source, byte[] message) {
+    /**
+     * Message calcule par un {@link StreamStage} depuis un autre canal. Il
+     * garde l'instant de reception du message d'origine, si bien que la
+     * latence de diffusion inclut le traitement.
+     */
+    public void broadcastDerived(String payload, long sourceNanos) {
+        RelayMessage relayed = new RelayMessage(payload, RelayMessage.sizeOf(payload), sourceNanos);
+        remember(List.of(relayed), sourceNanos);
+        publish(relayed);
+    }
+
+    /**
+     * Recoit un fragment binaire de l'emetteur. En mode cut-through, chaque
+     * fragment est copie une seule fois (le conteneur reutilise son tampon)
+     * puis transmis aux recepteurs sans attendre la fin de la trame. Sinon la
+     * trame est reconstituee puis diffusee par {@link #broadcastBinary}.
+     */
+    public void broadcastBinaryPart(Session source, ByteBuffer part, boolean last) {
+        long receivedNanos = System.nanoTime();
         // Sender only
         if (source != sender) {
             return;
         }
 
-        receivers.removeIf(s -> !s.isOpen());
+        if (frameOversize) {
+            frameOversize = !last;
+            return;
+        }
+        frameBytes += part.remaining();
+        if (frameBytes > maxFrameBytes) {
+            abortOversizeFrame(last);
+            return;
+        }
+        if (last) {
+            frameBytes = 0;
+        }
+
+        if (!cutThrough) {
+            byte[] chunk = new byte[part.remaining()];
+            part.get(chunk);
+            if (last && frameAssembly.size() == 0) {
+                broadcastBinary(source, chunk);
+                return;
+            }
+            frameAssembly.write(chunk, 0, chunk.length);
+            if (last) {
+                byte[] message = frameAssembly.toByteArray();
+                frameAssembly.reset();
+                broadcastBinary(source, message);
+            }
+            return;
+        }
+
+        awaitingHello = false;
+        boolean first = !frameInProgress;
+        frameInProgress = !last;
+        int size = part.remaining();
+        if (first) {
+            // Admission a la premiere partie : une trame commencee va jusqu'au bout
+            frameRejected = !admit(size);
+            if (!frameRejected) {
+                frameCounter++;
+                frameFragments = new ArrayList<>();
+            }
+        } else if (!frameRejected) {
+            limits.consume(senderBytes, size);
+        }
+        if (frameRejected) {
+            return;
+        }
+
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        copy.put(part).flip();
+        FrameFragment fragment = new FrameFragment(copy.asReadOnlyBuffer(), frameCounter, first, last);
+        RelayMessage relayed = new RelayMessage(fragment, size, receivedNanos);
+        if (snapshotMaxAgeNanos > 0) {
+            frameFragments.add(relayed);
+            if (last) {
+                remember(List.copyOf(frameFragments), receivedNanos);
+            }
+        }
+
+        publish(relayed);
+    }
+
+    private void publish(RelayMessage message) {
+        senderMessageNanos = message.getReceivedNanos();
+        if (stale) {
+            stale = false;
+            System.out.println("Sender actif de nouveau (" + channelKey + ").");
+        }
+        stats.recordIn(message);
+        // Une trame interrompue n'est pas enregistree : sa suite n'est jamais ecrite
+        // et les lecteurs l'abandonnent au premier fragment de la trame suivante
+        boolean terminator = message.getFragment() != null && message.getFragment().isTerminator();
+        if (journal != null && !terminator) {
+            journal.append(channelKey, message);
+        }
+        DvrRing ring = dvrMaxAgeNanos > 0 && !terminator ? dvr() : null;
+        if (ring != null) {
+            ring.append(message);
+        }
+        removeClosedReceivers();
+
+        // Palier d'origine : transmis tel quel, sans attendre le transcodage
+        boolean bridged = message.isBridged();
+        ECodec codec = codecOf(message);
+        Map<ECodec, List<RelayMessage>> transcoded = null;
+        for (OutboundQueue q : receivers) {
+            if (q.getTier() == null && (!bridged || !q.isBridge())) {
+                if (codec != null && transcoded == null && !q.isBridge() && !q.getCodecs().contains(codec)) {
+                    transcoded = new EnumMap<>(ECodec.class);
+                }
+                deliver(q, message, codec, transcoded);
+            }
+        }
+        if (tiering != null) {
+            tiering.onPublished(message);
+        }
+        if (telemetry == null && stages.isEmpty()) {
+            return;
+        }
+        // La telemetrie et les etages ne lisent que des echantillons isoles :
+        // un lot est deplie, en reprenant la conversion deja faite pour un recepteur
+        List<RelayMessage> samples = List.of(message);
+        if (codec == ECodec.BATCH) {
+            samples = transcoded == null ? null : transcoded.get(ECodec.BINARY_V1);
+            if (samples == null) {
+                samples = transcode(message, codec, ECodec.BINARY_V1);
+            }
+        }
+        for (RelayMessage sample : samples) {
+            // Un message d'un autre noeud est enregistre par ce noeud
+            if (telemetry != null && !bridged) {
+                Object payload = sample.getPayload();
+                if (payload instanceof String) {
+                    telemetry.append(vehicle, (String) payload);
+                } else if (SensorFrameView.of(payload) != null) {
+                    telemetry.append(vehicle, (ByteBuffer) payload);
+                }
+            }
+            for (StreamStage stage : stages) {
+                stage.onPublished(vehicle, sample);
+            }
+        }
+    }
+
+    // Anneau du rejeu immediat, alloue a la premiere publication si le budget commun le permet
+    private DvrRing dvr() {
+        DvrRing ring = dvr;
+        if (ring != null || dvrRefused) {
+            return ring;
+        }
+        synchronized (this) {
+            if (dvr == null && !dvrRefused) {
+                dvr = DvrRing.allocate(dvrBufferBytes, RelayConfig.getInt(channel, "dvr.maxRecords", 65536),
+                        dvrMaxAgeNanos);
+                if (dvr == null) {
+                    dvrRefused = true;
+                    System.out.println("Memoire du rejeu immediat epuisee, anneau non alloue (" + channelKey + ").");
+                }
+            }
+            return dvr;
+        }
+    }
+
+    void openDvrReader() {
+        dvrReaders.incrementAndGet();
+    }
+
+    void closeDvrReader() {
+        dvrReaders.decrementAndGet();
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true si le registre n'a ni emetteur, ni recepteur, ni lecteur du
+     *         differe depuis idleNanos ; son anneau est alors libere
+     */
+    synchronized boolean evictIfIdle(long now, long idleNanos) {
+        if (sender != null || !receivers.isEmpty() || dvrReaders.get() > 0 || now - lastUsedNanos < idleNanos) {
+            return false;
+        }
+        releaseDvr();
+        return true;
+    }
+
+    private void releaseDvr() {
+        DvrRing ring = dvr;
+        if (ring != null) {
+            dvr = null;
+            ring.release();
+        }
+    }
+
+    // Une file fermee par le conteneur est fermee aussi cote relais : elle
+    // rend sa place dans l'ordonnanceur de son pair
+    private void removeClosedReceivers() {
+        receivers.removeIf(q -> {
+            if (!q.isOpen()) {
+                q.close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @return L'encodage du message, null s'il est relaye tel quel (canal a
+     *         encodage unique, fragment, format inconnu)
+     */
+    private ECodec codecOf(RelayMessage message) {
+        return transcoder == null ? null : transcoder.codecOf(message.getPayload());
+    }
+
+    /**
+     * Met le message en file dans un encodage accepte par le recepteur. Les
+     * liens du cluster recoivent l'encodage d'origine. Chaque conversion est
+     * faite au plus une fois par message et par encodage cible : les
+     * recepteurs qui demandent le meme encodage partagent le resultat
+     * ({@code transcoded}, null tant qu'aucune conversion n'a ete faite).
+     */
+    private void deliver(OutboundQueue queue, RelayMessage message, ECodec codec,
+            Map<ECodec, List<RelayMessage>> transcoded) {
+        List<ECodec> accepted = queue.getCodecs();
+        if (codec == null || queue.isBridge() || accepted.contains(codec)) {
+            queue.offer(message);
+            return;
+        }
+        if (transcoded == null) {
+            transcoded = new EnumMap<>(ECodec.class);
+        }
+        for (ECodec target : accepted) {
+            List<RelayMessage> converted = transcoded.get(target);
+            if (converted == null) {
+                converted = transcode(message, codec, target);
+                transcoded.put(target, converted);
+            }
+            if (!converted.isEmpty()) {
+                for (RelayMessage each : converted) {
+                    queue.offer(each);
+                }
+                return;
+            }
+        }
+        // Aucune conversion possible : mieux vaut l'original que rien
+        transcodeFailedCount.incrementAndGet();
+        queue.offer(message);
+    }
+
+    // Liste vide si la conversion n'existe pas ou echoue
+    private List<RelayMessage> transcode(RelayMessage message, ECodec source, ECodec target) {
+        try {
+            List<Object> payloads = transcoder.transcode(message.getPayload(), source, target);
+            if (payloads == null) {
+                return List.of();
+            }
+            List<RelayMessage> converted = new ArrayList<>(payloads.size());
+            for (Object payload : payloads) {
+                int size = payload instanceof ByteBuffer ? ((ByteBuffer) payload).remaining() : sizeOf(payload);
+                converted.add(new RelayMessage(payload, size, message.getReceivedNanos(), message.isBridged()));
+            }
+            transcodedCount.incrementAndGet();
+            return converted;
+        } catch (Exception e) {
+            System.err.println("Erreur de transcodage " + source.getLabel() + " vers " + target.getLabel() + " ("
+                    + channelKey + ") : " + e.getMessage());
+            return List.of();
+        }
+    }
 
-        for (Session s : receivers) {
+    /**
+     * Repond a l'annonce de l'emetteur : le codec retenu est le premier de sa
+     * liste que le canal sait transcoder. Un canal sans transcodeur relaie
+     * tout encodage tel quel et retient donc le premier codec annonce. La
+     * numerotation est toujours acceptee (les transcodeurs la conservent) ; la
+     * compression ne l'est que si l'extension permessage-deflate a ete
+     * negociee sur la connexion.
+     */
+    private void welcome(Session session, CodecRequest hello) {
+        List<ECodec> codecs = transcoder == null ? hello.getCodecs() : transcoder.getCodecs();
+        ECodec codec = null;
+        for (ECodec candidate : hello.getCodecs()) {
+            if (codecs.contains(candidate)) {
+                codec = candidate;
+                break;
+            }
+        }
+        Set<EFeature> features = EnumSet.noneOf(EFeature.class);
+        if (hello.getFeatures().contains(EFeature.SEQUENCE)) {
+            features.add(EFeature.SEQUENCE);
+        }
+        if (hello.getFeatures().contains(EFeature.COMPRESSION) && isDeflate(session)) {
+            features.add(EFeature.COMPRESSION);
+        }
+        System.out.println("Sender codec (" + channelKey + ") : " + (codec == null ? "aucun" : codec.getLabel()));
+        String welcome = CodecRequest.welcome(channel, codec, codecs, features);
+        if (!congestionFeedback) {
+            // Aucun autre message n'est envoye a l'emetteur
             try {
-                s.getBasicRemote().sendBinary(ByteBuffer.wrap(message));
+                session.getAsyncRemote().sendText(welcome);
             } catch (Exception e) {
-                e.printStackTrace();
+                System.err.println("Erreur lors de l'envoi de la reponse d'annonce : " + e.getMessage());
+            }
+            return;
+        }
+        // Un seul envoi asynchrone a la fois avec les messages de congestion : si
+        // l'un d'eux est en vol, la reponse part a la fin de son envoi
+        pendingWelcome.set(welcome);
+        sendPendingWelcome(session);
+    }
+
+    private void sendPendingWelcome(Session session) {
+        if (pendingWelcome.get() == null || !congestionInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        String welcome = pendingWelcome.getAndSet(null);
+        if (welcome == null) {
+            congestionInFlight.set(false);
+            return;
+        }
+        try {
+            session.getAsyncRemote().sendText(welcome, result -> congestionInFlight.set(false));
+        } catch (Exception e) {
+            congestionInFlight.set(false);
+            System.err.println("Erreur lors de l'envoi de la reponse d'annonce : " + e.getMessage());
+        }
+    }
+
+    private static boolean isDeflate(Session session) {
+        for (Extension extension : session.getNegotiatedExtensions()) {
+            if ("permessage-deflate".equals(extension.getName())) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Un recepteur peut ajuster son debit : {"type":"subscribe","maxRate":2},
+     * ou annoncer ses codecs : {"type":"hello","codecs":["binary-v1","json"]}.
+     * Le relais ne lui repond pas : sa file peut decimer ou remplacer les
+     * messages.
+     */
+    private void onReceiverMessage(Session source, T message) {
+        Object queue = source.getUserProperties().get(QUEUE_PROPERTY);
+        if (queue instanceof OutboundQueue && message instanceof String) {
+            CodecRequest hello = CodecRequest.parseHello((String) message);
+            if (hello != null) {
+                ((OutboundQueue) queue).setCodecs(hello.getCodecs());
+                ((OutboundQueue) queue).setFeatures(hello.getFeatures());
+                return;
+            }
+            double maxRate = SubscribeRequest.parseMaxRate((String) message);
+            if (!Double.isNaN(maxRate)) {
+                ((OutboundQueue) queue).setMaxRate(maxRate);
+            }
+        }
+    }
+
+    /**
+     * Pong recu d'une session du registre (emetteur ou recepteur).
+     */
+    public void onPong(Session session, ByteBuffer payload) {
+        if (session == sender) {
+            senderPongNanos = System.nanoTime();
+            return;
+        }
+        Object queue = session.getUserProperties().get(QUEUE_PROPERTY);
+        if (queue instanceof OutboundQueue) {
+            ((OutboundQueue) queue).onPong(payload);
+        }
+    }
+
+    /**
+     * Envoie un ping a chaque session et exclut celles qui n'ont pas repondu
+     * depuis pongTimeoutNanos : un recepteur dont la connexion a disparu sans
+     * fermeture (perte du WiFi) ne reste pas dans la boucle de diffusion.
+     * Marque aussi le canal perime si l'emetteur ne publie plus. Appele
+     * periodiquement par {@link HeartbeatMonitor}.
+     */
+    void heartbeat(long pongTimeoutNanos) {
+        long now = System.nanoTime();
+        for (OutboundQueue q : receivers) {
+            if (!q.isOpen()) {
+                continue;
+            }
+            if (now - q.getLastPongNanos() > pongTimeoutNanos) {
+                System.out.println("Receiver sans reponse deconnecte (" + channelKey + ") : " + q.getSession().getId());
+                q.close();
+                closeQuietly(q.getSession());
+            } else {
+                ping(q.getSession(), now);
+            }
+        }
+        removeClosedReceivers();
+
+        Session current = sender;
+        if (current == null) {
+            return;
+        }
+        // Un message de l'emetteur prouve autant qu'un pong que la connexion vit
+        if (now - Math.max(senderPongNanos, senderMessageNanos) > pongTimeoutNanos) {
+            System.out.println("Sender sans reponse deconnecte (" + channelKey + ").");
+            unregister(current);
+            closeQuietly(current);
+            return;
+        }
+        ping(current, now);
+        if (!stale && now - senderMessageNanos > senderSilenceNanos) {
+            stale = true;
+            // Le dernier etat ne decrit plus le vehicule : il n'est plus rejoue
+            snapshot = null;
+            if (tiering != null) {
+                tiering.clearLastFrames();
+            }
+            System.out.println("Sender muet, canal perime (" + channelKey + ").");
+        }
+    }
+
+    private static void ping(Session session, long now) {
+        try {
+            session.getAsyncRemote().sendPing(ByteBuffer.allocate(Long.BYTES).putLong(0, now));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erreur lors de l'envoi du ping : " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Session session) {
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Pas de reponse au ping"));
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture de la session : " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true si l'emetteur est connecte mais ne publie plus
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * @return Anciennete de la connexion de l'emetteur (ms), -1 sans emetteur
+     */
+    public long getSenderAgeMillis() {
+        return sender == null ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - senderConnectedNanos);
+    }
+
+    /**
+     * @return Temps ecoule depuis le dernier message de l'emetteur (ms), -1 sans emetteur
+     */
+    public long getSenderIdleMillis() {
+        return sender == null ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - senderMessageNanos);
+    }
+
+    /**
+     * @return Congestion entre 0 et 1 du recepteur le plus lent pris en compte
+     */
+    public double getCongestion() {
+        double level = 0;
+        for (OutboundQueue q : receivers) {
+            if (q.isOpen() && !q.isCongestionIgnored()) {
+                level = Math.max(level, q.getCongestion(congestionTargetLatencyNanos));
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Envoie a l'emetteur un message de controle
+     * {"type":"congestion","level":..,"latencyMs":..,"queueDepth":..,"receivers":..}
+     * si le niveau a change d'au moins minDelta, ou au plus tard apres
+     * maxSilenceNanos. Appele periodiquement par {@link CongestionMonitor}.
+     */
+    void publishCongestion(double minDelta, long maxSilenceNanos) {
+        Session current = sender;
+        if (!congestionFeedback || current == null || !current.isOpen()) {
+            return;
+        }
+
+        double level = 0;
+        long latencyNanos = 0;
+        int depth = 0;
+        int count = 0;
+        for (OutboundQueue q : receivers) {
+            if (q.isOpen() && !q.isCongestionIgnored()) {
+                level = Math.max(level, q.getCongestion(congestionTargetLatencyNanos));
+                latencyNanos = Math.max(latencyNanos, q.getLatencyEwmaNanos());
+                depth = Math.max(depth, q.getDepth());
+                count++;
+            }
+        }
+
+        long now = System.nanoTime();
+        if (lastCongestionLevel >= 0 && Math.abs(level - lastCongestionLevel) < minDelta
+                && now - lastCongestionNanos < maxSilenceNanos) {
+            return;
+        }
+        // Un seul message de controle en vol : l'emetteur lent n'en accumule pas
+        if (!congestionInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        lastCongestionLevel = level;
+        lastCongestionNanos = now;
+        String message = String.format(Locale.ROOT,
+                "{\"type\":\"congestion\",\"level\":%.3f,\"latencyMs\":%d,\"queueDepth\":%d,\"receivers\":%d}",
+                level, TimeUnit.NANOSECONDS.toMillis(latencyNanos), depth, count);
+        try {
+            current.getAsyncRemote().sendText(message, result -> {
+                congestionInFlight.set(false);
+                // La reponse en attente est destinee a l'emetteur courant, peut-etre deja remplace
+                Session target = sender;
+                if (target != null) {
+                    sendPendingWelcome(target);
+                }
+            });
+        } catch (Exception e) {
+            congestionInFlight.set(false);
+            System.err.println("Erreur lors de l'envoi de la congestion : " + e.getMessage());
+        }
+    }
+
+    private static int sizeOf(Object message) {
+        return message instanceof CharSequence ? RelayMessage.sizeOf((CharSequence) message) : 0;
+    }
+
+    // Refuse sans le mettre en file un message au-dela des limites de debit
+    private boolean admit(int bytes) {
+        if (limits.admit(senderMessages, senderBytes, bytes)) {
+            return true;
+        }
+        rateLimitedCount.incrementAndGet();
+        return false;
+    }
+
+    private void resetFrame() {
+        frameRejected = false;
+        frameInProgress = false;
+        frameFragments = new ArrayList<>();
+        frameAssembly.reset();
+        frameBytes = 0;
+        frameOversize = false;
+    }
+
+    // Abandonne la trame trop grande ; en cut-through, les recepteurs qui en ont
+    // deja recu le debut recoivent une fin de trame vide
+    private void abortOversizeFrame(boolean last) {
+        if (cutThrough && frameInProgress && !frameRejected) {
+            publish(new RelayMessage(FrameFragment.terminator(frameCounter), 0, System.nanoTime()));
+        }
+        boolean oversize = !last;
+        resetFrame();
+        frameOversize = oversize;
+        oversizeFrameCount.incrementAndGet();
+        System.err.println("Trame de plus de " + maxFrameBytes + " octets ignoree (" + channelKey + ").");
+    }
+
+    private void remember(List<RelayMessage> messages, long receivedNanos) {
+        if (snapshotMaxAgeNanos > 0) {
+            snapshot = new Snapshot(messages, receivedNanos);
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getVehicle() {
+        return vehicle;
+    }
+
+    public EDeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public ETrafficClass getTrafficClass() {
+        return trafficClass;
+    }
+
+    /**
+     * @return true si au moins un recepteur est connecte a ce noeud (hors liens du cluster)
+     */
+    public boolean hasLocalReceivers() {
+        for (OutboundQueue q : receivers) {
+            if (q.isOpen() && !q.isBridge()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasSender() {
+        Session current = sender;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * @return Nombre de messages de l'emetteur refuses par les limites de debit
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * @return Nombre de trames binaires ignorees car plus grandes que la taille maximale
+     */
+    public long getOversizeFrameCount() {
+        return oversizeFrameCount.get();
+    }
+
+    /**
+     * @return Nombre de conversions d'encodage (une par message et par encodage cible)
+     */
+    public long getTranscodedCount() {
+        return transcodedCount.get();
+    }
+
+    /**
+     * @return Nombre de messages relayes dans leur encodage d'origine faute de conversion possible
+     */
+    public long getTranscodeFailedCount() {
+        return transcodeFailedCount.get();
+    }
+
+    /**
+     * @return true si le canal conserve ses dernieres secondes pour le rejeu immediat
+     */
+    public boolean isDvrEnabled() {
+        return dvrMaxAgeNanos > 0;
+    }
+
+    /**
+     * @return Anneau du rejeu immediat, null s'il est desactive ou si aucun emetteur n'a encore publie
+     */
+    public DvrRing getDvr() {
+        return dvr;
+    }
+
+    /**
+     * @return Paliers video du canal, null s'il n'en definit pas
+     */
+    public VideoTiering getTiering() {
+        return tiering;
+    }
+
+    public RelayStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return Les files d'envoi des recepteurs (profondeur, pertes, envois, remplacements)
+     */
+    public List<OutboundQueue> getReceiverQueues() {
+        return List.copyOf(receivers);
+    }
+
+    private static final class Snapshot {
+
+        private final List<RelayMessage> messages;
+
+        private final long receivedNanos;
+
+        private Snapshot(List<RelayMessage> messages, long receivedNanos) {
+            this.messages = messages;
+            this.receivedNanos = receivedNanos;
+        }
     }
 }
@@ -0,0 +1,108 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.websocket.Session;
+
+/**
+ * Salon de signalisation WebRTC : les pairs y sont indexes par identifiant,
+ * un message adresse est remis par une seule recherche. Chaque pair a sa
+ * propre {@link OutboundQueue}, les envois sont donc asynchrones et un pair
+ * lent ne retarde pas les autres.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SignalingRoom {
+
+    static final String CHANNEL = "signaling";
+
+    private final String name;
+
+    private final Map<String, OutboundQueue> peers = new ConcurrentHashMap<>();
+
+    private final RelayStats stats = new RelayStats();
+
+    public SignalingRoom(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Ajoute un pair.
+     *
+     * @return La file d'une connexion precedente sous le meme identifiant, a
+     *         fermer par l'appelant avec {@link #closeDisplaced} hors de tout
+     *         verrou ; null s'il n'y en a pas
+     */
+    OutboundQueue join(String peer, Session session) {
+        OutboundQueue queue = new OutboundQueue(session, RelayConfig.getQueueCapacity(CHANNEL),
+                RelayConfig.getOverflowPolicy(CHANNEL), EDeliveryMode.QUEUED, stats);
+        OutboundQueue previous = peers.put(peer, queue);
+        return previous != null && previous.getSession() != session ? previous : null;
+    }
+
+    /**
+     * Ferme la connexion remplacee par un nouveau pair de meme identifiant.
+     */
+    static void closeDisplaced(OutboundQueue previous) {
+        previous.close();
+        try {
+            previous.getSession().close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture de l'ancien pair : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retire le pair s'il correspond toujours a cette connexion.
+     */
+    void leave(String peer, Session session) {
+        OutboundQueue queue = peers.get(peer);
+        if (queue != null && queue.getSession() == session && peers.remove(peer, queue)) {
+            queue.close();
+        }
+    }
+
+    boolean isEmpty() {
+        return peers.isEmpty();
+    }
+
+    /**
+     * @return false si le pair destinataire n'est pas dans le salon
+     */
+    public boolean sendTo(String peer, String message) {
+        OutboundQueue queue = peers.get(peer);
+        if (queue == null || !queue.isOpen()) {
+            return false;
+        }
+        RelayMessage relayed = new RelayMessage(message, RelayMessage.sizeOf(message), System.nanoTime());
+        stats.recordIn(relayed);
+        return queue.offer(relayed);
+    }
+
+    /**
+     * Diffuse un message a tous les pairs du salon sauf l'emetteur.
+     */
+    public void broadcast(String fromPeer, String message) {
+        RelayMessage relayed = new RelayMessage(message, RelayMessage.sizeOf(message), System.nanoTime());
+        stats.recordIn(relayed);
+        for (Map.Entry<String, OutboundQueue> entry : peers.entrySet()) {
+            if (!entry.getKey().equals(fromPeer) && entry.getValue().isOpen()) {
+                entry.getValue().offer(relayed);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    public RelayStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,47 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.websocket.Session;
+
+/**
+ * Salons de signalisation, crees a l'arrivee du premier pair et supprimes au
+ * depart du dernier.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class SignalingRooms {
+
+    public static final String DEFAULT_ROOM = "default";
+
+    private static final Map<String, SignalingRoom> rooms = new ConcurrentHashMap<>();
+
+    private SignalingRooms() {
+    }
+
+    public static SignalingRoom join(String room, String peer, Session session) {
+        OutboundQueue[] displaced = new OutboundQueue[1];
+        SignalingRoom joined = rooms.compute(room, (name, current) -> {
+            SignalingRoom target = current != null ? current : new SignalingRoom(name);
+            displaced[0] = target.join(peer, session);
+            return target;
+        });
+        // Fermeture de l'ancienne connexion (bloquante) hors du verrou de la table
+        if (displaced[0] != null) {
+            SignalingRoom.closeDisplaced(displaced[0]);
+        }
+        return joined;
+    }
+
+    public static void leave(String room, String peer, Session session) {
+        rooms.computeIfPresent(room, (name, current) -> {
+            current.leave(peer, session);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    public static Map<String, SignalingRoom> getRooms() {
+        return Map.copyOf(rooms);
+    }
+}
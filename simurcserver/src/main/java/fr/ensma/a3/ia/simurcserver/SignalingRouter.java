@@ -0,0 +1,50 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Achemine un message de signalisation : le champ "to" de premier niveau
+ * designe le pair destinataire, sinon le message est diffuse au salon. Seul
+ * ce champ est recherche, le SDP n'est pas decode.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+final class SignalingRouter {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private SignalingRouter() {
+    }
+
+    static void route(SignalingRoom room, String fromPeer, String message) {
+        String to = recipientOf(message);
+        if (to == null) {
+            room.broadcast(fromPeer, message);
+        } else if (!room.sendTo(to, message)) {
+            System.out.println("Pair inconnu dans le salon " + room.getName() + " : " + to);
+        }
+    }
+
+    private static String recipientOf(String message) {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("to".equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Message non JSON : diffuse tel quel
+        }
+        return null;
+    }
+}
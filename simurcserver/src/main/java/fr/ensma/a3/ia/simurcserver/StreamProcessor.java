@@ -0,0 +1,28 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Traitement d'un etage de flux ({@link StreamStage}). Une instance par
+ * vehicule, appelee par un seul thread a la fois : elle peut garder un etat
+ * (filtres) d'un message a l'autre.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public interface StreamProcessor {
+
+    /**
+     * @param message Message JSON du canal d'entree
+     * @return Message JSON du canal derive, ou null pour ne rien publier
+     */
+    String process(String message) throws Exception;
+
+    /**
+     * @param message Message binaire du canal d'entree, en lecture seule et
+     *                partage : seules les lectures absolues sont permises
+     * @return Message JSON du canal derive, ou null pour ne rien publier
+     */
+    default String process(ByteBuffer message) throws Exception {
+        return null;
+    }
+}
@@ -0,0 +1,173 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Etage de traitement qui transforme un canal d'entree en canal derive (par
+ * exemple /sensorflow en /motioncue). Le calcul est fait une fois par
+ * message, sur l'executeur des etages et non sur les threads WebSocket, puis
+ * diffuse a tous les recepteurs du canal derive. Les messages d'un vehicule
+ * sont traites dans l'ordre ; si l'etage prend du retard, les messages en
+ * exces sont ignores.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class StreamStage {
+
+    private final String name;
+
+    private final String inputChannel;
+
+    private final RelayChannel outputChannel;
+
+    private final Supplier<StreamProcessor> processorFactory;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+
+    // Latence entre la reception du message d'entree et la publication du message derive
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final AtomicLong processNanos = new AtomicLong();
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    StreamStage(String name, String inputChannel, RelayChannel outputChannel,
+            Supplier<StreamProcessor> processorFactory, ExecutorService executor, int maxPending) {
+        this.name = name;
+        this.inputChannel = inputChannel;
+        this.outputChannel = outputChannel;
+        this.processorFactory = processorFactory;
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Recoit un message publie sur le canal d'entree ; appele depuis le chemin
+     * de diffusion. Rien n'est calcule tant que le canal derive n'a pas de
+     * recepteur.
+     */
+    void onPublished(String vehicle, RelayMessage message) {
+        Object payload = message.getPayload();
+        if (!(payload instanceof String || payload instanceof ByteBuffer)) {
+            return;
+        }
+        SessionRegistry<String> output = outputChannel.find(vehicle);
+        if (output == null || !output.hasLocalReceivers()) {
+            return;
+        }
+        workers.computeIfAbsent(vehicle, Worker::new).offer(message);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInputChannel() {
+        return inputChannel;
+    }
+
+    public String getOutputChannel() {
+        return outputChannel.getName();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Duree moyenne du traitement seul, en microsecondes
+     */
+    public double getAverageProcessMicros() {
+        long count = processedCount.get();
+        return count == 0 ? 0 : processNanos.get() / 1000.0 / count;
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private final class Worker {
+
+        private final StreamProcessor processor = processorFactory.get();
+
+        private final String vehicle;
+
+        private final Queue<RelayMessage> inbox = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingCount = new AtomicInteger();
+
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private Worker(String vehicle) {
+            this.vehicle = vehicle;
+        }
+
+        private void offer(RelayMessage message) {
+            if (pendingCount.incrementAndGet() > maxPending) {
+                pendingCount.decrementAndGet();
+                droppedCount.incrementAndGet();
+                return;
+            }
+            inbox.offer(message);
+            if (running.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                RelayMessage message;
+                while ((message = inbox.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    process(message);
+                }
+                running.set(false);
+            } while (!inbox.isEmpty() && running.compareAndSet(false, true));
+        }
+
+        private void process(RelayMessage message) {
+            long start = System.nanoTime();
+            try {
+                Object payload = message.getPayload();
+                String derived = payload instanceof String ? processor.process((String) payload)
+                        : processor.process((ByteBuffer) payload);
+                processNanos.addAndGet(System.nanoTime() - start);
+                processedCount.incrementAndGet();
+                // Le registre de sortie est relu : il a pu etre evince puis recree
+                SessionRegistry<String> output = outputChannel.find(vehicle);
+                if (derived != null && output != null) {
+                    output.broadcastDerived(derived, message.getReceivedNanos());
+                    latency.record(System.nanoTime() - message.getReceivedNanos());
+                }
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                System.err.println("Erreur de l'etage " + name + " : " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Etages de traitement du relais et leur executeur dedie. L'etage motioncue
+ * (repere D-BOX calcule depuis /sensorflow) est enregistre par defaut.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class StreamStages {
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, RelayConfig.getInt(null, "stages.threads", 2)), r -> {
+                Thread thread = new Thread(r, "relay-stage");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final List<StreamStage> stages = new CopyOnWriteArrayList<>();
+
+    static {
+        register("motioncue", RelayChannels.SENSOR_FLOW.getName(), RelayChannels.MOTION_CUE, MotionCueProcessor::new);
+    }
+
+    private StreamStages() {
+    }
+
+    /**
+     * Enregistre un etage ; a faire avant la creation des registres du canal
+     * d'entree, qui resolvent leurs etages a la creation.
+     */
+    public static StreamStage register(String name, String inputChannel, RelayChannel outputChannel,
+            Supplier<StreamProcessor> processorFactory) {
+        StreamStage stage = new StreamStage(name, inputChannel, outputChannel, processorFactory, EXECUTOR,
+                RelayConfig.getInt(name, "stage.maxPending", 256));
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * @return Les etages alimentes par ce canal
+     */
+    static List<StreamStage> forInput(String channel) {
+        List<StreamStage> matching = new ArrayList<>();
+        for (StreamStage stage : stages) {
+            if (stage.getInputChannel().equals(channel)) {
+                matching.add(stage);
+            }
+        }
+        return matching;
+    }
+
+    public static List<StreamStage> all() {
+        return List.copyOf(stages);
+    }
+}
@@ -0,0 +1,60 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Lecture des demandes d'abonnement d'un recepteur, en parametre de connexion
+ * (?maxRate=2) ou en message {"type":"subscribe","maxRate":2}.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+final class SubscribeRequest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private SubscribeRequest() {
+    }
+
+    /**
+     * @return Le debit demande, 0 (sans limite) si la valeur est invalide
+     */
+    static double parseRate(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Debit maximal invalide : " + value);
+            return 0;
+        }
+    }
+
+    /**
+     * @return Le debit d'un message "subscribe", NaN pour tout autre message
+     */
+    static double parseMaxRate(String message) {
+        boolean subscribe = false;
+        double maxRate = Double.NaN;
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Double.NaN;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) {
+                    subscribe = value == JsonToken.VALUE_STRING && "subscribe".equals(parser.getText());
+                } else if ("maxRate".equals(field) && value.isNumeric()) {
+                    maxRate = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+        return subscribe ? maxRate : Double.NaN;
+    }
+}
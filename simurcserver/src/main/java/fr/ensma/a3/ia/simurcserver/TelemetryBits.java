@@ -0,0 +1,117 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Flux de bits utilises par les colonnes compressees de {@link TelemetryChunk}.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+final class TelemetryBits {
+
+    private TelemetryBits() {
+    }
+
+    /**
+     * Ecriture bit a bit dans des mots de 64 bits.
+     */
+    static final class Output {
+
+        private long[] words = new long[64];
+
+        private long bitCount;
+
+        void writeBit(boolean bit) {
+            writeBits(bit ? 1 : 0, 1);
+        }
+
+        /**
+         * Ecrit les count bits de poids faible de value (count entre 1 et 64).
+         */
+        void writeBits(long value, int count) {
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+            int offset = (int) (bitCount & 63);
+            int index = (int) (bitCount >>> 6);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int free = 64 - offset;
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                words[index] |= value >>> (count - free);
+                words[index + 1] |= value << (64 - (count - free));
+            }
+            bitCount += count;
+        }
+
+        long getBitCount() {
+            return bitCount;
+        }
+
+        int getByteCount() {
+            return (int) ((bitCount + 7) >>> 3);
+        }
+
+        /**
+         * Copie les octets utiles (poids fort en tete) dans target.
+         */
+        void writeTo(ByteBuffer target) {
+            int bytes = getByteCount();
+            for (int i = 0; i < bytes; i++) {
+                target.put((byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3))));
+            }
+        }
+    }
+
+    /**
+     * Lecture bit a bit d'une colonne serialisee.
+     */
+    static final class Input {
+
+        private final ByteBuffer data;
+
+        private final int start;
+
+        private long position;
+
+        Input(ByteBuffer data) {
+            this.data = data;
+            this.start = data.position();
+        }
+
+        boolean readBit() {
+            int b = data.get(start + (int) (position >>> 3));
+            boolean bit = ((b >>> (7 - (position & 7))) & 1) != 0;
+            position++;
+            return bit;
+        }
+
+        long readBits(int count) {
+            long value = 0;
+            int remaining = count;
+            while (remaining > 0) {
+                int offset = (int) (position & 7);
+                int available = 8 - offset;
+                int take = Math.min(available, remaining);
+                int b = data.get(start + (int) (position >>> 3)) & 0xFF;
+                int chunk = (b >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                position += take;
+                remaining -= take;
+            }
+            return value;
+        }
+
+        /**
+         * @return Valeur signee codee en complement a deux sur count bits
+         */
+        long readSigned(int count) {
+            long value = readBits(count);
+            return count < 64 ? (value << (64 - count)) >> (64 - count) : value;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bloc de telemetrie d'un vehicule sur une fenetre de temps, stocke en
+ * colonnes compressees a la maniere de Gorilla : les instants en
+ * delta-de-delta, chaque grandeur en XOR avec la valeur precedente. Un flux
+ * capteurs regulier tient ainsi en quelques bits par point et par colonne.
+ * <p>
+ * Forme serialisee (fichier .tsc) :
+ *
+ * <pre>
+ * int   MAGIC, short VERSION
+ * long  premier instant, long dernier instant (ms epoch), int nombre de points
+ * byte  nombre de colonnes (instants puis une par {@link ETelemetryField})
+ * pour chaque colonne : long nombre de bits, byte[] bits
+ * </pre>
+ *
+ * Les ecritures viennent du seul thread de {@link TelemetryStore} ; les
+ * lectures travaillent sur une copie serialisee.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+final class TelemetryChunk {
+
+    static final int MAGIC = 0x52435431; // "RCT1"
+
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 4 + 1;
+
+    static final String SUFFIX = ".tsc";
+
+    private static final ETelemetryField[] FIELDS = ETelemetryField.values();
+
+    private final String vehicle;
+
+    private final long windowStart;
+
+    private final TelemetryBits.Output timestamps = new TelemetryBits.Output();
+
+    private final TelemetryBits.Output[] columns = new TelemetryBits.Output[FIELDS.length];
+
+    private final int[] previousBits = new int[FIELDS.length];
+
+    private final int[] previousLeading = new int[FIELDS.length];
+
+    private final int[] previousTrailing = new int[FIELDS.length];
+
+    private long previousTimestamp;
+
+    private long previousDelta;
+
+    private long minTimestamp = Long.MAX_VALUE;
+
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    private int count;
+
+    TelemetryChunk(String vehicle, long windowStart) {
+        this.vehicle = vehicle;
+        this.windowStart = windowStart;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new TelemetryBits.Output();
+            previousLeading[i] = -1;
+        }
+    }
+
+    /**
+     * @param values Une valeur par {@link ETelemetryField}, NaN si absente
+     */
+    synchronized void append(long timestampMs, float[] values) {
+        if (count == 0) {
+            timestamps.writeBits(timestampMs, 64);
+        } else {
+            long delta = timestampMs - previousTimestamp;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+        }
+        previousTimestamp = timestampMs;
+        minTimestamp = Math.min(minTimestamp, timestampMs);
+        maxTimestamp = Math.max(maxTimestamp, timestampMs);
+
+        for (int i = 0; i < columns.length; i++) {
+            int bits = Float.floatToIntBits(values[i]);
+            if (count == 0) {
+                columns[i].writeBits(bits, 32);
+            } else {
+                writeXor(i, bits ^ previousBits[i]);
+            }
+            previousBits[i] = bits;
+        }
+        count++;
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            timestamps.writeBit(false);
+        } else if (fits(dod, 7)) {
+            timestamps.writeBits(0b10, 2);
+            timestamps.writeBits(dod, 7);
+        } else if (fits(dod, 9)) {
+            timestamps.writeBits(0b110, 3);
+            timestamps.writeBits(dod, 9);
+        } else if (fits(dod, 12)) {
+            timestamps.writeBits(0b1110, 4);
+            timestamps.writeBits(dod, 12);
+        } else {
+            timestamps.writeBits(0b1111, 4);
+            timestamps.writeBits(dod, 64);
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    // Valeur identique : un bit. Sinon les bits significatifs du XOR, en
+    // reutilisant la fenetre (zeros de tete et de queue) precedente si possible.
+    private void writeXor(int column, int xor) {
+        TelemetryBits.Output out = columns[column];
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        if (previousLeading[column] >= 0 && leading >= previousLeading[column]
+                && trailing >= previousTrailing[column]) {
+            out.writeBit(false);
+            out.writeBits(xor >>> previousTrailing[column], 32 - previousLeading[column] - previousTrailing[column]);
+        } else {
+            int length = 32 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            out.writeBits(length - 1, 5);
+            out.writeBits(xor >>> trailing, length);
+            previousLeading[column] = leading;
+            previousTrailing[column] = trailing;
+        }
+    }
+
+    String getVehicle() {
+        return vehicle;
+    }
+
+    long getWindowStart() {
+        return windowStart;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Copie serialisee du bloc, lisible par {@link Reader}
+     */
+    synchronized ByteBuffer serialize() {
+        int size = HEADER_SIZE + 8 + timestamps.getByteCount();
+        for (TelemetryBits.Output column : columns) {
+            size += 8 + column.getByteCount();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(minTimestamp);
+        buffer.putLong(maxTimestamp);
+        buffer.putInt(count);
+        buffer.put((byte) (columns.length + 1));
+        buffer.putLong(timestamps.getBitCount());
+        timestamps.writeTo(buffer);
+        for (TelemetryBits.Output column : columns) {
+            buffer.putLong(column.getBitCount());
+            column.writeTo(buffer);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Lecture d'un bloc serialise. Seules les colonnes demandees sont
+     * decompressees.
+     */
+    static final class Reader {
+
+        private final ByteBuffer data;
+
+        private final long minTimestamp;
+
+        private final long maxTimestamp;
+
+        private final int count;
+
+        // Position de chaque colonne, instants en tete
+        private final int[] offsets;
+
+        Reader(ByteBuffer data) throws IOException {
+            this.data = data;
+            if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getShort(4) != VERSION) {
+                throw new IOException("Bloc de telemetrie invalide");
+            }
+            this.minTimestamp = data.getLong(6);
+            this.maxTimestamp = data.getLong(14);
+            this.count = data.getInt(22);
+            int columnCount = data.get(26);
+            this.offsets = new int[columnCount];
+            int position = HEADER_SIZE;
+            for (int i = 0; i < columnCount; i++) {
+                long bits = data.getLong(position);
+                offsets[i] = position + 8;
+                position += 8 + (int) ((bits + 7) >>> 3);
+            }
+        }
+
+        long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        long[] readTimestamps() {
+            long[] values = new long[count];
+            if (count == 0) {
+                return values;
+            }
+            TelemetryBits.Input in = new TelemetryBits.Input(data.duplicate().position(offsets[0]));
+            long timestamp = in.readBits(64);
+            long delta = 0;
+            values[0] = timestamp;
+            for (int i = 1; i < count; i++) {
+                delta += readDeltaOfDelta(in);
+                timestamp += delta;
+                values[i] = timestamp;
+            }
+            return values;
+        }
+
+        private static long readDeltaOfDelta(TelemetryBits.Input in) {
+            if (!in.readBit()) {
+                return 0;
+            }
+            if (!in.readBit()) {
+                return in.readSigned(7);
+            }
+            if (!in.readBit()) {
+                return in.readSigned(9);
+            }
+            if (!in.readBit()) {
+                return in.readSigned(12);
+            }
+            return in.readBits(64);
+        }
+
+        float[] readField(ETelemetryField field) {
+            float[] values = new float[count];
+            int column = field.ordinal() + 1;
+            if (column >= offsets.length) {
+                // Grandeur ajoutee apres l'ecriture du bloc
+                Arrays.fill(values, Float.NaN);
+                return values;
+            }
+            if (count == 0) {
+                return values;
+            }
+            TelemetryBits.Input in = new TelemetryBits.Input(data.duplicate().position(offsets[column]));
+            int bits = (int) in.readBits(32);
+            int leading = 0;
+            int trailing = 0;
+            values[0] = Float.intBitsToFloat(bits);
+            for (int i = 1; i < count; i++) {
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.readBits(5);
+                        int length = (int) in.readBits(5) + 1;
+                        trailing = 32 - leading - length;
+                    }
+                    int meaningful = 32 - leading - trailing;
+                    bits ^= (int) in.readBits(meaningful) << trailing;
+                }
+                values[i] = Float.intBitsToFloat(bits);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Interroge la base de telemetrie. Sans parametre vehicle, decrit la base
+ * (vehicules, taille sur disque). Avec vehicle, renvoie les points entre from
+ * et to (ms epoch, par defaut la derniere minute) pour les grandeurs de
+ * fields (toutes par defaut) ; avec bucketMs, renvoie par seau le minimum, le
+ * maximum et la moyenne de chaque grandeur.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@WebServlet("/relay/telemetry")
+public class TelemetryServlet extends HttpServlet {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final long DEFAULT_RANGE_MS = 60_000;
+
+    private static final int MAX_RAW_POINTS = 50_000;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        TelemetryStore store = TelemetryStore.getInstance();
+        if (store == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Base de telemetrie desactivee");
+            return;
+        }
+
+        String vehicle = req.getParameter("vehicle");
+        ObjectNode root;
+        if (vehicle == null) {
+            root = objectMapper.createObjectNode();
+            ArrayNode vehicles = root.putArray("vehicles");
+            store.getVehicles().forEach(vehicles::add);
+            root.put("chunkMs", store.getWindowMs());
+            root.put("diskBytes", store.getDiskBytes());
+            root.put("written", store.getWrittenCount());
+            root.put("dropped", store.getDroppedCount());
+            root.put("sealedChunks", store.getSealedCount());
+        } else {
+            if (!RelayChannel.isValidVehicle(vehicle)) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Vehicule invalide");
+                return;
+            }
+            long to;
+            long from;
+            long bucketMs;
+            List<ETelemetryField> fields = new ArrayList<>();
+            try {
+                String value = req.getParameter("to");
+                to = value == null ? System.currentTimeMillis() : Long.parseLong(value);
+                value = req.getParameter("from");
+                from = value == null ? to - DEFAULT_RANGE_MS : Long.parseLong(value);
+                value = req.getParameter("bucketMs");
+                bucketMs = value == null ? 0 : Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Valeur invalide : " + e.getMessage());
+                return;
+            }
+            String names = req.getParameter("fields");
+            if (names == null) {
+                fields.addAll(List.of(ETelemetryField.values()));
+            } else {
+                for (String name : names.split(",")) {
+                    ETelemetryField field = ETelemetryField.byJsonName(name.trim());
+                    if (field == null) {
+                        resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Grandeur inconnue : " + name);
+                        return;
+                    }
+                    fields.add(field);
+                }
+            }
+            if (from > to || bucketMs < 0) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Intervalle invalide");
+                return;
+            }
+
+            TelemetrySlice slice = store.query(vehicle, from, to, fields);
+            if (bucketMs == 0 && slice.size() > MAX_RAW_POINTS) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        slice.size() + " points, utiliser bucketMs ou reduire l'intervalle");
+                return;
+            }
+            root = objectMapper.createObjectNode();
+            root.put("vehicle", vehicle);
+            root.put("from", from);
+            root.put("to", to);
+            root.put("count", slice.size());
+            if (bucketMs > 0) {
+                root.put("bucketMs", bucketMs);
+                root.set("buckets", buildBuckets(slice, bucketMs));
+            } else {
+                buildPoints(slice, root);
+            }
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getOutputStream(), root);
+    }
+
+    // Colonnes : "t" puis un tableau par grandeur, null pour une valeur absente
+    private static void buildPoints(TelemetrySlice slice, ObjectNode root) {
+        ArrayNode timestamps = root.putArray("t");
+        for (int i = 0; i < slice.size(); i++) {
+            timestamps.add(slice.getTimestamp(i));
+        }
+        ObjectNode values = root.putObject("fields");
+        List<ETelemetryField> fields = slice.getFields();
+        for (int k = 0; k < fields.size(); k++) {
+            ArrayNode column = values.putArray(fields.get(k).getJsonName());
+            for (int i = 0; i < slice.size(); i++) {
+                float value = slice.getValue(k, i);
+                if (Float.isNaN(value)) {
+                    column.addNull();
+                } else {
+                    column.add(value);
+                }
+            }
+        }
+    }
+
+    private static ArrayNode buildBuckets(TelemetrySlice slice, long bucketMs) {
+        ArrayNode buckets = objectMapper.createArrayNode();
+        List<ETelemetryField> fields = slice.getFields();
+        for (TelemetrySlice.Bucket bucket : slice.downsample(bucketMs)) {
+            ObjectNode node = buckets.addObject();
+            node.put("t", bucket.getStart());
+            node.put("count", bucket.getCount());
+            for (int k = 0; k < fields.size(); k++) {
+                if (bucket.hasValues(k)) {
+                    ObjectNode field = node.putObject(fields.get(k).getJsonName());
+                    field.put("min", bucket.getMin(k));
+                    field.put("max", bucket.getMax(k));
+                    field.put("avg", bucket.getAverage(k));
+                }
+            }
+        }
+        return buckets;
+    }
+}
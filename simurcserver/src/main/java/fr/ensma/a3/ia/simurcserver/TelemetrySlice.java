@@ -0,0 +1,167 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resultat d'une requete sur {@link TelemetryStore} : points d'un intervalle
+ * de temps, en colonnes, tries par instant.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class TelemetrySlice {
+
+    private final List<ETelemetryField> fields;
+
+    private long[] timestamps;
+
+    private float[][] values;
+
+    private int size;
+
+    TelemetrySlice(List<ETelemetryField> fields, int capacity) {
+        this.fields = List.copyOf(fields);
+        this.timestamps = new long[Math.max(16, capacity)];
+        this.values = new float[fields.size()][timestamps.length];
+    }
+
+    void add(long timestamp, float[] row) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Arrays.copyOf(values[i], size * 2);
+            }
+        }
+        timestamps[size] = timestamp;
+        for (int i = 0; i < values.length; i++) {
+            values[i][size] = row[i];
+        }
+        size++;
+    }
+
+    /**
+     * Trie les points par instant ; les blocs sont lus dans l'ordre, seul un
+     * recul d'horloge de l'emetteur peut les melanger.
+     */
+    void sort() {
+        for (int i = 1; i < size; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                Integer[] order = new Integer[size];
+                for (int j = 0; j < size; j++) {
+                    order[j] = j;
+                }
+                Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+                long[] sortedTimestamps = new long[size];
+                float[][] sortedValues = new float[values.length][size];
+                for (int j = 0; j < size; j++) {
+                    sortedTimestamps[j] = timestamps[order[j]];
+                    for (int k = 0; k < values.length; k++) {
+                        sortedValues[k][j] = values[k][order[j]];
+                    }
+                }
+                timestamps = sortedTimestamps;
+                values = sortedValues;
+                return;
+            }
+        }
+    }
+
+    public List<ETelemetryField> getFields() {
+        return fields;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @param field Indice de la grandeur dans {@link #getFields()}
+     */
+    public float getValue(int field, int index) {
+        return values[field][index];
+    }
+
+    /**
+     * Reduit les points en seaux de bucketMs : minimum, maximum et moyenne de
+     * chaque grandeur (les valeurs absentes sont ignorees).
+     */
+    public List<Bucket> downsample(long bucketMs) {
+        List<Bucket> buckets = new ArrayList<>();
+        Bucket current = null;
+        for (int i = 0; i < size; i++) {
+            long start = Math.floorDiv(timestamps[i], bucketMs) * bucketMs;
+            if (current == null || current.start != start) {
+                current = new Bucket(start, values.length);
+                buckets.add(current);
+            }
+            current.count++;
+            for (int k = 0; k < values.length; k++) {
+                float value = values[k][i];
+                if (!Float.isNaN(value)) {
+                    current.min[k] = Math.min(current.min[k], value);
+                    current.max[k] = Math.max(current.max[k], value);
+                    current.sum[k] += value;
+                    current.counts[k]++;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    public static final class Bucket {
+
+        private final long start;
+
+        private int count;
+
+        private final float[] min;
+
+        private final float[] max;
+
+        private final double[] sum;
+
+        private final int[] counts;
+
+        private Bucket(long start, int fieldCount) {
+            this.start = start;
+            this.min = new float[fieldCount];
+            this.max = new float[fieldCount];
+            this.sum = new double[fieldCount];
+            this.counts = new int[fieldCount];
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return true si la grandeur a au moins une valeur dans ce seau
+         */
+        public boolean hasValues(int field) {
+            return counts[field] > 0;
+        }
+
+        public float getMin(int field) {
+            return min[field];
+        }
+
+        public float getMax(int field) {
+            return max[field];
+        }
+
+        public double getAverage(int field) {
+            return counts[field] == 0 ? Double.NaN : sum[field] / counts[field];
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Base de series temporelles embarquee pour le flux /sensorflow. Chaque
+ * vehicule a un bloc courant en memoire ({@link TelemetryChunk}) qui est
+ * ecrit sur disque (simurcserver.telemetry.dir/vehicule/debut.tsc) a la fin
+ * de sa fenetre. Les blocs plus anciens que la retention sont supprimes.
+ * <p>
+ * Comme pour {@link SessionJournal}, le registre depose les messages dans une
+ * file sans verrou et un unique thread les analyse et les compresse : la
+ * diffusion n'est jamais ralentie.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class TelemetryStore {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long MAINTENANCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ETelemetryField[] FIELDS = ETelemetryField.values();
+
+    private static volatile TelemetryStore instance;
+
+    private static boolean initialized;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path dir;
+
+    private final long windowMs;
+
+    private final long retentionMs;
+
+    private final int maxPending;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong sealedCount = new AtomicLong();
+
+    // Bloc courant de chaque vehicule, ecrit par le seul thread de la base
+    private final Map<String, TelemetryChunk> activeChunks = new ConcurrentHashMap<>();
+
+    // Valeurs de l'echantillon en cours, reutilisees par le seul thread de la base
+    private final float[] values = new float[FIELDS.length];
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    private long lastMaintenanceNanos = System.nanoTime();
+
+    private TelemetryStore(Path dir, long windowMs, long retentionMs, int maxPending) throws IOException {
+        this.dir = dir;
+        this.windowMs = windowMs;
+        this.retentionMs = retentionMs;
+        this.maxPending = maxPending;
+        Files.createDirectories(dir);
+
+        writer = new Thread(this::writeLoop, "relay-telemetry-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return La base de telemetrie, ou null si elle est desactivee
+     */
+    public static TelemetryStore getInstance() {
+        synchronized (TelemetryStore.class) {
+            if (!initialized) {
+                initialized = true;
+                String dir = RelayConfig.getString(null, "telemetry.dir");
+                if (dir != null && !dir.isBlank()) {
+                    try {
+                        instance = new TelemetryStore(Paths.get(dir),
+                                TimeUnit.MINUTES.toMillis(RelayConfig.getInt(null, "telemetry.chunkMinutes", 10)),
+                                TimeUnit.DAYS.toMillis(RelayConfig.getInt(null, "telemetry.retentionDays", 28)),
+                                RelayConfig.getInt(null, "telemetry.maxPending", 4096));
+                        System.out.println("Base de telemetrie : " + dir);
+                    } catch (IOException e) {
+                        System.err.println("Impossible d'ouvrir la base de telemetrie : " + e.getMessage());
+                    }
+                }
+            }
+            return instance;
+        }
+    }
+
+    public static void shutdown() {
+        TelemetryStore store;
+        synchronized (TelemetryStore.class) {
+            store = instance;
+            instance = null;
+        }
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Depose un message de l'emetteur /sensorflow ; appele depuis le chemin de diffusion.
+     */
+    public void append(String vehicle, String message) {
+        if (!running) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        queue.offer(new Entry(vehicle, message, null, System.currentTimeMillis()));
+    }
+
+    /**
+     * Depose une trame capteurs binaire ({@link SensorFrameView}) : elle est
+     * lue en place par le thread de la base, sans analyse JSON.
+     */
+    public void append(String vehicle, ByteBuffer frame) {
+        if (!running) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+            return;
+        }
+        queue.offer(new Entry(vehicle, null, frame, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return Les points du vehicule entre from et to inclus (ms epoch)
+     */
+    public TelemetrySlice query(String vehicle, long from, long to, List<ETelemetryField> fields)
+            throws IOException {
+        TelemetrySlice slice = new TelemetrySlice(fields, 1024);
+        Path vehicleDir = dir.resolve(vehicle);
+        if (Files.isDirectory(vehicleDir)) {
+            List<Path> candidates = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(vehicleDir, "*" + TelemetryChunk.SUFFIX)) {
+                for (Path file : files) {
+                    long start = windowStartOf(file);
+                    if (start >= 0 && start <= to && start + windowMs > from) {
+                        candidates.add(file);
+                    }
+                }
+            }
+            candidates.sort((a, b) -> Long.compare(windowStartOf(a), windowStartOf(b)));
+            for (Path file : candidates) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    collect(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), from, to, fields, slice);
+                }
+            }
+        }
+        TelemetryChunk active = activeChunks.get(vehicle);
+        if (active != null) {
+            collect(active.serialize(), from, to, fields, slice);
+        }
+        slice.sort();
+        return slice;
+    }
+
+    private static void collect(ByteBuffer data, long from, long to, List<ETelemetryField> fields,
+            TelemetrySlice slice) throws IOException {
+        TelemetryChunk.Reader reader = new TelemetryChunk.Reader(data);
+        if (reader.getCount() == 0 || reader.getMaxTimestamp() < from || reader.getMinTimestamp() > to) {
+            return;
+        }
+        long[] timestamps = reader.readTimestamps();
+        float[][] columns = new float[fields.size()][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = reader.readField(fields.get(i));
+        }
+        float[] row = new float[columns.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            if (timestamps[i] >= from && timestamps[i] <= to) {
+                for (int k = 0; k < columns.length; k++) {
+                    row[k] = columns[k][i];
+                }
+                slice.add(timestamps[i], row);
+            }
+        }
+    }
+
+    /**
+     * @return Les vehicules ayant de la telemetrie, sur disque ou en cours
+     */
+    public List<String> getVehicles() throws IOException {
+        List<String> vehicles = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path vehicleDir : dirs) {
+                vehicles.add(vehicleDir.getFileName().toString());
+            }
+        }
+        for (String vehicle : activeChunks.keySet()) {
+            if (!vehicles.contains(vehicle)) {
+                vehicles.add(vehicle);
+            }
+        }
+        return vehicles;
+    }
+
+    /**
+     * @return Taille des blocs ecrits sur disque, en octets
+     */
+    public long getDiskBytes() throws IOException {
+        long total = 0;
+        for (String vehicle : getVehicles()) {
+            Path vehicleDir = dir.resolve(vehicle);
+            if (Files.isDirectory(vehicleDir)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(vehicleDir, "*" + TelemetryChunk.SUFFIX)) {
+                    for (Path file : files) {
+                        total += Files.size(file);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSealedCount() {
+        return sealedCount.get();
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    private void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            long now = System.nanoTime();
+            if (now - lastMaintenanceNanos >= MAINTENANCE_INTERVAL_NANOS) {
+                lastMaintenanceNanos = now;
+                maintain();
+            }
+            Entry entry = queue.poll();
+            if (entry == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                write(entry);
+            } catch (IOException | RuntimeException e) {
+                droppedCount.incrementAndGet();
+                System.err.println("Erreur d'ecriture de la telemetrie : " + e.getMessage());
+            }
+        }
+        for (TelemetryChunk chunk : activeChunks.values()) {
+            seal(chunk);
+        }
+        activeChunks.clear();
+    }
+
+    private void write(Entry entry) throws IOException {
+        long timestampMs;
+        if (entry.frame != null) {
+            SensorFrameView frame = SensorFrameView.of(entry.frame);
+            if (frame == null || !frame.hasMpuData()) {
+                return;
+            }
+            timestampMs = frame.getTimestampMs();
+            for (ETelemetryField field : FIELDS) {
+                values[field.ordinal()] = frame.get(field);
+            }
+        } else {
+            JsonNode root = objectMapper.readTree(entry.message);
+            JsonNode mpu = root.get("mpuData");
+            if (mpu == null) {
+                // Message sans donnees inertielles
+                return;
+            }
+            JsonNode timestamp = root.get("timestampMs");
+            timestampMs = timestamp != null && timestamp.canConvertToLong() ? timestamp.asLong()
+                    : entry.receivedEpochMs;
+            for (ETelemetryField field : FIELDS) {
+                JsonNode parent = root.get(field.getParent());
+                JsonNode value = parent == null ? null : parent.get(field.getJsonName());
+                values[field.ordinal()] = value != null && value.isNumber() ? value.floatValue() : Float.NaN;
+            }
+        }
+
+        TelemetryChunk chunk = activeChunks.get(entry.vehicle);
+        if (chunk != null && timestampMs >= chunk.getWindowStart() + windowMs) {
+            seal(chunk);
+            chunk = null;
+        }
+        if (chunk == null) {
+            chunk = new TelemetryChunk(entry.vehicle, Math.floorDiv(timestampMs, windowMs) * windowMs);
+            activeChunks.put(entry.vehicle, chunk);
+        }
+        chunk.append(timestampMs, values);
+        writtenCount.incrementAndGet();
+    }
+
+    // Ecrit les blocs dont la fenetre est close depuis une fenetre entiere
+    // (emetteur arrete) et applique la retention.
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        Iterator<TelemetryChunk> chunks = activeChunks.values().iterator();
+        while (chunks.hasNext()) {
+            TelemetryChunk chunk = chunks.next();
+            if (now >= chunk.getWindowStart() + 2 * windowMs) {
+                seal(chunk);
+                chunks.remove();
+            }
+        }
+
+        long oldest = now - retentionMs;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path vehicleDir : dirs) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(vehicleDir, "*" + TelemetryChunk.SUFFIX)) {
+                    for (Path file : files) {
+                        long start = windowStartOf(file);
+                        if (start >= 0 && start + windowMs < oldest) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la purge de la telemetrie : " + e.getMessage());
+        }
+    }
+
+    private void seal(TelemetryChunk chunk) {
+        if (chunk.getCount() == 0) {
+            return;
+        }
+        try {
+            Path vehicleDir = Files.createDirectories(dir.resolve(chunk.getVehicle()));
+            // Un redemarrage dans la meme fenetre donne un second bloc
+            String name = Long.toString(chunk.getWindowStart());
+            Path target = vehicleDir.resolve(name + TelemetryChunk.SUFFIX);
+            for (int i = 1; Files.exists(target); i++) {
+                target = vehicleDir.resolve(name + "-" + i + TelemetryChunk.SUFFIX);
+            }
+            Path temporary = vehicleDir.resolve(name + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer data = chunk.serialize();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            sealedCount.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("Erreur d'ecriture d'un bloc de telemetrie : " + e.getMessage());
+        }
+    }
+
+    // Debut de fenetre d'apres le nom du fichier (debut[-n].tsc), -1 si invalide
+    private static long windowStartOf(Path file) {
+        String name = file.getFileName().toString();
+        int end = name.indexOf('-');
+        if (end < 0) {
+            end = name.indexOf('.');
+        }
+        try {
+            return Long.parseLong(name.substring(0, end));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String vehicle;
+
+        private final String message;
+
+        private final ByteBuffer frame;
+
+        private final long receivedEpochMs;
+
+        private Entry(String vehicle, String message, ByteBuffer frame, long receivedEpochMs) {
+            this.vehicle = vehicle;
+            this.message = message;
+            this.frame = frame;
+            this.receivedEpochMs = receivedEpochMs;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.ensma.a3.ia.simurcserver;
+
+/**
+ * Seau a jetons dont le debit est fourni a chaque appel, ce qui permet de le
+ * modifier a chaud. La capacite est d'une seconde de debit, et au moins la
+ * capacite minimale : un message plus gros qu'une seconde de debit est
+ * retarde, jamais refuse indefiniment.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double minCapacity;
+
+    private double tokens = Double.NaN;
+
+    private long lastRefillNanos;
+
+    /**
+     * Seau d'une capacite minimale d'un jeton (un message).
+     */
+    public TokenBucket() {
+        this(1);
+    }
+
+    /**
+     * @param minCapacity Capacite minimale, au moins la taille du plus gros
+     *                    message admis pour un seau en octets
+     */
+    public TokenBucket(double minCapacity) {
+        this.minCapacity = minCapacity;
+    }
+
+    /**
+     * @param ratePerSecond Debit autorise, 0 ou moins pour ne pas limiter
+     * @return true si les jetons ont ete pris
+     */
+    public synchronized boolean tryAcquire(double permits, double ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            return true;
+        }
+        refill(ratePerSecond);
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Prend les jetons sans condition, le seau pouvant devenir negatif : les
+     * autres utilisateurs du seau attendent d'autant.
+     */
+    public synchronized void consume(double permits, double ratePerSecond) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        refill(ratePerSecond);
+        tokens -= permits;
+    }
+
+    /**
+     * Rend des jetons pris par {@link #tryAcquire}, dans la limite de la capacite.
+     */
+    public synchronized void refund(double permits, double ratePerSecond) {
+        if (ratePerSecond <= 0 || Double.isNaN(tokens)) {
+            return;
+        }
+        tokens = Math.min(capacity(ratePerSecond), tokens + permits);
+    }
+
+    private void refill(double ratePerSecond) {
+        long now = System.nanoTime();
+        double capacity = capacity(ratePerSecond);
+        if (Double.isNaN(tokens)) {
+            tokens = capacity;
+        } else {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * ratePerSecond / NANOS_PER_SECOND);
+        }
+        lastRefillNanos = now;
+    }
+
+    private double capacity(double ratePerSecond) {
+        return Math.max(ratePerSecond, minCapacity);
+    }
+}
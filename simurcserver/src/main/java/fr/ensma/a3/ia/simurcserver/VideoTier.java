@@ -0,0 +1,148 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Palier video : largeur maximale et qualite JPEG. Chaque image n'est encodee
+ * qu'une fois par palier, quel que soit le nombre de spectateurs. Utilise par
+ * un seul thread a la fois (voir {@link VideoTiering}).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class VideoTier {
+
+    private final String name;
+
+    private final int maxWidth;
+
+    private final float quality;
+
+    private final ImageWriter writer;
+
+    private final ImageWriteParam writeParam;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private volatile RelayMessage lastFrame;
+
+    private final AtomicLong encodedCount = new AtomicLong();
+
+    private final AtomicLong encodeNanos = new AtomicLong();
+
+    private volatile int lastSize;
+
+    public VideoTier(String name, int maxWidth, float quality) {
+        this.name = name;
+        this.maxWidth = maxWidth;
+        this.quality = quality;
+        this.writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        this.writeParam = writer.getDefaultWriteParam();
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionQuality(quality);
+    }
+
+    /**
+     * Parse "nom:largeur:qualite", par exemple "low:320:0.5".
+     */
+    static VideoTier parse(String definition) {
+        String[] parts = definition.trim().split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Palier invalide : " + definition);
+        }
+        return new VideoTier(parts[0], Integer.parseInt(parts[1]), Float.parseFloat(parts[2]));
+    }
+
+    /**
+     * Reduit et encode l'image decodee.
+     *
+     * @param receivedNanos Instant de reception de l'image d'origine, conserve pour la latence
+     */
+    RelayMessage encode(BufferedImage image, long receivedNanos) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage scaled = scale(image);
+        output.reset();
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(scaled, null, null), writeParam);
+        } finally {
+            writer.reset();
+        }
+        byte[] encoded = output.toByteArray();
+        RelayMessage message = new RelayMessage(ByteBuffer.wrap(encoded).asReadOnlyBuffer(), encoded.length,
+                receivedNanos);
+        lastFrame = message;
+        lastSize = encoded.length;
+        encodedCount.incrementAndGet();
+        encodeNanos.addAndGet(System.nanoTime() - start);
+        return message;
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        if (image.getWidth() <= maxWidth) {
+            return image;
+        }
+        int height = Math.max(1, image.getHeight() * maxWidth / image.getWidth());
+        BufferedImage scaled = new BufferedImage(maxWidth, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, maxWidth, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return Derniere image encodee, rejouee aux nouveaux spectateurs du palier
+     */
+    RelayMessage getLastFrame() {
+        return lastFrame;
+    }
+
+    void clearLastFrame() {
+        lastFrame = null;
+    }
+
+    public long getEncodedCount() {
+        return encodedCount.get();
+    }
+
+    /**
+     * @return Duree moyenne de reduction et d'encodage en millisecondes
+     */
+    public double getAverageEncodeMillis() {
+        long count = encodedCount.get();
+        return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(encodeNanos.get()) / count / 1000.0;
+    }
+
+    public int getLastSize() {
+        return lastSize;
+    }
+}
@@ -0,0 +1,215 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Paliers video d'un flux. Chaque image complete est decodee une fois puis
+ * encodee une fois par palier ayant des spectateurs, hors du thread de
+ * l'emetteur : les recepteurs du palier d'origine (pilote) ne subissent
+ * aucun delai. Si le transcodage prend du retard, seule la derniere image en
+ * attente est traitee. Les images ne sont assemblees que si un palier a des
+ * spectateurs, et ImageIO travaille en memoire, sans fichier de cache.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class VideoTiering {
+
+    public static final String FULL_TIER = "full";
+
+    private static final ExecutorService TRANSCODER = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+                Thread thread = new Thread(r, "relay-transcoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final List<VideoTier> tiers;
+
+    private final List<OutboundQueue> receivers;
+
+    private final AtomicReference<RelayMessage> pending = new AtomicReference<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Image cut-through en cours, manipulee par le seul thread de l'emetteur
+    private final ByteArrayOutputStream assembly = new ByteArrayOutputStream();
+
+    // Image en cours assemblee, decide au premier fragment
+    private boolean assembling;
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private final AtomicLong decodeErrorCount = new AtomicLong();
+
+    /**
+     * @param receivers Files des recepteurs du registre, partagees
+     */
+    VideoTiering(List<VideoTier> tiers, List<OutboundQueue> receivers) {
+        this.tiers = List.copyOf(tiers);
+        this.receivers = receivers;
+    }
+
+    /**
+     * @return Les paliers definis par "nom:largeur:qualite,..." ; liste vide si aucun
+     */
+    static List<VideoTier> parseTiers(String definition) {
+        List<VideoTier> parsed = new ArrayList<>();
+        if (definition != null) {
+            for (String part : definition.split(",")) {
+                if (!part.isBlank()) {
+                    try {
+                        parsed.add(VideoTier.parse(part));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Palier video ignore : " + part);
+                    }
+                }
+            }
+        }
+        return parsed;
+    }
+
+    VideoTier getTier(String name) {
+        for (VideoTier tier : tiers) {
+            if (tier.getName().equals(name)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    public List<VideoTier> getTiers() {
+        return tiers;
+    }
+
+    /**
+     * Recoit un message publie sur le flux (image complete ou fragment).
+     */
+    void onPublished(RelayMessage message) {
+        FrameFragment fragment = message.getFragment();
+        if (fragment != null) {
+            if (fragment.isFirst()) {
+                // Sans spectateur en palier reduit, l'image n'est pas copiee
+                assembly.reset();
+                assembling = hasTierReceivers();
+            }
+            if (!assembling) {
+                return;
+            }
+            if (fragment.isTerminator()) {
+                // Image interrompue par le relais : rien a decoder
+                assembling = false;
+                assembly.reset();
+                return;
+            }
+            ByteBuffer data = fragment.getData().duplicate();
+            byte[] chunk = new byte[data.remaining()];
+            data.get(chunk);
+            assembly.write(chunk, 0, chunk.length);
+            if (!fragment.isLast()) {
+                return;
+            }
+            assembling = false;
+            byte[] frame = assembly.toByteArray();
+            assembly.reset();
+            message = new RelayMessage(ByteBuffer.wrap(frame).asReadOnlyBuffer(), frame.length,
+                    message.getReceivedNanos());
+        } else if (!(message.getPayload() instanceof ByteBuffer) || !hasTierReceivers()) {
+            return;
+        }
+
+        if (pending.getAndSet(message) != null) {
+            skippedCount.incrementAndGet();
+        }
+        if (running.compareAndSet(false, true)) {
+            TRANSCODER.execute(this::drain);
+        }
+    }
+
+    void clearLastFrames() {
+        tiers.forEach(VideoTier::clearLastFrame);
+    }
+
+    private void drain() {
+        do {
+            RelayMessage frame;
+            while ((frame = pending.getAndSet(null)) != null) {
+                transcode(frame);
+            }
+            running.set(false);
+        } while (pending.get() != null && running.compareAndSet(false, true));
+    }
+
+    private void transcode(RelayMessage frame) {
+        try {
+            BufferedImage image = null;
+            for (VideoTier tier : tiers) {
+                if (!hasReceivers(tier.getName())) {
+                    continue;
+                }
+                if (image == null) {
+                    ByteBuffer data = ((ByteBuffer) frame.getPayload()).duplicate();
+                    byte[] bytes = new byte[data.remaining()];
+                    data.get(bytes);
+                    // Cache en memoire : ImageIO cree sinon un fichier temporaire par image
+                    image = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes)));
+                    if (image == null) {
+                        decodeErrorCount.incrementAndGet();
+                        return;
+                    }
+                }
+                RelayMessage encoded = tier.encode(image, frame.getReceivedNanos());
+                for (OutboundQueue q : receivers) {
+                    if (tier.getName().equals(q.getTier()) && q.isOpen()) {
+                        q.offer(encoded);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            decodeErrorCount.incrementAndGet();
+            System.err.println("Erreur de transcodage : " + e.getMessage());
+        }
+    }
+
+    private boolean hasTierReceivers() {
+        for (OutboundQueue q : receivers) {
+            if (q.getTier() != null && q.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasReceivers(String tier) {
+        for (OutboundQueue q : receivers) {
+            if (tier.equals(q.getTier()) && q.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Images non transcodees car une plus recente est arrivee entre-temps
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getDecodeErrorCount() {
+        return decodeErrorCount.get();
+    }
+}
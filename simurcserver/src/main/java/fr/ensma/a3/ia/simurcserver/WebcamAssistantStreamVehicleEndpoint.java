@@ -0,0 +1,60 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/webcamassistantstream/{vehicle}/{mode}")
+public class WebcamAssistantStreamVehicleEndpoint {
+
+    private SessionRegistry<String> hub;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("vehicle") String vehicle, @PathParam("mode") String mode)
+            throws IOException {
+        System.out.println("WebcamAssistantStreamVehicleEndpoint.onOpen() " + vehicle);
+
+        if (!RelayChannel.isValidVehicle(vehicle)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Vehicule invalide"));
+            return;
+        }
+        hub = RelayChannels.WEBCAM_ASSISTANT_STREAM.registry(vehicle);
+        if (hub == null) {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Trop de vehicules"));
+            return;
+        }
+        hub.register(session, mode);
+    }
+
+    @OnMessage
+    public void onMessage(Session session, ByteBuffer message, boolean last) {
+        if (hub != null) {
+            hub.broadcastBinaryPart(session, message, last);
+        }
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        if (hub != null) {
+            hub.onPong(session, pong.getApplicationData());
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (hub != null) {
+            hub.unregister(session);
+        }
+    }
+}
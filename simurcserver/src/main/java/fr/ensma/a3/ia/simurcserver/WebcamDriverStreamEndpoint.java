@@ -1,7 +1,11 @@
 package fr.ensma.a3.ia.simurcserver;
 
+import java.nio.ByteBuffer;
+
+import jakarta.websocket.OnClose;
 import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
+import jakarta.websocket.PongMessage;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
@@ -12,7 +16,8 @@ import jakarta.websocket.server.ServerEndpoint;
 @ServerEndpoint(value = "/webcamdriverstream/{mode}")
 public class WebcamDriverStreamEndpoint {
 
-    private static final SessionRegistry<String> hub = new SessionRegistry<>();
+    private static final SessionRegistry<String> hub = RelayChannels.WEBCAM_DRIVER_STREAM
+            .registry(RelayChannel.DEFAULT_VEHICLE);
 
     @OnOpen
     public void onOpen(Session session, @PathParam("mode") String mode) {
@@ -22,7 +27,17 @@ public class WebcamDriverStreamEndpoint {
     }
 
     @OnMessage
-    public void onMessage(Session session, byte[] message) {
-        hub.broadcastBinary(session, message);
+    public void onMessage(Session session, ByteBuffer message, boolean last) {
+        hub.broadcastBinaryPart(session, message, last);
+    }
+
+    @OnMessage
+    public void onPong(Session session, PongMessage pong) {
+        hub.onPong(session, pong.getApplicationData());
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        hub.unregister(session);
     }
 }
@@ -1,9 +1,5 @@
 package fr.ensma.a3.ia.simurcserver;
 
-import java.io.IOException;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
@@ -11,28 +7,28 @@ import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerEndpoint;
 
 /**
+ * Adresse historique : tous les pairs partagent le salon par defaut et sont
+ * identifies par leur identifiant de session.
+ *
  * @author Mickael BARON (mickael.baron@ensma.fr)
  */
 @ServerEndpoint(value = "/signaling")
 public class WebrtcSignalingEndpoint {
-    private static List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    private SignalingRoom room;
 
     @OnOpen
     public void onOpen(Session session) {
-        sessions.add(session);
+        room = SignalingRooms.join(SignalingRooms.DEFAULT_ROOM, session.getId(), session);
     }
 
     @OnMessage
-    public void onMessage(String message, Session session) throws IOException {
-        for (Session current : sessions) {
-            if (current.isOpen() && !session.getId().equals(current.getId())) {
-                current.getBasicRemote().sendText(message);
-            }
-        }
+    public void onMessage(String message, Session session) {
+        SignalingRouter.route(room, session.getId(), message);
     }
 
     @OnClose
     public void onClose(Session session) {
-        sessions.remove(session);
+        SignalingRooms.leave(SignalingRooms.DEFAULT_ROOM, session.getId(), session);
     }
 }
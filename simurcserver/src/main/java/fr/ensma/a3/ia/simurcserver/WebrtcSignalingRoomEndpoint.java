@@ -0,0 +1,50 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import java.io.IOException;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * Signalisation par salon (un vehicule et ses spectateurs) : un message
+ * portant "to" n'est remis qu'a ce pair, les autres vont au seul salon.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@ServerEndpoint(value = "/signaling/{room}/{peer}")
+public class WebrtcSignalingRoomEndpoint {
+
+    private SignalingRoom room;
+
+    private String peer;
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("room") String roomName, @PathParam("peer") String peerId)
+            throws IOException {
+        if (!RelayChannel.isValidVehicle(roomName) || !RelayChannel.isValidVehicle(peerId)) {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "Salon ou pair invalide"));
+            return;
+        }
+        peer = peerId;
+        room = SignalingRooms.join(roomName, peerId, session);
+    }
+
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        if (room != null) {
+            SignalingRouter.route(room, peer, message);
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        if (room != null) {
+            SignalingRooms.leave(room.getName(), peer, session);
+        }
+    }
+}
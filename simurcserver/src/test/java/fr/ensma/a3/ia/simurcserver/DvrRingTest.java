@@ -0,0 +1,78 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class DvrRingTest {
+
+    private static final long MAX_AGE_NANOS = 60_000_000_000L;
+
+    private static RelayMessage fragment(long frame, int size, boolean first, boolean last, long nanos) {
+        ByteBuffer data = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            data.put(i, (byte) frame);
+        }
+        return new RelayMessage(new FrameFragment(data.asReadOnlyBuffer(), frame, first, last), size, nanos);
+    }
+
+    @Test
+    public void frame() {
+        DvrRing ring = new DvrRing(1000, 16, MAX_AGE_NANOS);
+        ring.append(fragment(1, 100, true, false, 1));
+        ring.append(fragment(1, 200, false, false, 2));
+        ring.append(fragment(1, 50, false, true, 3));
+
+        ByteBuffer target = ByteBuffer.allocate(1000);
+        assertTrue(ring.read(0, target).isFirst());
+        assertEquals(200, ring.read(1, target).length);
+        DvrRing.Entry last = ring.read(2, target);
+        assertTrue(last.isLast());
+        assertEquals(350, target.position());
+    }
+
+    @Test
+    public void oversizeFragmentDropsFrame() {
+        DvrRing ring = new DvrRing(1000, 16, MAX_AGE_NANOS);
+        ring.append(fragment(1, 100, true, false, 1));
+        // Plus de la moitie de l'anneau : ni ce fragment ni la suite de l'image
+        ring.append(fragment(1, 600, false, false, 2));
+        ring.append(fragment(1, 100, false, true, 3));
+        ring.append(fragment(2, 100, true, true, 4));
+
+        assertEquals(2, ring.getRecordCount());
+        ByteBuffer target = ByteBuffer.allocate(1000);
+        DvrRing.Entry first = ring.read(0, target);
+        assertTrue(first.isFirst() && !first.isLast());
+        DvrRing.Entry next = ring.read(1, target);
+        assertTrue(next.isFirst() && next.isLast());
+        assertEquals(2, target.get(150));
+    }
+
+    @Test
+    public void oversizeFirstFragment() {
+        DvrRing ring = new DvrRing(1000, 16, MAX_AGE_NANOS);
+        ring.append(fragment(1, 600, true, false, 1));
+        ring.append(fragment(1, 100, false, true, 2));
+        ring.append(fragment(2, 100, true, true, 3));
+
+        assertEquals(1, ring.getRecordCount());
+        assertTrue(ring.read(0, ByteBuffer.allocate(100)).isFirst());
+    }
+
+    @Test
+    public void readerBufferTooSmall() {
+        DvrRing ring = new DvrRing(1000, 16, MAX_AGE_NANOS);
+        ring.append(fragment(1, 300, true, true, 1));
+
+        ByteBuffer target = ByteBuffer.allocate(200);
+        assertEquals(-1, ring.read(0, target).length);
+        assertEquals(0, target.position());
+    }
+}
@@ -0,0 +1,97 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class OutboundQueueTest {
+
+    // Session ouverte dont les envois asynchrones ne se terminent jamais
+    private static Session session() {
+        RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                OutboundQueueTest.class.getClassLoader(), new Class<?>[] { RemoteEndpoint.Async.class },
+                (proxy, method, args) -> null);
+        return (Session) Proxy.newProxyInstance(OutboundQueueTest.class.getClassLoader(),
+                new Class<?>[] { Session.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "getAsyncRemote" -> async;
+                    case "isOpen" -> true;
+                    case "getId" -> "test";
+                    default -> null;
+                });
+    }
+
+    private static OutboundQueue queue() {
+        return new OutboundQueue(session(), 1024, EOverflowPolicy.DROP_OLDEST, EDeliveryMode.QUEUED,
+                new RelayStats());
+    }
+
+    private static RelayMessage message(long receivedNanos) {
+        return new RelayMessage("{}", 2, receivedNanos);
+    }
+
+    @Test
+    public void maxRate() {
+        OutboundQueue queue = queue();
+        queue.setMaxRate(10);
+
+        assertTrue(queue.offer(message(0)));
+        assertFalse(queue.offer(message(50_000_000L)));
+        assertTrue(queue.offer(message(100_000_000L)));
+        assertFalse(queue.offer(message(150_000_000L)));
+        assertEquals(2, queue.getDecimatedCount());
+    }
+
+    @Test
+    public void maxRateConcurrentProducers() throws Exception {
+        // Plusieurs producteurs proposent des messages du meme instant : un seul passe
+        int producers = 16;
+        int rounds = 200;
+        OutboundQueue queue = queue();
+        queue.setMaxRate(10);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            for (int round = 0; round < rounds; round++) {
+                long receivedNanos = round * 100_000_000L;
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(producers);
+                for (int i = 0; i < producers; i++) {
+                    executor.execute(() -> {
+                        try {
+                            start.await();
+                            if (queue.offer(message(receivedNanos))) {
+                                accepted.incrementAndGet();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                start.countDown();
+                assertTrue(done.await(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(rounds, accepted.get());
+        assertEquals((long) rounds * (producers - 1), queue.getDecimatedCount());
+    }
+}
@@ -0,0 +1,71 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class RelayChannelTest {
+
+    private static RelayChannel channel(String name, int maxVehicles) {
+        System.setProperty("simurcserver." + name + ".registry.maxVehicles", Integer.toString(maxVehicles));
+        return new RelayChannel(name, EDeliveryMode.QUEUED);
+    }
+
+    @Test
+    public void maxVehicles() {
+        RelayChannel channel = channel("captest", 2);
+        SessionRegistry<String> first = channel.registry("car1");
+
+        assertNotNull(first);
+        assertNotNull(channel.registry("car2"));
+        assertNull(channel.registry("car3"));
+        // Vehicule deja connu et vehicule par defaut : toujours admis
+        assertSame(first, channel.registry("car1"));
+        assertNotNull(channel.registry(RelayChannel.DEFAULT_VEHICLE));
+        assertNull(channel.find("car3"));
+    }
+
+    @Test
+    public void maxVehiclesConcurrent() throws Exception {
+        int max = 8;
+        RelayChannel channel = channel("concurrenttest", max);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SessionRegistry<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                String vehicle = "car" + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return channel.registry(vehicle);
+                }));
+            }
+            start.countDown();
+            int admitted = 0;
+            for (Future<SessionRegistry<String>> result : results) {
+                if (result.get(10, TimeUnit.SECONDS) != null) {
+                    admitted++;
+                }
+            }
+
+            assertEquals(max, admitted);
+            assertEquals(max, channel.getRegistries().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
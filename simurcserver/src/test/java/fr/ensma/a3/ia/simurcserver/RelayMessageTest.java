@@ -0,0 +1,27 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class RelayMessageTest {
+
+    private static void assertUtf8Size(String text) {
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, RelayMessage.sizeOf(text));
+    }
+
+    @Test
+    public void sizeOf() {
+        assertUtf8Size("");
+        assertUtf8Size("{\"streer\":12}");
+        // 2, 3 et 4 octets par caractere
+        assertUtf8Size("{\"pilote\":\"Hélène\"}");
+        assertUtf8Size("vitesse : 30 km⋅h⁻¹ €");
+        assertUtf8Size("voiture 🏎️");
+    }
+}
@@ -0,0 +1,90 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SensorFrameViewTest {
+
+    /**
+     * Trame v2 ecrite par fr.ensma.a3.ia.serviceapi.SensorFrame, identique a
+     * celle de SensorFrameTest (serviceapi) : toute evolution du format doit
+     * modifier les deux tests ensemble.
+     */
+    static final String REFERENCE_FRAME = "A502030000000007" + "00000000000003E8" + "00000000000003DE"
+            + "3FC00000C0100000" + "411C00003F000000" + "BE00000040400000" + "41CC0000422A0000"
+            + "00000000000003E3" + "000000000001E240";
+
+    private static ByteBuffer referenceFrame() {
+        return ByteBuffer.wrap(HexFormat.of().parseHex(REFERENCE_FRAME));
+    }
+
+    @Test
+    public void read() {
+        SensorFrameView frame = SensorFrameView.of(referenceFrame());
+
+        assertEquals(SensorFrameView.LENGTH_SEQUENCE, referenceFrame().remaining());
+        assertTrue(frame.hasSequence());
+        assertEquals(7, frame.getSequence());
+        assertEquals(123456, frame.getSendTimeMicros());
+        assertEquals(1000, frame.getTimestampMs());
+        assertTrue(frame.hasMpuData());
+        assertEquals(990, frame.getMpuTimestampMs());
+        assertEquals(1.5f, frame.get(ETelemetryField.ACCEL_X));
+        assertEquals(-2.25f, frame.get(ETelemetryField.ACCEL_Y));
+        assertEquals(9.75f, frame.get(ETelemetryField.ACCEL_Z));
+        assertEquals(0.5f, frame.get(ETelemetryField.GYRO_X));
+        assertEquals(-0.125f, frame.get(ETelemetryField.GYRO_Y));
+        assertEquals(3.0f, frame.get(ETelemetryField.GYRO_Z));
+        assertEquals(25.5f, frame.get(ETelemetryField.TEMPERATURE));
+        assertTrue(frame.hasUrmData());
+        assertEquals(995, frame.getUrmTimestampMs());
+        assertEquals(42.5f, frame.get(ETelemetryField.DISTANCE));
+    }
+
+    @Test
+    public void readAtOffset() {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + SensorFrameView.LENGTH_SEQUENCE);
+        buffer.position(5).put(referenceFrame()).position(5);
+        SensorFrameView frame = SensorFrameView.of(buffer);
+
+        assertEquals(7, frame.getSequence());
+        assertEquals(42.5f, frame.get(ETelemetryField.DISTANCE));
+    }
+
+    @Test
+    public void version2ReadAsVersion1() {
+        SensorFrameView frame = SensorFrameView.of(referenceFrame().limit(SensorFrameView.LENGTH));
+
+        assertFalse(frame.hasSequence());
+        assertEquals(0, frame.getSequence());
+        assertEquals(0, frame.getSendTimeMicros());
+        assertEquals(1000, frame.getTimestampMs());
+    }
+
+    @Test
+    public void missingData() {
+        ByteBuffer buffer = referenceFrame();
+        buffer.put(SensorFrameView.FLAGS_OFFSET, (byte) 0);
+        SensorFrameView frame = SensorFrameView.of(buffer);
+
+        assertTrue(Float.isNaN(frame.get(ETelemetryField.ACCEL_X)));
+        assertTrue(Float.isNaN(frame.get(ETelemetryField.DISTANCE)));
+    }
+
+    @Test
+    public void notAFrame() {
+        assertNull(SensorFrameView.of(referenceFrame().limit(SensorFrameView.LENGTH - 1)));
+        assertNull(SensorFrameView.of(ByteBuffer.allocate(SensorFrameView.LENGTH)));
+        assertNull(SensorFrameView.of(REFERENCE_FRAME));
+    }
+}
@@ -0,0 +1,121 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SessionJournalTest {
+
+    private static final int COUNT = 400;
+
+    private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long INDEX_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Petits segments : la session en compte plusieurs
+    private static final int SEGMENT_SIZE = 4096;
+
+    // Ecrit COUNT messages "message-NNN" espaces de 10 ms
+    private static Path writeSession() throws IOException {
+        Path dir = Files.createTempDirectory("journal").resolve("session");
+        SessionJournal journal = new SessionJournal(dir, SEGMENT_SIZE, INDEX_INTERVAL_NANOS, COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            String payload = String.format("message-%03d", i);
+            journal.append("sensorflow/default",
+                    new RelayMessage(payload, payload.length(), journal.getStartNanos() + i * STEP_NANOS));
+        }
+        journal.close();
+        assertEquals(COUNT, journal.getWrittenCount());
+        return dir;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir.getParent())) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static List<Path> files(Path dir, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    @Test
+    public void index() throws IOException {
+        Path dir = writeSession();
+        try {
+            List<Path> segments = files(dir, JournalFormat.SEGMENT_SUFFIX);
+            List<Path> indexes = files(dir, JournalFormat.INDEX_SUFFIX);
+            assertTrue(segments.size() > 1);
+            assertEquals(segments.size(), indexes.size());
+
+            for (int i = 0; i < segments.size(); i++) {
+                ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(segments.get(i)));
+                ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexes.get(i)));
+                assertTrue(index.remaining() >= JournalFormat.INDEX_ENTRY_SIZE);
+                assertEquals(0, index.remaining() % JournalFormat.INDEX_ENTRY_SIZE);
+
+                long previous = Long.MIN_VALUE;
+                while (index.hasRemaining()) {
+                    long timestamp = index.getLong();
+                    int position = index.getInt();
+                    // L'entree designe un enregistrement de ce meme instant
+                    assertEquals(timestamp, segment.getLong(position + 4));
+                    assertEquals(0, timestamp % STEP_NANOS);
+                    if (previous != Long.MIN_VALUE) {
+                        assertTrue(timestamp - previous >= INDEX_INTERVAL_NANOS);
+                        assertTrue(timestamp - previous < INDEX_INTERVAL_NANOS + STEP_NANOS);
+                    }
+                    previous = timestamp;
+                }
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void seek() throws IOException {
+        Path dir = writeSession();
+        try (JournalReader reader = new JournalReader(dir)) {
+            // Instants exacts, entre deux messages, en tete et au-dela de la fin
+            long[] targets = { 0, STEP_NANOS / 2, 95 * STEP_NANOS, 137 * STEP_NANOS + 1, 250 * STEP_NANOS,
+                    (COUNT - 1) * STEP_NANOS, 42 * STEP_NANOS };
+            for (long target : targets) {
+                reader.seek(target);
+                int expected = (int) ((target + STEP_NANOS - 1) / STEP_NANOS);
+                JournalRecord record = reader.next();
+                assertEquals(expected * STEP_NANOS, record.getTimestampNanos());
+                assertEquals("sensorflow/default", record.getChannelKey());
+                assertEquals(String.format("message-%03d", expected),
+                        StandardCharsets.UTF_8.decode(record.getContent()).toString());
+                if (expected + 1 < COUNT) {
+                    assertEquals((expected + 1) * STEP_NANOS, reader.next().getTimestampNanos());
+                }
+            }
+
+            reader.seek(COUNT * STEP_NANOS);
+            assertNull(reader.next());
+        } finally {
+            delete(dir);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class TelemetryChunkTest {
+
+    private static final ETelemetryField[] FIELDS = ETelemetryField.values();
+
+    private static float[] values(float value) {
+        float[] values = new float[FIELDS.length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    // Ecrit les points, relit le bloc serialise et compare bit a bit
+    private static TelemetryChunk.Reader roundTrip(long[] timestamps, float[][] values) throws IOException {
+        TelemetryChunk chunk = new TelemetryChunk("test", 0);
+        for (int i = 0; i < timestamps.length; i++) {
+            chunk.append(timestamps[i], values[i]);
+        }
+        TelemetryChunk.Reader reader = new TelemetryChunk.Reader(chunk.serialize());
+
+        assertEquals(timestamps.length, reader.getCount());
+        assertArrayEquals(timestamps, reader.readTimestamps());
+        for (ETelemetryField field : FIELDS) {
+            float[] read = reader.readField(field);
+            for (int i = 0; i < timestamps.length; i++) {
+                assertEquals(Float.floatToIntBits(values[i][field.ordinal()]), Float.floatToIntBits(read[i]));
+            }
+        }
+        return reader;
+    }
+
+    @Test
+    public void regularStream() throws IOException {
+        int count = 1000;
+        long[] timestamps = new long[count];
+        float[][] values = new float[count][];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = 1_700_000_000_000L + 20L * i;
+            values[i] = values(21.5f);
+            values[i][ETelemetryField.ACCEL_Z.ordinal()] = 9.81f + (i % 3) * 0.01f;
+        }
+        TelemetryChunk.Reader reader = roundTrip(timestamps, values);
+
+        assertEquals(timestamps[0], reader.getMinTimestamp());
+        assertEquals(timestamps[count - 1], reader.getMaxTimestamp());
+    }
+
+    @Test
+    public void compression() throws IOException {
+        TelemetryChunk chunk = new TelemetryChunk("test", 0);
+        for (int i = 0; i < 1000; i++) {
+            chunk.append(20L * i, values(1f));
+        }
+
+        // Pas constant et valeurs identiques : environ un bit par point et par colonne
+        assertTrue(chunk.serialize().remaining() < 1000 * (FIELDS.length + 1) / 8 + 200);
+    }
+
+    @Test
+    public void irregularDeltas() throws IOException {
+        // Delta-de-delta nuls, negatifs, puis a la limite de chaque encodage
+        // (7, 9, 12 bits) et au-dela (64 bits)
+        long[] deltas = { 20, 20, 19, 21, 20 + 63, 20 - 64, 20 + 64, 20 + 255, 20 - 256, 20 + 256, 20 + 2047,
+                20 - 2048, 20 + 2048, 3_600_000, 0, 0, 1, Integer.MAX_VALUE * 4L, 20 };
+        long[] timestamps = new long[deltas.length + 1];
+        float[][] values = new float[timestamps.length][];
+        timestamps[0] = 1_700_000_000_000L;
+        values[0] = values(0f);
+        for (int i = 0; i < deltas.length; i++) {
+            timestamps[i + 1] = timestamps[i] + deltas[i];
+            values[i + 1] = values(i);
+        }
+        roundTrip(timestamps, values);
+    }
+
+    @Test
+    public void backwardsTimestamps() throws IOException {
+        long[] timestamps = { 1000, 980, 2000, 1500 };
+        float[][] values = { values(1f), values(2f), values(3f), values(4f) };
+        TelemetryChunk.Reader reader = roundTrip(timestamps, values);
+
+        assertEquals(980, reader.getMinTimestamp());
+        assertEquals(2000, reader.getMaxTimestamp());
+    }
+
+    @Test
+    public void missingValues() throws IOException {
+        float[][] values = { values(Float.NaN), values(1f), values(Float.NaN), values(Float.NaN), values(-0f),
+                values(0f), values(Float.POSITIVE_INFINITY), values(Float.MIN_VALUE), values(-Float.MAX_VALUE) };
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = 20L * i;
+        }
+        roundTrip(timestamps, values);
+    }
+
+    @Test
+    public void randomBits() throws IOException {
+        // Motifs quelconques : toutes les fenetres de zeros de tete et de queue
+        Random random = new Random(42);
+        int count = 2000;
+        long[] timestamps = new long[count];
+        float[][] values = new float[count][FIELDS.length];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = (i == 0 ? 0 : timestamps[i - 1]) + random.nextInt(100);
+            for (int field = 0; field < FIELDS.length; field++) {
+                int bits = random.nextInt() >>> random.nextInt(32) << random.nextInt(32);
+                values[i][field] = random.nextBoolean() ? Float.intBitsToFloat(bits)
+                        : (i == 0 ? 0f : values[i - 1][field]);
+            }
+        }
+        roundTrip(timestamps, values);
+    }
+
+    @Test
+    public void singlePoint() throws IOException {
+        float[] point = values(3.25f);
+        point[ETelemetryField.DISTANCE.ordinal()] = Float.NaN;
+        TelemetryChunk.Reader reader = roundTrip(new long[] { 42 }, new float[][] { point });
+
+        assertEquals(42, reader.getMinTimestamp());
+        assertEquals(42, reader.getMaxTimestamp());
+    }
+
+    @Test
+    public void empty() throws IOException {
+        TelemetryChunk.Reader reader = new TelemetryChunk.Reader(new TelemetryChunk("test", 0).serialize());
+
+        assertEquals(0, reader.getCount());
+        assertEquals(0, reader.readTimestamps().length);
+        assertEquals(0, reader.readField(ETelemetryField.ACCEL_X).length);
+    }
+
+    @Test
+    public void missingColumn() throws IOException {
+        TelemetryChunk chunk = new TelemetryChunk("test", 0);
+        chunk.append(0, values(1f));
+        chunk.append(20, values(2f));
+        ByteBuffer data = chunk.serialize();
+        // Bloc ecrit avant l'ajout de la derniere grandeur
+        data.put(26, (byte) FIELDS.length);
+        TelemetryChunk.Reader reader = new TelemetryChunk.Reader(data);
+
+        assertEquals(2f, reader.readField(ETelemetryField.ACCEL_X)[1]);
+        assertTrue(Float.isNaN(reader.readField(FIELDS[FIELDS.length - 1])[1]));
+    }
+
+    @Test
+    public void invalidHeader() {
+        ByteBuffer data = new TelemetryChunk("test", 0).serialize();
+        data.putInt(0, 0);
+
+        assertThrows(IOException.class, () -> new TelemetryChunk.Reader(data));
+        assertThrows(IOException.class, () -> new TelemetryChunk.Reader(ByteBuffer.allocate(4)));
+        ByteBuffer future = new TelemetryChunk("test", 0).serialize();
+        future.putShort(4, (short) (TelemetryChunk.VERSION + 1));
+        assertThrows(IOException.class, () -> new TelemetryChunk.Reader(future));
+    }
+}
@@ -0,0 +1,66 @@
+package fr.ensma.a3.ia.simurcserver;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void unlimited() {
+        TokenBucket bucket = new TokenBucket();
+
+        assertTrue(bucket.tryAcquire(1e12, 0));
+    }
+
+    @Test
+    public void oneSecondOfRate() {
+        TokenBucket bucket = new TokenBucket();
+
+        assertTrue(bucket.tryAcquire(100, 100));
+        assertFalse(bucket.tryAcquire(1, 100));
+    }
+
+    @Test
+    public void messageLargerThanRate() {
+        // Image de 300 Ko sous une limite de 256 Ko/s
+        TokenBucket bucket = new TokenBucket(1 << 20);
+
+        assertTrue(bucket.tryAcquire(300_000, 256_000));
+        assertTrue(bucket.tryAcquire(700_000, 256_000));
+        // Seau vide : l'image suivante attend ses jetons
+        assertFalse(bucket.tryAcquire(300_000, 256_000));
+    }
+
+    @Test
+    public void messageLargerThanCapacity() {
+        TokenBucket bucket = new TokenBucket();
+
+        assertFalse(bucket.tryAcquire(300_000, 256_000));
+    }
+
+    @Test
+    public void fractionalMessageRate() {
+        // Moins d'un message par seconde : la capacite reste d'un message
+        TokenBucket bucket = new TokenBucket();
+
+        assertTrue(bucket.tryAcquire(1, 0.5));
+        assertFalse(bucket.tryAcquire(1, 0.5));
+    }
+
+    @Test
+    public void refund() {
+        TokenBucket bucket = new TokenBucket();
+        assertTrue(bucket.tryAcquire(100, 100));
+        bucket.refund(100, 100);
+        // Le remboursement ne depasse pas la capacite
+        bucket.refund(100, 100);
+
+        assertTrue(bucket.tryAcquire(100, 100));
+        assertFalse(bucket.tryAcquire(1, 100));
+    }
+}
@@ -0,0 +1,69 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import fr.ensma.a3.ia.simurcserver.LatencyHistogram;
+
+/**
+ * Compteurs d'un scenario, partages par tous les emetteurs et recepteurs
+ * synthetiques d'un meme type de flux.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class LoadCounters {
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder receivedBytes = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public void onSent() {
+        sent.increment();
+    }
+
+    /**
+     * Envoi precedent pas encore termine : l'emetteur ne tient pas la cadence.
+     */
+    public void onSkipped() {
+        skipped.increment();
+    }
+
+    public void onReceived(int bytes, long sentNanos) {
+        received.increment();
+        receivedBytes.add(bytes);
+        latency.record(System.nanoTime() - sentNanos);
+    }
+
+    public void reset() {
+        sent.reset();
+        skipped.reset();
+        received.reset();
+        receivedBytes.reset();
+        latency.reset();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,81 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.util.Locale;
+
+import fr.ensma.a3.ia.simurcserver.LatencyHistogram;
+
+/**
+ * Resultat d'un scenario, affiche sous forme d'une ligne de tableau par type
+ * de flux.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class LoadReport {
+
+    private static final String ROW_FORMAT = "%-10s %-6s %4d %5d %7.0f %10.0f %10.0f %8.2f %7.1f%% %8.2f %8.2f %8.2f %8.2f %6d %6.2f %6s %8.1f%n";
+
+    private final String name;
+
+    private final int senders;
+
+    private final int receiversPerSender;
+
+    private final double jsonRate;
+
+    private final double frameRate;
+
+    private final LoadCounters jsonCounters;
+
+    private final LoadCounters binaryCounters;
+
+    private final ProcessSample start;
+
+    private final ProcessSample end;
+
+    public LoadReport(String name, int senders, int receiversPerSender, double jsonRate, double frameRate,
+            LoadCounters jsonCounters, LoadCounters binaryCounters, ProcessSample start, ProcessSample end) {
+        this.name = name;
+        this.senders = senders;
+        this.receiversPerSender = receiversPerSender;
+        this.jsonRate = jsonRate;
+        this.frameRate = frameRate;
+        this.jsonCounters = jsonCounters;
+        this.binaryCounters = binaryCounters;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static void printHeader() {
+        System.out.printf(Locale.ROOT, "%-10s %-6s %4s %5s %7s %10s %10s %8s %8s %8s %8s %8s %8s %6s %6s %6s %8s%n",
+                "scenario", "flux", "N", "M", "Hz", "envoi/s", "recu/s", "Mo/s", "livre", "p50 ms", "p99 ms",
+                "p999 ms", "max ms", "saute", "cpu", "srv", "alloc");
+    }
+
+    public void print() {
+        if (jsonRate > 0) {
+            printRow("json", jsonRate, jsonCounters);
+        }
+        if (frameRate > 0) {
+            printRow("binaire", frameRate, binaryCounters);
+        }
+    }
+
+    private void printRow(String kind, double rate, LoadCounters counters) {
+        double seconds = end.secondsSince(start);
+        double expected = (double) counters.getSent() * receiversPerSender;
+        double delivered = expected > 0 ? 100.0 * counters.getReceived() / expected : 0;
+        double serverCpu = end.serverCpuCoresSince(start);
+        LatencyHistogram latency = counters.getLatency();
+        System.out.printf(Locale.ROOT, ROW_FORMAT, name, kind, senders, receiversPerSender, rate,
+                counters.getSent() / seconds, counters.getReceived() / seconds,
+                counters.getReceivedBytes() / seconds / (1024 * 1024), delivered,
+                millis(latency.getValueAtQuantile(0.50)), millis(latency.getValueAtQuantile(0.99)),
+                millis(latency.getValueAtQuantile(0.999)), millis(latency.getMax()), counters.getSkipped(),
+                end.cpuCoresSince(start), serverCpu < 0 ? "-" : String.format(Locale.ROOT, "%.2f", serverCpu),
+                end.allocationMbPerSecondSince(start));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,119 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Une configuration de charge : N vehicules synthetiques publiant des
+ * capteurs JSON et/ou des images binaires, M recepteurs par flux. Chaque
+ * scenario utilise ses propres identifiants de vehicule.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class LoadScenario {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadScenario.class);
+
+    private final String baseUrl;
+
+    private final String name;
+
+    private final int senders;
+
+    private final int receiversPerSender;
+
+    private final double jsonRate;
+
+    private final int jsonSize;
+
+    private final double frameRate;
+
+    private final int frameSize;
+
+    private final LoadCounters jsonCounters = new LoadCounters();
+
+    private final LoadCounters binaryCounters = new LoadCounters();
+
+    /**
+     * @param jsonRate  Cadence JSON (Hz), 0 pour ne pas envoyer de capteurs
+     * @param frameRate Cadence des images (images/s), 0 pour ne pas envoyer d'images
+     */
+    public LoadScenario(String baseUrl, String name, int senders, int receiversPerSender, double jsonRate,
+            int jsonSize, double frameRate, int frameSize) {
+        this.baseUrl = baseUrl;
+        this.name = name;
+        this.senders = senders;
+        this.receiversPerSender = receiversPerSender;
+        this.jsonRate = jsonRate;
+        this.jsonSize = jsonSize;
+        this.frameRate = frameRate;
+        this.frameSize = frameSize;
+    }
+
+    public LoadReport run(ClientManager client, long warmupMs, long durationMs, long serverPid) throws Exception {
+        List<SyntheticSender> syntheticSenders = new ArrayList<>();
+        List<SyntheticReceiver> syntheticReceivers = new ArrayList<>();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+                    Thread thread = new Thread(r, "load-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        try {
+            logger.info("Scenario {} : connexion de {} vehicules et {} recepteurs par flux", name, senders,
+                    receiversPerSender);
+            for (int i = 0; i < senders; i++) {
+                String vehicle = name + "-" + i;
+                if (jsonRate > 0) {
+                    connectStream(client, "sensorflow", vehicle,
+                            new SyntheticSender(jsonCounters, false, jsonSize, jsonRate), jsonCounters,
+                            syntheticSenders, syntheticReceivers);
+                }
+                if (frameRate > 0) {
+                    connectStream(client, "webcamdriverstream", vehicle,
+                            new SyntheticSender(binaryCounters, true, frameSize, frameRate), binaryCounters,
+                            syntheticSenders, syntheticReceivers);
+                }
+            }
+
+            for (SyntheticSender sender : syntheticSenders) {
+                sender.start(scheduler);
+            }
+
+            Thread.sleep(warmupMs);
+            jsonCounters.reset();
+            binaryCounters.reset();
+            ProcessSample start = ProcessSample.take(serverPid);
+            Thread.sleep(durationMs);
+            ProcessSample end = ProcessSample.take(serverPid);
+
+            return new LoadReport(name, senders, receiversPerSender, jsonRate, frameRate, jsonCounters,
+                    binaryCounters, start, end);
+        } finally {
+            scheduler.shutdownNow();
+            syntheticSenders.forEach(SyntheticSender::stop);
+            syntheticReceivers.forEach(SyntheticReceiver::close);
+        }
+    }
+
+    // Recepteurs connectes avant l'emetteur : aucun message rejoue ne fausse la latence
+    private void connectStream(ClientManager client, String channel, String vehicle, SyntheticSender sender,
+            LoadCounters counters, List<SyntheticSender> syntheticSenders, List<SyntheticReceiver> syntheticReceivers)
+            throws Exception {
+        String streamUrl = baseUrl + "/" + channel + "/" + vehicle;
+        for (int j = 0; j < receiversPerSender; j++) {
+            SyntheticReceiver receiver = new SyntheticReceiver(counters);
+            receiver.connect(client, streamUrl + "/receiver");
+            syntheticReceivers.add(receiver);
+        }
+        sender.connect(client, streamUrl + "/sender");
+        syntheticSenders.add(sender);
+    }
+}
@@ -0,0 +1,122 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.util.List;
+import java.util.Map;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.ensma.a3.ia.simurcserver.CongestionMonitor;
+import fr.ensma.a3.ia.simurcserver.HeartbeatMonitor;
+import fr.ensma.a3.ia.simurcserver.RCControllerEndpoint;
+import fr.ensma.a3.ia.simurcserver.RCControllerVehicleEndpoint;
+import fr.ensma.a3.ia.simurcserver.SensorFlowEndpoint;
+import fr.ensma.a3.ia.simurcserver.SensorFlowVehicleEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamAssistantStreamEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamAssistantStreamVehicleEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamControllerEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamControllerVehicleEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamDriverStreamEndpoint;
+import fr.ensma.a3.ia.simurcserver.WebcamDriverStreamVehicleEndpoint;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+@Command(name = "LoadTestLauncher", description = "Mesure la capacite d'un noeud simurcserver avec des emetteurs et recepteurs synthetiques.", mixinStandardHelpOptions = true)
+public class LoadTestLauncher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestLauncher.class);
+
+    @Option(names = { "-u", "--url" }, description = "Serveur cible (ws://localhost:9080) ; par defaut, les points d'acces sont demarres dans ce processus")
+    String url;
+
+    @Option(names = "--port", description = "Port du serveur demarre dans le processus", defaultValue = "8025")
+    int port;
+
+    @Option(names = "--server-pid", description = "Pid du serveur cible, pour mesurer son CPU via /proc", defaultValue = "0")
+    long serverPid;
+
+    @Option(names = "--senders", split = ",", description = "Nombres de vehicules a tester", defaultValue = "1,4")
+    List<Integer> senders;
+
+    @Option(names = "--receivers", split = ",", description = "Nombres de recepteurs par flux a tester", defaultValue = "1,10,50")
+    List<Integer> receivers;
+
+    @Option(names = "--json-rate", split = ",", description = "Cadences JSON a tester (Hz), 0 pour desactiver", defaultValue = "20,200")
+    List<Double> jsonRates;
+
+    @Option(names = "--json-size", description = "Taille d'un message JSON (caracteres)", defaultValue = "300")
+    int jsonSize;
+
+    @Option(names = "--fps", description = "Cadence des images binaires, 0 pour desactiver", defaultValue = "30")
+    double fps;
+
+    @Option(names = "--frame-size", description = "Taille d'une image binaire (octets)", defaultValue = "60000")
+    int frameSize;
+
+    @Option(names = "--warmup", description = "Duree de chauffe par scenario (s)", defaultValue = "3")
+    long warmupSeconds;
+
+    @Option(names = "--duration", description = "Duree de mesure par scenario (s)", defaultValue = "10")
+    long durationSeconds;
+
+    @Override
+    public void run() {
+        Server server = null;
+        String baseUrl = url;
+        try {
+            if (baseUrl == null) {
+                server = startInProcess();
+                baseUrl = "ws://localhost:" + port;
+            }
+
+            ClientManager client = ClientManager.createClient();
+            LoadReport.printHeader();
+            int index = 0;
+            for (int n : senders) {
+                for (int m : receivers) {
+                    for (double rate : jsonRates) {
+                        LoadScenario scenario = new LoadScenario(baseUrl, "load" + index++, n, m, rate, jsonSize,
+                                fps, frameSize);
+                        scenario.run(client, warmupSeconds * 1000, durationSeconds * 1000, serverPid).print();
+                        // Laisse le serveur fermer les sessions du scenario precedent
+                        Thread.sleep(1000);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Erreur du test de charge", e);
+        } finally {
+            if (server != null) {
+                CongestionMonitor.shutdown();
+                HeartbeatMonitor.shutdown();
+                server.stop();
+            }
+        }
+    }
+
+    // Memes points d'acces et services d'arriere-plan que le deploiement Liberty
+    private Server startInProcess() throws Exception {
+        Server server = new Server("localhost", port, "/", Map.of(), RCControllerEndpoint.class,
+                RCControllerVehicleEndpoint.class, SensorFlowEndpoint.class, SensorFlowVehicleEndpoint.class,
+                WebcamControllerEndpoint.class, WebcamControllerVehicleEndpoint.class,
+                WebcamDriverStreamEndpoint.class, WebcamDriverStreamVehicleEndpoint.class,
+                WebcamAssistantStreamEndpoint.class, WebcamAssistantStreamVehicleEndpoint.class);
+        server.start();
+        CongestionMonitor.start();
+        HeartbeatMonitor.start();
+        logger.info("Relais demarre dans le processus sur le port {}", port);
+        return server;
+    }
+
+    public static void main(String[] args) {
+        new CommandLine(new LoadTestLauncher()).execute(args);
+    }
+}
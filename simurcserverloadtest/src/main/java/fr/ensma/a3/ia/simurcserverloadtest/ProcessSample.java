@@ -0,0 +1,84 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Releve instantane du processus : temps CPU, octets alloues par la JVM et,
+ * si un pid est fourni, temps CPU d'un serveur Liberty externe (/proc).
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public final class ProcessSample {
+
+    // USER_HZ, constant sur Linux
+    private static final long CLOCK_TICK_NANOS = 10_000_000L;
+
+    private final long wallNanos;
+
+    private final long cpuNanos;
+
+    private final long allocatedBytes;
+
+    private final long serverCpuNanos;
+
+    private ProcessSample(long wallNanos, long cpuNanos, long allocatedBytes, long serverCpuNanos) {
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.serverCpuNanos = serverCpuNanos;
+    }
+
+    /**
+     * @param serverPid Pid du serveur externe, ou 0 si le serveur est dans ce processus
+     */
+    public static ProcessSample take(long serverPid) {
+        com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory
+                .getOperatingSystemMXBean();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        return new ProcessSample(System.nanoTime(), os.getProcessCpuTime(), threads.getTotalThreadAllocatedBytes(),
+                serverPid > 0 ? readProcCpuNanos(serverPid) : -1);
+    }
+
+    /**
+     * @return Coeurs occupes en moyenne par ce processus depuis le releve precedent
+     */
+    public double cpuCoresSince(ProcessSample start) {
+        return (double) (cpuNanos - start.cpuNanos) / (wallNanos - start.wallNanos);
+    }
+
+    /**
+     * @return Coeurs occupes par le serveur externe, -1 s'il n'est pas suivi
+     */
+    public double serverCpuCoresSince(ProcessSample start) {
+        if (serverCpuNanos < 0 || start.serverCpuNanos < 0) {
+            return -1;
+        }
+        return (double) (serverCpuNanos - start.serverCpuNanos) / (wallNanos - start.wallNanos);
+    }
+
+    /**
+     * @return Debit d'allocation de la JVM en Mo/s
+     */
+    public double allocationMbPerSecondSince(ProcessSample start) {
+        double seconds = (wallNanos - start.wallNanos) / 1e9;
+        return (allocatedBytes - start.allocatedBytes) / seconds / (1024 * 1024);
+    }
+
+    public double secondsSince(ProcessSample start) {
+        return (wallNanos - start.wallNanos) / 1e9;
+    }
+
+    // Champs 14 (utime) et 15 (stime) de /proc/<pid>/stat, apres le nom entre parentheses
+    private static long readProcCpuNanos(long pid) {
+        try {
+            String stat = Files.readString(Path.of("/proc", Long.toString(pid), "stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) * CLOCK_TICK_NANOS;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
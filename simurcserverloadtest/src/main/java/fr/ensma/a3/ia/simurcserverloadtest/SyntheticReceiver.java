@@ -0,0 +1,86 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+
+/**
+ * Recepteur synthetique : lit l'instant d'envoi de chaque message sans
+ * decoder le JSON, pour ne pas fausser la mesure d'allocation.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SyntheticReceiver {
+
+    private static final String SENT_FIELD = "\"sentNanos\":";
+
+    private final LoadCounters counters;
+
+    private Session session;
+
+    public SyntheticReceiver(LoadCounters counters) {
+        this.counters = counters;
+    }
+
+    public void connect(ClientManager client, String url) throws Exception {
+        session = client.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+                session.addMessageHandler(String.class, new MessageHandler.Whole<String>() {
+                    @Override
+                    public void onMessage(String message) {
+                        long sentNanos = parseSentNanos(message);
+                        if (sentNanos != 0) {
+                            counters.onReceived(message.length(), sentNanos);
+                        }
+                    }
+                });
+                session.addMessageHandler(ByteBuffer.class, new MessageHandler.Whole<ByteBuffer>() {
+                    @Override
+                    public void onMessage(ByteBuffer message) {
+                        if (message.remaining() >= 16) {
+                            counters.onReceived(message.remaining(), message.getLong(message.position() + 8));
+                        }
+                    }
+                });
+            }
+        }, ClientEndpointConfig.Builder.create().build(), new URI(url));
+    }
+
+    public void close() {
+        try {
+            if (session != null && session.isOpen()) {
+                session.close();
+            }
+        } catch (Exception e) {
+            // Fin du scenario
+        }
+    }
+
+    private static long parseSentNanos(String message) {
+        int start = message.indexOf(SENT_FIELD);
+        if (start < 0) {
+            return 0;
+        }
+        long value = 0;
+        boolean negative = false;
+        for (int i = start + SENT_FIELD.length(); i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '-') {
+                negative = true;
+            } else if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else {
+                break;
+            }
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,106 @@
+package fr.ensma.a3.ia.simurcserverloadtest;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+
+/**
+ * Emetteur synthetique a cadence fixe. Comme les services de la voiture, il
+ * n'envoie pas de nouveau message tant que le precedent n'est pas parti. Les
+ * messages portent l'instant d'envoi (System.nanoTime()) pour mesurer la
+ * latence de bout en bout : texte {"seq":..,"sentNanos":..,"pad":".."},
+ * binaire avec seq puis sentNanos dans les 16 premiers octets.
+ *
+ * @author Mickael BARON (mickael.baron@ensma.fr)
+ */
+public class SyntheticSender {
+
+    private final LoadCounters counters;
+
+    private final boolean binary;
+
+    private final int size;
+
+    private final double ratePerSecond;
+
+    private final AtomicBoolean sendInProgress = new AtomicBoolean(false);
+
+    private final String padding;
+
+    // Reutilise d'un envoi a l'autre : un seul envoi en cours a la fois
+    private final ByteBuffer frame;
+
+    private Session session;
+
+    private ScheduledFuture<?> task;
+
+    private long seq;
+
+    public SyntheticSender(LoadCounters counters, boolean binary, int size, double ratePerSecond) {
+        this.counters = counters;
+        this.binary = binary;
+        this.ratePerSecond = ratePerSecond;
+        this.size = Math.max(binary ? 16 : 0, size);
+        this.padding = binary ? null : "x".repeat(Math.max(0, size - 48));
+        this.frame = binary ? ByteBuffer.allocate(this.size) : null;
+    }
+
+    public void connect(ClientManager client, String url) throws Exception {
+        session = client.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig config) {
+                // Emission seule
+            }
+        }, ClientEndpointConfig.Builder.create().build(), new URI(url));
+    }
+
+    public void start(ScheduledExecutorService scheduler) {
+        long periodNanos = (long) (1e9 / ratePerSecond);
+        task = scheduler.scheduleAtFixedRate(this::sendNext, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel(false);
+        }
+        try {
+            if (session != null && session.isOpen()) {
+                session.close();
+            }
+        } catch (Exception e) {
+            // Fin du scenario
+        }
+    }
+
+    private void sendNext() {
+        if (!session.isOpen()) {
+            return;
+        }
+        if (!sendInProgress.compareAndSet(false, true)) {
+            counters.onSkipped();
+            return;
+        }
+        seq++;
+        counters.onSent();
+        if (binary) {
+            frame.clear();
+            frame.putLong(0, seq);
+            frame.putLong(8, System.nanoTime());
+            session.getAsyncRemote().sendBinary(frame, result -> sendInProgress.set(false));
+        } else {
+            String message = "{\"seq\":" + seq + ",\"sentNanos\":" + System.nanoTime() + ",\"pad\":\"" + padding
+                    + "\"}";
+            session.getAsyncRemote().sendText(message, result -> sendInProgress.set(false));
+        }
+    }
+}